@@ -0,0 +1,152 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestClient;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Throughput of turning a Graph {@code value} payload into tool output, for each of the three
+ * response mappings. The {@code parseAnd*} benchmarks stream a canned response through the tool
+ * methods as a live Graph call would; {@code format*} only maps items that were already parsed,
+ * which separates parsing cost from output cost.
+ * <p>
+ * Payloads are generated in memory, so the suite runs offline. Run it with
+ * {@code mvn -Pbenchmark -DskipTests verify}, which adds the GC profiler for allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseMappingBenchmark {
+
+    @Param({"100", "10000", "100000"})
+    private int items;
+
+    /**
+     * Whether half of the items are folders with a {@code folder} facet, or all are files.
+     */
+    @Param({"false", "true"})
+    private boolean folders;
+
+    private OnedriveService onedriveService;
+    private List<DriveItem> parsed;
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] payload = payload(items, folders);
+        RestClient restClient = RestClient.builder()
+                .baseUrl("https://graph.microsoft.com/v1.0")
+                .requestFactory((uri, method) -> {
+                    MockClientHttpRequest request = new MockClientHttpRequest(method, uri);
+                    request.setResponse(new MockClientHttpResponse(payload, HttpStatus.OK));
+                    return request;
+                })
+                .build();
+        GraphClient graphClient = new GraphClient(restClient, "benchmark-token");
+        onedriveService = new OnedriveService(graphClient,
+                new DriveIndex(graphClient, false, Duration.ofMinutes(5)),
+                new FolderListingCache(graphClient, false, Duration.ofSeconds(30), 256),
+                new FolderTreeCrawler(1), new RequestCoalescer(), new OnedriveMetrics(new SimpleMeterRegistry()),
+                new ResultCursors(Duration.ofMinutes(5), 100), new PathIdTrie(true, Duration.ofMinutes(10), 10000),
+                new FileContentReader(graphClient, 65536), FolderPrefetcher.disabled(), DriveExporter.disabled());
+        ReflectionTestUtils.setField(onedriveService, "maxItems", Integer.MAX_VALUE);
+
+        parsed = new ArrayList<>(items);
+        graphClient.readItems(graphClient.open("/me/drive/root/children"), parsed::add);
+    }
+
+    @Benchmark
+    public String parseAndFilterMatchingFiles() {
+        return onedriveService.searchFiles("report", null);
+    }
+
+    @Benchmark
+    public String parseAndFilterMatchingFolders() {
+        return onedriveService.searchFolderPath("report");
+    }
+
+    @Benchmark
+    public String parseAndFilterFolderContents() {
+        return onedriveService.listFolderContents("Documents");
+    }
+
+    @Benchmark
+    public String formatFolderContents() throws IOException {
+        return onedriveService.folderContentResults(parsed);
+    }
+
+    /**
+     * Builds a page shaped like a Graph driveItem collection, including the facets and fields the
+     * mappings skip.
+     */
+    static byte[] payload(int items, boolean folders) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(items * 400);
+        try (JsonGenerator generator = new JsonFactory().createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeStringField("@odata.context",
+                    "https://graph.microsoft.com/v1.0/$metadata#Collection(driveItem)");
+            generator.writeArrayFieldStart("value");
+            for (int i = 0; i < items; i++) {
+                boolean folder = folders && i % 2 == 1;
+                generator.writeStartObject();
+                generator.writeStringField("@odata.type", "#microsoft.graph.driveItem");
+                generator.writeStringField("id", "01BYE5RZ" + Integer.toHexString(0x10000000 + i).toUpperCase());
+                generator.writeStringField("name", folder ? "Reports " + i : "report-" + i + ".pdf");
+                generator.writeStringField("webUrl", "https://contoso-my.sharepoint.com/personal/user/Documents/"
+                        + (folder ? "Reports%20" + i : "report-" + i + ".pdf"));
+                generator.writeStringField("createdDateTime", "2025-04-20T10:15:30Z");
+                generator.writeStringField("lastModifiedDateTime", "2025-04-21T08:00:00Z");
+                generator.writeNumberField("size", 1024L * (i % 500 + 1));
+                generator.writeObjectFieldStart("parentReference");
+                generator.writeStringField("driveType", "personal");
+                generator.writeStringField("driveId", "b!abcdef");
+                generator.writeStringField("id", "01BYE5RZPARENT");
+                generator.writeStringField("path", "/drive/root:/Documents/Projects " + (i % 50));
+                generator.writeEndObject();
+                if (folder) {
+                    generator.writeObjectFieldStart("folder");
+                    generator.writeNumberField("childCount", i % 40);
+                    generator.writeEndObject();
+                } else {
+                    generator.writeObjectFieldStart("file");
+                    generator.writeStringField("mimeType", "application/pdf");
+                    generator.writeObjectFieldStart("hashes");
+                    generator.writeStringField("quickXorHash", "dGhpcyBpcyBub3QgYSByZWFsIGhhc2g=");
+                    generator.writeEndObject();
+                    generator.writeEndObject();
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+}
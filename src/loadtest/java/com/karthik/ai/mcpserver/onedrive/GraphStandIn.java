@@ -0,0 +1,428 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local imitation of the Graph drive endpoints the server calls: {@code search}, {@code children},
+ * single items with {@code If-None-Match}, {@code delta} and {@code $batch}. It serves a generated
+ * drive of nested folders and paged collections, and can add latency and answer a share of
+ * requests with 429 or 503 and a Retry-After, as Graph does when it throttles.
+ */
+class GraphStandIn implements AutoCloseable {
+
+    private static final String PREFIX = "/v1.0";
+    private static final String[] WORDS = { "report", "invoice", "notes", "budget", "photo", "draft", "plan", "summary" };
+    private static final String[] EXTENSIONS = { "pdf", "docx", "xlsx", "txt", "jpg" };
+    private static final Pattern SEARCH = Pattern.compile("/search\\(q='(.*)'\\)");
+    private static final Pattern SKIP_TOKEN = Pattern.compile("[?&]\\$skiptoken=\\d+");
+
+    private final Options options;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, Node> byId = new HashMap<>();
+    private final Map<String, Node> byPath = new HashMap<>();
+    private final List<Node> all = new ArrayList<>();
+    private final Node root;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String baseUrl;
+
+    private final Map<String, AtomicLong> requests = new ConcurrentHashMap<>();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong unavailable = new AtomicLong();
+
+    GraphStandIn(Options options) throws IOException {
+        this.options = options;
+        this.root = add(null, "root", true);
+        for (int f = 0; f < options.folders(); f++) {
+            Node folder = add(root, "Folder " + f, true);
+            addFiles(folder, f);
+            for (int s = 0; s < options.subfolders(); s++) {
+                addFiles(add(folder, "Sub " + s, true), f * 31 + s);
+            }
+        }
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.setExecutor(executor);
+        server.createContext(PREFIX + "/", this::handle);
+        server.start();
+        this.baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + PREFIX;
+    }
+
+    /**
+     * The URL to configure as {@code onedrive.http.base-url}.
+     */
+    String baseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * Paths of all generated folders relative to the drive root, for picking tool arguments.
+     */
+    List<String> folderPaths() {
+        return all.stream().filter(node -> node.folder && node != root).map(node -> node.path).toList();
+    }
+
+    /**
+     * Words that file names are built from, so searching for one of them finds files.
+     */
+    List<String> searchTerms() {
+        return List.of(WORDS);
+    }
+
+    int itemCount() {
+        return all.size() - 1;
+    }
+
+    Stats stats() {
+        Map<String, Long> counts = new TreeMap<>();
+        requests.forEach((endpoint, count) -> counts.put(endpoint, count.get()));
+        return new Stats(counts, throttled.get(), unavailable.get());
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private Node add(Node parent, String name, boolean folder) {
+        String path = parent == null ? "" : parent.path.isEmpty() ? name : parent.path + "/" + name;
+        Node node = new Node(Integer.toHexString(0x100000 + all.size()).toUpperCase(Locale.ROOT), name, path, folder, parent);
+        all.add(node);
+        byId.put(node.id, node);
+        byPath.put(path.toLowerCase(Locale.ROOT), node);
+        if (parent != null) {
+            parent.children.add(node);
+        }
+        return node;
+    }
+
+    private void addFiles(Node folder, int seed) {
+        for (int i = 0; i < options.filesPerFolder(); i++) {
+            int n = seed * 7 + i;
+            add(folder, WORDS[n % WORDS.length] + "-" + seed + "-" + i + "." + EXTENSIONS[n % EXTENSIONS.length], false);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            sleep(options.latency().plusMillis(options.latencyJitter().isZero() ? 0
+                    : ThreadLocalRandom.current().nextLong(options.latencyJitter().toMillis() + 1)));
+            String rawPath = exchange.getRequestURI().getRawPath().substring(PREFIX.length());
+            String rawQuery = exchange.getRequestURI().getRawQuery();
+            Reply reply;
+            if ("POST".equals(exchange.getRequestMethod()) && "/$batch".equals(rawPath)) {
+                reply = injectFailure("batch");
+                if (reply == null) {
+                    reply = batch(objectMapper.readTree(exchange.getRequestBody()));
+                }
+            } else {
+                reply = get(rawPath, rawQuery, exchange.getRequestHeaders().getFirst("If-None-Match"));
+            }
+            reply.headers().forEach((name, value) -> exchange.getResponseHeaders().set(name, value));
+            if (reply.body() == null) {
+                exchange.sendResponseHeaders(reply.status(), -1);
+                return;
+            }
+            byte[] body = objectMapper.writeValueAsBytes(reply.body());
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(reply.status(), body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /**
+     * Answers one GET, either sent directly or as part of a $batch.
+     */
+    private Reply get(String rawPath, String rawQuery, String ifNoneMatch) {
+        String path = decode(rawPath);
+        Map<String, String> query = parseQuery(rawQuery);
+        if (!path.startsWith("/me/drive/")) {
+            return error(404, "itemNotFound", "Unsupported path " + path);
+        }
+        String rest = path.substring("/me/drive/".length());
+        Node node;
+        if (rest.startsWith("items/")) {
+            int end = rest.indexOf('/', "items/".length());
+            node = byId.get(end < 0 ? rest.substring("items/".length()) : rest.substring("items/".length(), end));
+            rest = end < 0 ? "" : rest.substring(end);
+        } else if (rest.startsWith("root:/")) {
+            int end = rest.indexOf(":/", "root:/".length());
+            String itemPath = end < 0 ? rest.substring("root:/".length()) : rest.substring("root:/".length(), end);
+            if (itemPath.endsWith(":")) {
+                itemPath = itemPath.substring(0, itemPath.length() - 1);
+            }
+            node = byPath.get(itemPath.toLowerCase(Locale.ROOT));
+            rest = end < 0 ? "" : rest.substring(end + 1);
+        } else if (rest.startsWith("root")) {
+            node = root;
+            rest = rest.substring("root".length());
+        } else {
+            return error(404, "itemNotFound", "Unsupported path " + path);
+        }
+
+        Matcher search = SEARCH.matcher(rest);
+        String endpoint = rest.isEmpty() ? "item" : rest.equals("/children") ? "children"
+                : rest.equals("/delta") ? "delta" : search.matches() ? "search" : null;
+        if (endpoint == null) {
+            return error(404, "itemNotFound", "Unsupported path " + path);
+        }
+        Reply failure = injectFailure(endpoint);
+        if (failure != null) {
+            return failure;
+        }
+        if (node == null) {
+            return error(404, "itemNotFound", "The resource could not be found.");
+        }
+        return switch (endpoint) {
+            case "item" -> node.cTag().equals(ifNoneMatch)
+                    ? new Reply(304, Map.of("ETag", node.cTag()), null)
+                    : new Reply(200, Map.of(), item(node, true));
+            case "children" -> {
+                if (!node.folder) {
+                    yield error(400, "invalidRequest", "The item is not a folder.");
+                }
+                yield page(node.children, rawPath, rawQuery, query, true, null);
+            }
+            case "delta" -> query.containsKey("token")
+                    ? page(List.of(), rawPath, rawQuery, query, false, deltaLink())
+                    : page(all, rawPath, rawQuery, query, false, deltaLink());
+            default -> {
+                String term = search.group(1).toLowerCase(Locale.ROOT);
+                boolean foldersOnly = "folder ne null".equals(query.get("$filter"));
+                Predicate<Node> matches = candidate -> candidate != root && candidate.isUnder(node)
+                        && (!foldersOnly || candidate.folder)
+                        && candidate.name.toLowerCase(Locale.ROOT).contains(term);
+                yield page(all.stream().filter(matches).toList(), rawPath, rawQuery, query, true, null);
+            }
+        };
+    }
+
+    /**
+     * Answers every sub-request of a JSON batch in order. Throttling is injected per sub-request,
+     * like Graph does, so the batch itself still succeeds.
+     */
+    private Reply batch(JsonNode body) {
+        List<Map<String, Object>> responses = new ArrayList<>();
+        for (JsonNode request : body.path("requests")) {
+            String url = request.path("url").asText();
+            int queryStart = url.indexOf('?');
+            Reply reply = get(queryStart < 0 ? url : url.substring(0, queryStart),
+                    queryStart < 0 ? null : url.substring(queryStart + 1), null);
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("id", request.path("id").asText());
+            response.put("status", reply.status());
+            response.put("headers", reply.headers());
+            response.put("body", reply.body());
+            responses.add(response);
+        }
+        return new Reply(200, Map.of(), Map.of("responses", responses));
+    }
+
+    private Reply page(List<Node> items, String rawPath, String rawQuery, Map<String, String> query,
+            boolean withPath, String deltaLink) {
+        int skip = Integer.parseInt(query.getOrDefault("$skiptoken", "0"));
+        int top = Math.min(options.pageSize(), Integer.parseInt(query.getOrDefault("$top", String.valueOf(options.pageSize()))));
+        int end = Math.min(items.size(), skip + top);
+        Map<String, Object> body = new LinkedHashMap<>();
+        List<Map<String, Object>> value = new ArrayList<>();
+        for (Node node : items.subList(Math.min(skip, items.size()), end)) {
+            value.add(item(node, withPath));
+        }
+        body.put("value", value);
+        if (end < items.size()) {
+            String pathAndQuery = rawPath + (rawQuery == null ? "" : "?" + rawQuery);
+            pathAndQuery = SKIP_TOKEN.matcher(pathAndQuery).replaceAll("");
+            if (pathAndQuery.contains("&") && !pathAndQuery.contains("?")) {
+                pathAndQuery = pathAndQuery.replaceFirst("&", "?");
+            }
+            body.put("@odata.nextLink", baseUrl + pathAndQuery + (pathAndQuery.contains("?") ? "&" : "?")
+                    + "$skiptoken=" + end);
+        } else if (deltaLink != null) {
+            body.put("@odata.deltaLink", deltaLink);
+        }
+        return new Reply(200, Map.of(), body);
+    }
+
+    /**
+     * A driveItem as Graph returns it. Delta responses leave out parentReference.path.
+     */
+    private Map<String, Object> item(Node node, boolean withPath) {
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("id", node.id);
+        item.put("name", node.name);
+        item.put("webUrl", "https://contoso-my.sharepoint.com/personal/load_test/Documents/"
+                + node.path.replace(" ", "%20"));
+        item.put("size", node.folder ? 0 : 1024L * (node.name.length() + 1));
+        item.put("lastModifiedDateTime", "2025-01-01T00:00:00Z");
+        item.put("eTag", "\"{" + node.id + "},1\"");
+        item.put("cTag", node.cTag());
+        if (node.parent != null) {
+            Map<String, Object> parentReference = new LinkedHashMap<>();
+            parentReference.put("driveId", "b!loadtest");
+            parentReference.put("id", node.parent.id);
+            if (withPath) {
+                parentReference.put("path", node.parent.path.isEmpty() ? "/drive/root:" : "/drive/root:/" + node.parent.path);
+            }
+            item.put("parentReference", parentReference);
+        } else {
+            item.put("root", Map.of());
+        }
+        if (node.folder) {
+            item.put("folder", Map.of("childCount", node.children.size()));
+        } else {
+            item.put("file", Map.of("mimeType", "application/octet-stream"));
+        }
+        return item;
+    }
+
+    private String deltaLink() {
+        return baseUrl + "/me/drive/root/delta?token=latest";
+    }
+
+    /**
+     * Counts the request and, with the configured probabilities, answers it with 429 or 503 instead.
+     */
+    private Reply injectFailure(String endpoint) {
+        requests.computeIfAbsent(endpoint, key -> new AtomicLong()).incrementAndGet();
+        double roll = ThreadLocalRandom.current().nextDouble();
+        Map<String, String> retryAfter = Map.of("Retry-After", String.valueOf(options.retryAfter().toSeconds()));
+        if (roll < options.throttleRate()) {
+            throttled.incrementAndGet();
+            return new Reply(429, retryAfter, errorBody("TooManyRequests", "Too many requests"));
+        }
+        if (roll < options.throttleRate() + options.unavailableRate()) {
+            unavailable.incrementAndGet();
+            return new Reply(503, retryAfter, errorBody("serviceNotAvailable", "Service unavailable"));
+        }
+        return null;
+    }
+
+    private static Reply error(int status, String code, String message) {
+        return new Reply(status, Map.of(), errorBody(code, message));
+    }
+
+    private static Map<String, Object> errorBody(String code, String message) {
+        return Map.of("error", Map.of("code", code, "message", message));
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            int eq = parameter.indexOf('=');
+            query.put(decode(eq < 0 ? parameter : parameter.substring(0, eq)), eq < 0 ? "" : decode(parameter.substring(eq + 1)));
+        }
+        return query;
+    }
+
+    /**
+     * Folder paths are form-encoded by the server and the URI encoding then escapes their '%' once
+     * more, so undo that before form-decoding.
+     */
+    private static String decode(String value) {
+        String decoded = value;
+        while (decoded.contains("%25")) {
+            decoded = decoded.replace("%25", "%");
+        }
+        return URLDecoder.decode(decoded, StandardCharsets.UTF_8);
+    }
+
+    private static void sleep(Duration duration) {
+        if (duration.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @param folders top-level folders in the generated drive
+     * @param subfolders subfolders in each top-level folder
+     * @param filesPerFolder files in every folder
+     * @param pageSize the most items returned per page, whatever {@code $top} asks for
+     * @param latency added to every response
+     * @param latencyJitter a random extra delay of up to this much
+     * @param throttleRate share of requests answered with 429
+     * @param unavailableRate share of requests answered with 503
+     * @param retryAfter the Retry-After sent with injected failures
+     */
+    record Options(int folders, int subfolders, int filesPerFolder, int pageSize, Duration latency,
+            Duration latencyJitter, double throttleRate, double unavailableRate, Duration retryAfter) {
+
+    }
+
+    /**
+     * Requests received per endpoint, including those answered with an injected failure.
+     */
+    record Stats(Map<String, Long> requests, long throttled, long unavailable) {
+
+    }
+
+    private record Reply(int status, Map<String, String> headers, Object body) {
+
+    }
+
+    private static final class Node {
+
+        final String id;
+        final String name;
+        final String path;
+        final boolean folder;
+        final Node parent;
+        final List<Node> children = new ArrayList<>();
+
+        Node(String id, String name, String path, boolean folder, Node parent) {
+            this.id = id;
+            this.name = name;
+            this.path = path;
+            this.folder = folder;
+            this.parent = parent;
+        }
+
+        String cTag() {
+            return "\"c:{" + id + "},1\"";
+        }
+
+        boolean isUnder(Node ancestor) {
+            for (Node node = parent; node != null; node = node.parent) {
+                if (node == ancestor) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
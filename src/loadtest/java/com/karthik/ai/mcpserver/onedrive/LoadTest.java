@@ -0,0 +1,307 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import io.modelcontextprotocol.client.McpClient;
+import io.modelcontextprotocol.client.McpSyncClient;
+import io.modelcontextprotocol.client.transport.HttpClientSseClientTransport;
+import io.modelcontextprotocol.spec.McpSchema;
+
+/**
+ * Drives the server end to end: starts it with the SSE transport against a {@link GraphStandIn},
+ * connects concurrent MCP clients that call the tools in a weighted mix for a fixed time, and
+ * prints throughput, latency percentiles and error rates per tool, with what the stand-in and the
+ * request scheduler saw. Clients run on virtual threads, so the peak of platform threads it reports
+ * is mostly the server's: compare it between the default SYNC server and the {@code async} profile.
+ * <p>
+ * Run it with {@code mvn -Pload-test -DskipTests verify -Dloadtest.args="--clients=32"}. Options:
+ * <ul>
+ * <li>{@code --clients} (16), {@code --duration} (PT30S), {@code --warmup} (PT5S)</li>
+ * <li>{@code --mix}: tool weights, e.g. {@code searchFiles:4,listFolderContents:4,searchFolderPath:2,listFolderTree:1,listFolderContentsBatch:1}</li>
+ * <li>{@code --graph.folders} (50), {@code --graph.subfolders} (4), {@code --graph.files-per-folder} (40),
+ * {@code --graph.page-size} (200)</li>
+ * <li>{@code --graph.latency} (PT0.05S), {@code --graph.latency-jitter} (PT0.05S)</li>
+ * <li>{@code --graph.throttle-rate} (0), {@code --graph.unavailable-rate} (0), {@code --graph.retry-after} (PT1S)</li>
+ * </ul>
+ * Any other {@code --key=value} is passed to the server, e.g. {@code --onedrive.cache.enabled=false}
+ * or {@code --spring.profiles.active=async}.
+ */
+public class LoadTest {
+
+    private static final String DEFAULT_MIX =
+            "searchFiles:4,listFolderContents:4,searchFolderPath:2,listFolderTree:1,listFolderContentsBatch:1";
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        Map<String, String> serverProperties = new LinkedHashMap<>();
+        serverProperties.put("server.port", "0");
+        serverProperties.put("spring.ai.mcp.server.stdio", "false");
+        serverProperties.put("onedrive.access-token", "load-test");
+        serverProperties.put("logging.file.name", "target/load-test.log");
+        // every run starts cold, not from the listings the last run left on disk
+        serverProperties.put("onedrive.store.enabled", "false");
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --key=value but got " + arg);
+            }
+            String key = arg.substring(2, eq);
+            boolean harness = key.startsWith("graph.") || List.of("clients", "duration", "warmup", "mix").contains(key);
+            (harness ? options : serverProperties).put(key, arg.substring(eq + 1));
+        }
+
+        int clients = Integer.parseInt(options.getOrDefault("clients", "16"));
+        Duration duration = Duration.parse(options.getOrDefault("duration", "PT30S"));
+        Duration warmup = Duration.parse(options.getOrDefault("warmup", "PT5S"));
+        Map<String, Integer> mix = parseMix(options.getOrDefault("mix", DEFAULT_MIX));
+        GraphStandIn.Options graphOptions = new GraphStandIn.Options(
+                Integer.parseInt(options.getOrDefault("graph.folders", "50")),
+                Integer.parseInt(options.getOrDefault("graph.subfolders", "4")),
+                Integer.parseInt(options.getOrDefault("graph.files-per-folder", "40")),
+                Integer.parseInt(options.getOrDefault("graph.page-size", "200")),
+                Duration.parse(options.getOrDefault("graph.latency", "PT0.05S")),
+                Duration.parse(options.getOrDefault("graph.latency-jitter", "PT0.05S")),
+                Double.parseDouble(options.getOrDefault("graph.throttle-rate", "0")),
+                Double.parseDouble(options.getOrDefault("graph.unavailable-rate", "0")),
+                Duration.parse(options.getOrDefault("graph.retry-after", "PT1S")));
+
+        try (GraphStandIn graph = new GraphStandIn(graphOptions)) {
+            serverProperties.putIfAbsent("onedrive.http.base-url", graph.baseUrl());
+            String[] springArgs = serverProperties.entrySet().stream()
+                    .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                    .toArray(String[]::new);
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(OnedriveMcpServerApplication.class)
+                    .run(springArgs)) {
+                String serverUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+                Workload workload = new Workload(graph.folderPaths(), graph.searchTerms(), mix);
+
+                System.out.printf("Graph stand-in: %d items, page size %d, latency %s + up to %s, 429 rate %.1f%%, 503 rate %.1f%%%n",
+                        graph.itemCount(), graphOptions.pageSize(), graphOptions.latency(), graphOptions.latencyJitter(),
+                        graphOptions.throttleRate() * 100, graphOptions.unavailableRate() * 100);
+                System.out.printf("%d clients on %s, %s warm-up, %s measured, server type %s%n", clients, serverUrl,
+                        warmup, duration, context.getEnvironment().getProperty("spring.ai.mcp.server.type", "SYNC"));
+
+                long start = System.nanoTime();
+                long measureFrom = start + warmup.toNanos();
+                long measureUntil = measureFrom + duration.toNanos();
+                Map<String, Samples> results = new TreeMap<>();
+                ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+                threads.resetPeakThreadCount();
+                try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                    List<Future<Map<String, Samples>>> futures = new ArrayList<>();
+                    for (int i = 0; i < clients; i++) {
+                        futures.add(executor.submit(() -> runClient(serverUrl, workload, measureFrom, measureUntil)));
+                    }
+                    for (Future<Map<String, Samples>> future : futures) {
+                        future.get().forEach((tool, samples) -> results.merge(tool, samples, Samples::merge));
+                    }
+                }
+                report(results, duration, graph.stats(), context.getBean(GraphRequestScheduler.class).stats(),
+                        context.getBean(RequestCoalescer.class).coalesced(), threads.getPeakThreadCount());
+            }
+        }
+    }
+
+    /**
+     * One MCP client over its own SSE connection, calling tools back to back until the end of the
+     * measurement. Calls finished during the warm-up are not recorded.
+     */
+    private static Map<String, Samples> runClient(String serverUrl, Workload workload, long measureFrom,
+            long measureUntil) {
+        Map<String, Samples> samples = new HashMap<>();
+        McpSyncClient client = McpClient.sync(new HttpClientSseClientTransport(serverUrl))
+                .requestTimeout(Duration.ofSeconds(60))
+                .clientInfo(new McpSchema.Implementation("onedrive-load-test", "1.0.0"))
+                .build();
+        try {
+            client.initialize();
+            while (System.nanoTime() < measureUntil) {
+                McpSchema.CallToolRequest request = workload.next();
+                long started = System.nanoTime();
+                Outcome outcome;
+                try {
+                    outcome = isError(client.callTool(request)) ? Outcome.ERROR : Outcome.OK;
+                } catch (RuntimeException e) {
+                    outcome = Outcome.FAILED;
+                }
+                long finished = System.nanoTime();
+                if (started >= measureFrom && finished <= measureUntil) {
+                    samples.computeIfAbsent(request.name(), tool -> new Samples()).add(finished - started, outcome);
+                }
+            }
+        } finally {
+            client.closeGracefully();
+        }
+        return samples;
+    }
+
+    /**
+     * The tools report failures as text starting with "Error" rather than as MCP errors.
+     */
+    private static boolean isError(McpSchema.CallToolResult result) {
+        if (Boolean.TRUE.equals(result.isError())) {
+            return true;
+        }
+        for (McpSchema.Content content : result.content()) {
+            if (content instanceof McpSchema.TextContent text
+                    && (text.text().startsWith("Error") || text.text().startsWith("\"Error"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void report(Map<String, Samples> results, Duration duration, GraphStandIn.Stats graph,
+            GraphRequestScheduler.Stats scheduler, long coalesced, int peakThreads) {
+        double seconds = duration.toMillis() / 1000.0;
+        System.out.println();
+        System.out.printf("%-26s %9s %9s %8s %8s %9s %9s %9s %9s%n",
+                "tool", "calls", "calls/s", "errors", "failed", "p50 ms", "p95 ms", "p99 ms", "max ms");
+        Samples total = new Samples();
+        for (Map.Entry<String, Samples> entry : results.entrySet()) {
+            print(entry.getKey(), entry.getValue(), seconds);
+            total = total.merge(entry.getValue());
+        }
+        print("total", total, seconds);
+        System.out.println();
+        System.out.printf("Graph requests %s, injected 429: %d, injected 503: %d%n", graph.requests(),
+                graph.throttled(), graph.unavailable());
+        System.out.printf("Scheduler: breaker %s, throttled %d, retries %d, rejected %d; coalesced reads %d%n",
+                scheduler.state(), scheduler.throttled(), scheduler.retries(), scheduler.rejected(), coalesced);
+        System.out.printf("Peak platform threads: %d%n", peakThreads);
+    }
+
+    private static void print(String tool, Samples samples, double seconds) {
+        long[] sorted = Arrays.copyOf(samples.latencies, samples.count);
+        Arrays.sort(sorted);
+        System.out.printf("%-26s %9d %9.1f %7.2f%% %7.2f%% %9.1f %9.1f %9.1f %9.1f%n", tool, samples.count,
+                samples.count / seconds, percent(samples.errors, samples.count), percent(samples.failed, samples.count),
+                millis(percentile(sorted, 0.50)), millis(percentile(sorted, 0.95)), millis(percentile(sorted, 0.99)),
+                millis(sorted.length == 0 ? 0 : sorted[sorted.length - 1]));
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.max(0, (int) Math.ceil(quantile * sorted.length) - 1)];
+    }
+
+    private static double percent(int part, int count) {
+        return count == 0 ? 0 : part * 100.0 / count;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            weights.put(parts[0], parts.length > 1 ? Integer.parseInt(parts[1]) : 1);
+        }
+        return weights;
+    }
+
+    private enum Outcome {
+        OK, ERROR, FAILED
+    }
+
+    /**
+     * Picks the next tool by weight and random arguments that exist in the stand-in drive.
+     */
+    private record Workload(List<String> folderPaths, List<String> searchTerms, Map<String, Integer> mix) {
+
+        McpSchema.CallToolRequest next() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int pick = random.nextInt(mix.values().stream().mapToInt(Integer::intValue).sum());
+            String tool = null;
+            for (Map.Entry<String, Integer> entry : mix.entrySet()) {
+                pick -= entry.getValue();
+                if (pick < 0) {
+                    tool = entry.getKey();
+                    break;
+                }
+            }
+            Map<String, Object> arguments = new HashMap<>();
+            switch (tool) {
+                case "searchFiles" -> {
+                    arguments.put("fileName", pick(searchTerms));
+                    if (random.nextBoolean()) {
+                        arguments.put("folder", topFolder(pick(folderPaths)));
+                    }
+                }
+                case "searchFolderPath" -> arguments.put("folderName", pick(folderPaths).replaceAll(".*/", ""));
+                case "listFolderContents" -> arguments.put("folderPath", pick(folderPaths));
+                case "listFolderTree" -> {
+                    arguments.put("folderPath", topFolder(pick(folderPaths)));
+                    arguments.put("maxDepth", 2);
+                }
+                case "listFolderContentsBatch" -> arguments.put("folderPaths",
+                        List.of(pick(folderPaths), pick(folderPaths), pick(folderPaths), pick(folderPaths)));
+                case "searchFilesBatch" -> arguments.put("fileNames", List.of(pick(searchTerms), pick(searchTerms)));
+                default -> throw new IllegalArgumentException("No arguments known for tool " + tool);
+            }
+            return new McpSchema.CallToolRequest(tool, arguments);
+        }
+
+        private static String pick(List<String> values) {
+            return values.get(ThreadLocalRandom.current().nextInt(values.size()));
+        }
+
+        private static String topFolder(String path) {
+            int slash = path.indexOf('/');
+            return slash < 0 ? path : path.substring(0, slash);
+        }
+    }
+
+    /**
+     * Latencies and outcomes of the calls to one tool.
+     */
+    private static final class Samples {
+
+        private long[] latencies = new long[1024];
+        private int count;
+        private int errors;
+        private int failed;
+
+        void add(long nanos, Outcome outcome) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+            if (outcome == Outcome.ERROR) {
+                errors++;
+            } else if (outcome == Outcome.FAILED) {
+                failed++;
+            }
+        }
+
+        Samples merge(Samples other) {
+            Samples merged = new Samples();
+            merged.latencies = Arrays.copyOf(latencies, Math.max(1, count + other.count));
+            System.arraycopy(other.latencies, 0, merged.latencies, count, other.count);
+            merged.count = count + other.count;
+            merged.errors = errors + other.errors;
+            merged.failed = failed + other.failed;
+            return merged;
+        }
+    }
+}
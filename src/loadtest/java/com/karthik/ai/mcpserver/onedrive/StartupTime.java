@@ -0,0 +1,161 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what an MCP client that spawns the server per session waits for: the time from starting
+ * the JVM until the server has answered {@code initialize} and {@code tools/list} over stdio. Each
+ * run starts a fresh JVM, first from the plain jar and then from the fast-start build with its AOT
+ * code, CDS archive and {@code stdio} profile, and the median and best run of each are printed.
+ * <p>
+ * Run it with {@code mvn -Pfast-start -DskipTests verify -Dstartup.args="--runs=10"}. Options:
+ * <ul>
+ * <li>{@code --jar}: the plain jar, {@code --fast-start}: the directory the fast-start build extracted to</li>
+ * <li>{@code --runs} (5), {@code --timeout} (PT60S) for one run</li>
+ * </ul>
+ */
+public class StartupTime {
+
+    private static final String INITIALIZE = """
+            {"jsonrpc":"2.0","id":1,"method":"initialize","params":{"protocolVersion":"2024-11-05","capabilities":{},\
+            "clientInfo":{"name":"onedrive-startup-time","version":"1.0.0"}}}""";
+    private static final String INITIALIZED = """
+            {"jsonrpc":"2.0","method":"notifications/initialized"}""";
+    private static final String LIST_TOOLS = """
+            {"jsonrpc":"2.0","id":2,"method":"tools/list","params":{}}""";
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --key=value but got " + arg);
+            }
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        Path jar = Path.of(required(options, "jar"));
+        Path fastStart = Path.of(required(options, "fast-start"));
+        int runs = Integer.parseInt(options.getOrDefault("runs", "5"));
+        Duration timeout = Duration.parse(options.getOrDefault("timeout", "PT60S"));
+        Path log = jar.toAbsolutePath().getParent().resolve("startup-time.log");
+
+        List<String> common = List.of("-Donedrive.access-token=startup-time", "-Dserver.port=0",
+                "-Dlogging.file.name=" + log, "-Donedrive.store.enabled=false");
+        List<String> plain = command(common, List.of(), jar);
+        List<String> optimized = command(common, List.of("-XX:SharedArchiveFile=" + fastStart.resolve("application.jsa"),
+                "-Xlog:cds=off", "-Dspring.aot.enabled=true", "-Dspring.profiles.active=stdio"),
+                fastStart.resolve(jar.getFileName()));
+
+        System.out.printf("%d runs each, time until the answer to initialize / tools/list%n", runs);
+        Result baseline = measure("plain jar", plain, runs, timeout);
+        Result fast = measure("fast start", optimized, runs, timeout);
+        System.out.printf("fast start answers tools/list %.0f%% sooner (median)%n",
+                100.0 * (baseline.toolsMedian() - fast.toolsMedian()) / baseline.toolsMedian());
+    }
+
+    private static List<String> command(List<String> common, List<String> jvmOptions, Path jar) {
+        if (!Files.isRegularFile(jar)) {
+            throw new IllegalArgumentException(jar + " does not exist, build it with mvn -Pfast-start package");
+        }
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(common);
+        command.addAll(jvmOptions);
+        command.add("-jar");
+        command.add(jar.toString());
+        return command;
+    }
+
+    private static Result measure(String name, List<String> command, int runs, Duration timeout) throws Exception {
+        long[] initialize = new long[runs];
+        long[] tools = new long[runs];
+        // one unrecorded run, so that both variants start with the jar in the page cache
+        run(command, timeout);
+        for (int i = 0; i < runs; i++) {
+            long[] times = run(command, timeout);
+            initialize[i] = times[0];
+            tools[i] = times[1];
+        }
+        Arrays.sort(initialize);
+        Arrays.sort(tools);
+        Result result = new Result(millis(initialize[runs / 2]), millis(tools[runs / 2]));
+        System.out.printf("%-10s  median %6.0f / %6.0f ms   best %6.0f / %6.0f ms%n", name,
+                result.initializeMedian(), result.toolsMedian(), millis(initialize[0]), millis(tools[0]));
+        return result;
+    }
+
+    /**
+     * Starts the server once and returns the nanoseconds until it answered initialize and
+     * tools/list. The server is stopped right after.
+     */
+    private static long[] run(List<String> command, Duration timeout) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.DISCARD).start();
+        CompletableFuture<Void> watchdog = CompletableFuture.runAsync(process::destroyForcibly,
+                CompletableFuture.delayedExecutor(timeout.toMillis(), TimeUnit.MILLISECONDS));
+        try (Writer stdin = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+                BufferedReader stdout = new BufferedReader(
+                        new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            send(stdin, INITIALIZE);
+            long initialized = awaitResponse(stdout, 1, process) - start;
+            send(stdin, INITIALIZED);
+            send(stdin, LIST_TOOLS);
+            long listed = awaitResponse(stdout, 2, process) - start;
+            return new long[] { initialized, listed };
+        } finally {
+            watchdog.cancel(false);
+            process.destroy();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private static void send(Writer stdin, String message) throws IOException {
+        stdin.write(message);
+        stdin.write('\n');
+        stdin.flush();
+    }
+
+    private static long awaitResponse(BufferedReader stdout, int id, Process process) throws IOException {
+        String line;
+        while ((line = stdout.readLine()) != null) {
+            if (line.contains("\"id\":" + id + ",") || line.contains("\"id\":" + id + "}")) {
+                return System.nanoTime();
+            }
+        }
+        throw new IOException("The server exited before answering request " + id
+                + (process.isAlive() ? "" : " with status " + process.exitValue()) + ", see startup-time.log");
+    }
+
+    private static String required(Map<String, String> options, String key) {
+        String value = options.get(key);
+        if (value == null) {
+            throw new IllegalArgumentException("--" + key + " is required");
+        }
+        return value;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private record Result(double initializeMedian, double toolsMedian) {
+
+    }
+}
@@ -0,0 +1,307 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.ToolCallbackProvider;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+import org.springframework.ai.tool.method.MethodToolCallbackProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.context.ContextRegistry;
+
+/**
+ * Serves several OneDrive accounts from one server. Every bearer token that calls in gets an
+ * account of its own: a {@link GraphClient} on the shared connection pool, capped at a few open
+ * connections, with its own rate limit and circuit breaker, and its own folder listings, result
+ * cursors and path ids. One busy or throttled account therefore cannot starve the others, and no
+ * account ever sees another's cached results.
+ * <p>
+ * The token of the call being served is bound to the thread by {@link AccountTokenFilter} and
+ * follows the call onto the MCP server's worker threads through Reactor's context propagation.
+ * Calls without a token, as over stdio, use the configured access token. Accounts are dropped when
+ * they have been idle for {@code idle-timeout}, and the least recently used one when there are more
+ * than {@code max-accounts}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "onedrive.accounts", name = "enabled", havingValue = "true")
+class AccountContexts {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccountContexts.class);
+
+    /**
+     * The key of the token in the Reactor context.
+     */
+    static final String TOKEN_KEY = "onedrive.account.token";
+
+    private static final ThreadLocal<String> currentToken = new ThreadLocal<>();
+
+    private final OnedriveService defaultService;
+    private final GraphClient defaultClient;
+    private final GraphRequestScheduler defaultScheduler;
+    private final Clock clock;
+    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+
+    @Value("${onedrive.accounts.max-accounts:500}")
+    private int maxAccounts = 500;
+
+    @Value("${onedrive.accounts.idle-timeout:PT30M}")
+    private Duration idleTimeout = Duration.ofMinutes(30);
+
+    @Value("${onedrive.accounts.requests-per-second:5}")
+    private double requestsPerSecond = 5;
+
+    @Value("${onedrive.accounts.burst:10}")
+    private int burst = 10;
+
+    @Value("${onedrive.accounts.max-concurrent-requests:4}")
+    private int maxConcurrentRequests = 4;
+
+    @Value("${onedrive.accounts.acquire-timeout:PT10S}")
+    private Duration acquireTimeout = Duration.ofSeconds(10);
+
+    @Value("${onedrive.cache.enabled:false}")
+    private boolean cacheEnabled;
+
+    @Value("${onedrive.cache.ttl:PT30S}")
+    private Duration cacheTtl = Duration.ofSeconds(30);
+
+    @Value("${onedrive.accounts.cache-max-entries:32}")
+    private int cacheMaxEntries = 32;
+
+    @Value("${onedrive.cursor.ttl:PT5M}")
+    private Duration cursorTtl = Duration.ofMinutes(5);
+
+    @Value("${onedrive.accounts.cursor-max-entries:10}")
+    private int cursorMaxEntries = 10;
+
+    @Value("${onedrive.path-ids.enabled:true}")
+    private boolean pathIdsEnabled = true;
+
+    @Value("${onedrive.path-ids.ttl:PT10M}")
+    private Duration pathIdsTtl = Duration.ofMinutes(10);
+
+    @Value("${onedrive.accounts.path-ids-max-entries:1000}")
+    private int pathIdsMaxEntries = 1000;
+
+    @Autowired
+    AccountContexts(OnedriveService defaultService, GraphClient defaultClient, GraphRequestScheduler defaultScheduler) {
+        this(defaultService, defaultClient, defaultScheduler, Clock.systemUTC());
+    }
+
+    AccountContexts(OnedriveService defaultService, GraphClient defaultClient, GraphRequestScheduler defaultScheduler,
+            Clock clock) {
+        this.defaultService = defaultService;
+        this.defaultClient = defaultClient;
+        this.defaultScheduler = defaultScheduler;
+        this.clock = clock;
+        ContextRegistry.getInstance().registerThreadLocalAccessor(TOKEN_KEY, currentToken::get, currentToken::set,
+                currentToken::remove);
+    }
+
+    /**
+     * The token of the call this thread is serving, or null for the configured account.
+     */
+    static String currentToken() {
+        return currentToken.get();
+    }
+
+    /**
+     * Makes this thread serve the account of {@code token} until the returned scope is closed,
+     * which restores whichever account the thread served before.
+     */
+    static Scope bind(String token) {
+        String previous = currentToken.get();
+        currentToken.set(token);
+        return () -> {
+            if (previous != null) {
+                currentToken.set(previous);
+            } else {
+                currentToken.remove();
+            }
+        };
+    }
+
+    /**
+     * Runs {@code call} as the account of {@code token}.
+     */
+    static <T> T withToken(String token, Supplier<T> call) {
+        try (Scope scope = bind(token)) {
+            return call.get();
+        }
+    }
+
+    /**
+     * The tools of {@code tools}, each calling the tool of the same name on the current account.
+     * {@code tools} themselves answer the calls that carry no token.
+     */
+    ToolCallbackProvider route(ToolCallbackProvider tools) {
+        ToolCallback[] routed = Arrays.stream(tools.getToolCallbacks())
+                .map(RoutedToolCallback::new)
+                .toArray(ToolCallback[]::new);
+        return () -> routed;
+    }
+
+    /**
+     * Drops the accounts that have not been used for {@code idle-timeout}.
+     */
+    @Scheduled(fixedDelayString = "${onedrive.accounts.eviction-interval:PT1M}")
+    void evictIdle() {
+        long idleBefore = clock.millis() - idleTimeout.toMillis();
+        accounts.entrySet().removeIf(entry -> {
+            boolean idle = entry.getValue().lastUsed() < idleBefore;
+            if (idle) {
+                evicted.incrementAndGet();
+            }
+            return idle;
+        });
+    }
+
+    Stats stats() {
+        return new Stats(accounts.size(), created.get(), evicted.get());
+    }
+
+    /**
+     * The account of {@code token}, created on first use.
+     */
+    Account account(String token) {
+        Account account = accounts.computeIfAbsent(token, this::create);
+        account.touch(clock.millis());
+        if (accounts.size() > maxAccounts) {
+            evictLeastRecentlyUsed(token);
+        }
+        return account;
+    }
+
+    private Account create(String token) {
+        created.incrementAndGet();
+        GraphClient graphClient = defaultClient.forAccount(token, defaultScheduler.withRate(requestsPerSecond, burst),
+                maxConcurrentRequests, acquireTimeout);
+        OnedriveService service = defaultService.forAccount(graphClient,
+                new FolderListingCache(graphClient, cacheEnabled, cacheTtl, cacheMaxEntries, clock),
+                new ResultCursors(cursorTtl, cursorMaxEntries, clock),
+                new PathIdTrie(pathIdsEnabled, pathIdsTtl, pathIdsMaxEntries, clock));
+        Map<String, ToolCallback> tools = Arrays.stream(MethodToolCallbackProvider.builder()
+                .toolObjects(service)
+                .build()
+                .getToolCallbacks())
+                .collect(Collectors.toMap(tool -> tool.getToolDefinition().name(), Function.identity()));
+        return new Account(service, tools, clock.millis());
+    }
+
+    private void evictLeastRecentlyUsed(String keep) {
+        while (accounts.size() > maxAccounts) {
+            Optional<Map.Entry<String, Account>> eldest = accounts.entrySet().stream()
+                    .filter(entry -> !entry.getKey().equals(keep))
+                    .min(Comparator.comparingLong(entry -> entry.getValue().lastUsed()));
+            if (eldest.isEmpty()) {
+                return;
+            }
+            if (accounts.remove(eldest.get().getKey(), eldest.get().getValue())) {
+                evicted.incrementAndGet();
+                logger.debug("Evicted the least recently used account, {} accounts are active", accounts.size());
+            }
+        }
+    }
+
+    /**
+     * The tools and caches of one token.
+     */
+    static final class Account {
+
+        private final OnedriveService service;
+        private final Map<String, ToolCallback> tools;
+        private volatile long lastUsed;
+
+        Account(OnedriveService service, Map<String, ToolCallback> tools, long lastUsed) {
+            this.service = service;
+            this.tools = tools;
+            this.lastUsed = lastUsed;
+        }
+
+        OnedriveService service() {
+            return service;
+        }
+
+        ToolCallback tool(String name) {
+            return tools.get(name);
+        }
+
+        long lastUsed() {
+            return lastUsed;
+        }
+
+        void touch(long now) {
+            lastUsed = now;
+        }
+    }
+
+    record Stats(int accounts, long created, long evicted) {
+
+    }
+
+    /**
+     * Restores the account a thread served before {@link #bind}.
+     */
+    interface Scope extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+
+    private final class RoutedToolCallback implements ToolCallback {
+
+        private final ToolCallback defaultTool;
+        private final String name;
+
+        RoutedToolCallback(ToolCallback defaultTool) {
+            this.defaultTool = defaultTool;
+            this.name = defaultTool.getToolDefinition().name();
+        }
+
+        @Override
+        public ToolDefinition getToolDefinition() {
+            return defaultTool.getToolDefinition();
+        }
+
+        @Override
+        public ToolMetadata getToolMetadata() {
+            return defaultTool.getToolMetadata();
+        }
+
+        @Override
+        public String call(String toolInput) {
+            return target().call(toolInput);
+        }
+
+        @Override
+        public String call(String toolInput, ToolContext toolContext) {
+            return target().call(toolInput, toolContext);
+        }
+
+        private ToolCallback target() {
+            String token = currentToken();
+            return token != null ? account(token).tool(name) : defaultTool;
+        }
+    }
+}
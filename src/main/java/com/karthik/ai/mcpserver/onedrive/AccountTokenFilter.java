@@ -0,0 +1,65 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.io.IOException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Binds the bearer token of an MCP request to the thread that serves it, so that
+ * {@link AccountContexts} answers the tool calls in it as that account. Requests to the SSE and
+ * message endpoints without an {@code Authorization: Bearer} header are refused with 401.
+ */
+@Component
+@ConditionalOnProperty(prefix = "onedrive.accounts", name = "enabled", havingValue = "true")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+class AccountTokenFilter extends OncePerRequestFilter {
+
+    private static final String BEARER = "Bearer ";
+
+    private final String sseEndpoint;
+    private final String messageEndpoint;
+
+    AccountTokenFilter(@Value("${spring.ai.mcp.server.sse-endpoint:/sse}") String sseEndpoint,
+            @Value("${spring.ai.mcp.server.sse-message-endpoint:/mcp/message}") String messageEndpoint) {
+        this.sseEndpoint = sseEndpoint;
+        this.messageEndpoint = messageEndpoint;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !path.equals(sseEndpoint) && !path.equals(messageEndpoint);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String token = bearerToken(request.getHeader(HttpHeaders.AUTHORIZATION));
+        if (token == null) {
+            response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer");
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "A OneDrive bearer token is required");
+            return;
+        }
+        try (AccountContexts.Scope scope = AccountContexts.bind(token)) {
+            chain.doFilter(request, response);
+        }
+    }
+
+    static String bearerToken(String authorization) {
+        if (authorization == null || !authorization.regionMatches(true, 0, BEARER, 0, BEARER.length())) {
+            return null;
+        }
+        String token = authorization.substring(BEARER.length()).trim();
+        return token.isEmpty() ? null : token;
+    }
+}
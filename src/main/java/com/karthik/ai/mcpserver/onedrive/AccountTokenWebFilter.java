@@ -0,0 +1,51 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * The WebFlux counterpart of {@link AccountTokenFilter}, for the {@code async} profile: the bearer
+ * token of an MCP request is put into the Reactor context of the exchange, from where
+ * {@link AccountContexts} reads it on whichever thread a tool call of the request runs.
+ */
+@Component
+@ConditionalOnProperty(prefix = "onedrive.accounts", name = "enabled", havingValue = "true")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+class AccountTokenWebFilter implements WebFilter {
+
+    private final String sseEndpoint;
+    private final String messageEndpoint;
+
+    AccountTokenWebFilter(@Value("${spring.ai.mcp.server.sse-endpoint:/sse}") String sseEndpoint,
+            @Value("${spring.ai.mcp.server.sse-message-endpoint:/mcp/message}") String messageEndpoint) {
+        this.sseEndpoint = sseEndpoint;
+        this.messageEndpoint = messageEndpoint;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String path = exchange.getRequest().getPath().pathWithinApplication().value();
+        if (!path.equals(sseEndpoint) && !path.equals(messageEndpoint)) {
+            return chain.filter(exchange);
+        }
+        String token = AccountTokenFilter.bearerToken(exchange.getRequest().getHeaders()
+                .getFirst(HttpHeaders.AUTHORIZATION));
+        if (token == null) {
+            ServerHttpResponse response = exchange.getResponse();
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            response.getHeaders().set(HttpHeaders.WWW_AUTHENTICATE, "Bearer");
+            return response.setComplete();
+        }
+        return chain.filter(exchange).contextWrite(context -> context.put(AccountContexts.TOKEN_KEY, token));
+    }
+}
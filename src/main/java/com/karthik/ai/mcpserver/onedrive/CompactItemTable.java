@@ -0,0 +1,95 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Function;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * The compact tool output: column names once, then one array per item instead of an object with
+ * repeated keys. The {@code path} and {@code webUrl} columns only hold what follows the prefix
+ * that all rows share, which is written once as {@code pathPrefix} and {@code webUrlPrefix}.
+ * In a folder listing, folders have a {@code childCount} and a null {@code fileType}, files the
+ * other way round.
+ */
+final class CompactItemTable {
+
+    private static final List<String> FILE_COLUMNS = List.of("name", "fileType", "path", "webUrl");
+    private static final List<String> CONTENT_COLUMNS = List.of("name", "fileType", "path", "webUrl", "childCount");
+
+    private CompactItemTable() {
+    }
+
+    /**
+     * Writes the table fields into the object that {@code generator} is in.
+     *
+     * @param withFolders whether the items may be folders, which adds the childCount column
+     */
+    static void write(JsonGenerator generator, List<DriveItem> items, boolean withFolders) throws IOException {
+        String pathPrefix = commonPrefix(items, DriveItem::parentPath);
+        String webUrlPrefix = commonPrefix(items, DriveItem::webUrl);
+        generator.writeArrayFieldStart("columns");
+        for (String column : withFolders ? CONTENT_COLUMNS : FILE_COLUMNS) {
+            generator.writeString(column);
+        }
+        generator.writeEndArray();
+        generator.writeStringField("pathPrefix", pathPrefix);
+        generator.writeStringField("webUrlPrefix", webUrlPrefix);
+        generator.writeArrayFieldStart("rows");
+        for (DriveItem item : items) {
+            boolean folder = withFolders && item.folder();
+            generator.writeStartArray();
+            generator.writeString(item.name());
+            if (folder) {
+                generator.writeNull();
+            } else {
+                generator.writeString(item.fileType());
+            }
+            generator.writeString(value(item.parentPath()).substring(pathPrefix.length()));
+            generator.writeString(value(item.webUrl()).substring(webUrlPrefix.length()));
+            if (folder) {
+                generator.writeNumber(item.childCount());
+            } else if (withFolders) {
+                generator.writeNull();
+            }
+            generator.writeEndArray();
+        }
+        generator.writeEndArray();
+    }
+
+    /**
+     * The longest prefix of {@code field} shared by all items that ends on a path segment
+     * boundary, so that no row is left with a partial segment.
+     */
+    static String commonPrefix(List<DriveItem> items, Function<DriveItem, String> field) {
+        String prefix = null;
+        for (DriveItem item : items) {
+            String value = value(field.apply(item));
+            if (prefix == null) {
+                prefix = value;
+                continue;
+            }
+            int length = 0;
+            int max = Math.min(prefix.length(), value.length());
+            while (length < max && prefix.charAt(length) == value.charAt(length)) {
+                length++;
+            }
+            prefix = prefix.substring(0, length);
+        }
+        if (prefix == null) {
+            return "";
+        }
+        for (DriveItem item : items) {
+            String value = value(field.apply(item));
+            if (value.length() > prefix.length() && value.charAt(prefix.length()) != '/') {
+                return prefix.substring(0, prefix.lastIndexOf('/') + 1);
+            }
+        }
+        return prefix;
+    }
+
+    private static String value(String value) {
+        return value != null ? value : "";
+    }
+}
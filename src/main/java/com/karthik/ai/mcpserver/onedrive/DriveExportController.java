@@ -0,0 +1,88 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Streams the metadata of a folder and everything under it as a chunked NDJSON response, for
+ * clients that want the whole subtree without going through MCP. The response is written while
+ * the folders are listed and flushed after each one. It is off unless
+ * {@code onedrive.export.http-enabled} is set.
+ * <p>
+ * Every request must carry an {@code Authorization: Bearer} token, or it is refused with 401.
+ * With {@code onedrive.accounts.enabled} the export is served as the account of that token;
+ * otherwise the token must be the configured access token, so the endpoint never exports a drive
+ * that the caller could not read with its own token.
+ */
+@RestController
+@ConditionalOnProperty(prefix = "onedrive.export", name = "http-enabled", havingValue = "true")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+class DriveExportController {
+
+    private static final Logger logger = LoggerFactory.getLogger(DriveExportController.class);
+
+    private final OnedriveService onedriveService;
+    private final byte[] accessToken;
+    private final AccountContexts accountContexts;
+
+    @Autowired
+    DriveExportController(OnedriveService onedriveService, @Value("${onedrive.access-token}") String accessToken,
+            ObjectProvider<AccountContexts> accounts) {
+        this(onedriveService, accessToken, accounts.getIfAvailable());
+    }
+
+    /**
+     * @param accountContexts the accounts to serve, or null to serve only the configured one
+     */
+    DriveExportController(OnedriveService onedriveService, String accessToken, AccountContexts accountContexts) {
+        this.onedriveService = onedriveService;
+        this.accessToken = accessToken.getBytes(StandardCharsets.UTF_8);
+        this.accountContexts = accountContexts;
+    }
+
+    @GetMapping(path = "${onedrive.export.http-path:/export/metadata}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    ResponseEntity<StreamingResponseBody> export(@RequestParam(name = "folder", required = false) String folderPath,
+            @RequestHeader(name = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        OnedriveService service = serviceFor(AccountTokenFilter.bearerToken(authorization));
+        if (service == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).header(HttpHeaders.WWW_AUTHENTICATE, "Bearer").build();
+        }
+        StreamingResponseBody body = out -> {
+            DriveExporter.Result result = service.exportFolderMetadata(folderPath, out);
+            logger.info("Streamed {} records from {} folders in {}s", result.records(), result.folders(),
+                    Math.round(result.seconds()));
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    /**
+     * The service that exports as the account of {@code token}, or null when the token may not
+     * export.
+     */
+    private OnedriveService serviceFor(String token) {
+        if (token == null) {
+            return null;
+        }
+        if (accountContexts != null) {
+            return accountContexts.account(token).service();
+        }
+        return MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), accessToken) ? onedriveService : null;
+    }
+}
@@ -0,0 +1,398 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientResponseException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Exports the metadata of a folder and everything under it as NDJSON, one record per line. The
+ * subtree is walked depth first, one folder listing at a time, and every page of a listing is
+ * written out as it is read, so memory grows with the folders still to be listed and never with
+ * the number of files.
+ * <p>
+ * An export to a file in {@code directory} leaves a checkpoint next to it every
+ * {@code checkpoint-interval}: the folders still to be listed and how much of the file they
+ * follow. Exporting to the same file again cuts the file back to the checkpoint and carries on
+ * from there. The checkpoint is removed once the export is complete. Progress and throughput are
+ * logged every {@code progress-interval}.
+ * <p>
+ * Exports to files need {@code onedrive.export.enabled}, streamed exports
+ * {@code onedrive.export.http-enabled}. A per-token account exports on its own {@link GraphClient}
+ * through {@link #forAccount}, and only as a stream, since the export directory is shared.
+ */
+@Component
+class DriveExporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(DriveExporter.class);
+
+    private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+
+    private final GraphClient graphClient;
+    private final boolean enabled;
+    private final boolean streamEnabled;
+    private final String disabledReason;
+    private final Path directory;
+    private final Duration checkpointInterval;
+    private final Duration progressInterval;
+    private final Clock clock;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final AtomicLong exported;
+
+    @Autowired
+    DriveExporter(GraphClient graphClient, @Value("${onedrive.export.enabled:false}") boolean enabled,
+            @Value("${onedrive.export.http-enabled:false}") boolean streamEnabled,
+            @Value("${onedrive.export.directory:${user.home}/.onedrive-mcp-server/exports}") String directory,
+            @Value("${onedrive.export.checkpoint-interval:PT5S}") Duration checkpointInterval,
+            @Value("${onedrive.export.progress-interval:PT10S}") Duration progressInterval) {
+        this(graphClient, enabled, streamEnabled, "exports are disabled, see onedrive.export.enabled",
+                Path.of(directory), checkpointInterval, progressInterval, Clock.systemUTC(), new AtomicLong());
+    }
+
+    DriveExporter(GraphClient graphClient, boolean enabled, Path directory, Duration checkpointInterval,
+            Duration progressInterval, Clock clock) {
+        this(graphClient, enabled, enabled, "exports are disabled, see onedrive.export.enabled", directory,
+                checkpointInterval, progressInterval, clock, new AtomicLong());
+    }
+
+    private DriveExporter(GraphClient graphClient, boolean enabled, boolean streamEnabled, String disabledReason,
+            Path directory, Duration checkpointInterval, Duration progressInterval, Clock clock,
+            AtomicLong exported) {
+        this.graphClient = graphClient;
+        this.enabled = enabled;
+        this.streamEnabled = streamEnabled;
+        this.disabledReason = disabledReason;
+        this.directory = directory;
+        this.checkpointInterval = checkpointInterval;
+        this.progressInterval = progressInterval;
+        this.clock = clock;
+        this.exported = exported;
+    }
+
+    /**
+     * An exporter that refuses every export, for services built without one.
+     */
+    static DriveExporter disabled() {
+        return new DriveExporter(null, false, Path.of(""), Duration.ZERO, Duration.ZERO, Clock.systemUTC());
+    }
+
+    /**
+     * This exporter on the client of a per-token account. It streams exports when this one does,
+     * counting them with this one's, and refuses exports to files.
+     */
+    DriveExporter forAccount(GraphClient accountClient) {
+        return new DriveExporter(accountClient, false, streamEnabled,
+                "exports to files are only available to the configured account", directory, checkpointInterval,
+                progressInterval, clock, exported);
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Records exported so far, by all exports.
+     */
+    long exported() {
+        return exported.get();
+    }
+
+    /**
+     * Exports {@code folderPath} to {@code fileName} in the export directory, resuming from the
+     * checkpoint of an earlier export of the same folder to the same file.
+     */
+    Result exportToFile(String folderPath, String fileName, ListingPaths listingPaths, RecordWriter writer)
+            throws IOException {
+        if (!enabled) {
+            throw new IllegalStateException(disabledReason);
+        }
+        Path file = exportFile(fileName);
+        Path checkpointFile = file.resolveSibling(file.getFileName() + CHECKPOINT_SUFFIX);
+        String root = FolderListingCache.normalize(folderPath);
+        Files.createDirectories(directory);
+
+        Checkpoint checkpoint = readCheckpoint(checkpointFile, root, file);
+        boolean resumed = checkpoint != null;
+        if (!resumed) {
+            checkpoint = new Checkpoint(root, 0, 0, 0, List.of(folderPath == null ? "" : folderPath.trim()));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // drop whatever was written after the checkpoint, or the whole file of a fresh export
+            channel.truncate(checkpoint.bytes());
+            channel.position(checkpoint.bytes());
+            Export export = new Export(fileName, checkpoint, Channels.newOutputStream(channel), writer);
+            export.onFolderDone = () -> {
+                if (export.sinceCheckpoint(checkpointInterval)) {
+                    writeCheckpoint(checkpointFile, export.checkpoint(channel.position()));
+                }
+            };
+            export.run(listingPaths);
+            Files.deleteIfExists(checkpointFile);
+            return export.result(fileName, channel.position(), resumed);
+        }
+    }
+
+    /**
+     * Streams the export of {@code folderPath} to {@code out}, flushing it after every folder. A
+     * stream has no checkpoint to resume from.
+     */
+    Result export(String folderPath, OutputStream out, ListingPaths listingPaths, RecordWriter writer)
+            throws IOException {
+        if (!streamEnabled) {
+            throw new IllegalStateException("streamed exports are disabled, see onedrive.export.http-enabled");
+        }
+        String start = folderPath == null ? "" : folderPath.trim();
+        Export export = new Export(start, new Checkpoint(FolderListingCache.normalize(folderPath), 0, 0, 0,
+                List.of(start)), out, writer);
+        export.run(listingPaths);
+        return export.result(null, -1, false);
+    }
+
+    private Path exportFile(String fileName) {
+        if (fileName == null || fileName.isBlank()) {
+            throw new IllegalArgumentException("fileName is required");
+        }
+        Path name = Path.of(fileName.trim());
+        if (name.getNameCount() != 1 || name.isAbsolute() || name.toString().startsWith(".")
+                || name.toString().endsWith(CHECKPOINT_SUFFIX)) {
+            throw new IllegalArgumentException("fileName must be a plain file name, such as 'drive.ndjson'");
+        }
+        return directory.resolve(name);
+    }
+
+    /**
+     * The checkpoint left by an interrupted export of the same folder, or null to start over.
+     */
+    private Checkpoint readCheckpoint(Path checkpointFile, String root, Path file) {
+        if (!Files.exists(checkpointFile)) {
+            return null;
+        }
+        try {
+            Checkpoint checkpoint = objectMapper.readValue(checkpointFile.toFile(), Checkpoint.class);
+            if (checkpoint.root().equals(root) && Files.exists(file) && Files.size(file) >= checkpoint.bytes()) {
+                return checkpoint;
+            }
+            logger.info("Checkpoint {} belongs to another export, starting over", checkpointFile);
+        } catch (IOException e) {
+            logger.warn("Checkpoint {} is unreadable, starting over: {}", checkpointFile, e.getMessage());
+        }
+        return null;
+    }
+
+    private void writeCheckpoint(Path checkpointFile, Checkpoint checkpoint) throws IOException {
+        Path temp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        objectMapper.writeValue(temp.toFile(), checkpoint);
+        Files.move(temp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * One walk over a subtree.
+     */
+    private final class Export {
+
+        private final String name;
+        private final String root;
+        private final Deque<String> pending;
+        private final JsonGenerator generator;
+        private final RecordWriter writer;
+        private final long startNanos = System.nanoTime();
+        private final long resumedRecords;
+        private long records;
+        private long folders;
+        private long checkpointedAt;
+        private long loggedAt;
+        private FolderDone onFolderDone = () -> { };
+
+        Export(String name, Checkpoint from, OutputStream out, RecordWriter writer) throws IOException {
+            this.name = name;
+            this.root = from.root();
+            this.pending = new ArrayDeque<>(from.pending());
+            this.records = from.records();
+            this.folders = from.folders();
+            this.resumedRecords = from.records();
+            this.writer = writer;
+            this.generator = objectMapper.getFactory().createGenerator(out)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // records are separated by the newlines written after them instead
+            this.generator.setRootValueSeparator(null);
+            this.checkpointedAt = clock.millis();
+            this.loggedAt = checkpointedAt;
+        }
+
+        void run(ListingPaths listingPaths) throws IOException {
+            try {
+                while (!pending.isEmpty()) {
+                    String folderPath = pending.peek();
+                    List<String> subfolders = list(folderPath, listingPaths);
+                    pending.pop();
+                    for (int i = subfolders.size() - 1; i >= 0; i--) {
+                        pending.push(subfolders.get(i));
+                    }
+                    folders++;
+                    generator.flush();
+                    onFolderDone.done();
+                    logProgress(false);
+                }
+                logProgress(true);
+            } finally {
+                generator.close();
+            }
+        }
+
+        /**
+         * Writes the records of one folder, page by page, and returns its subfolders.
+         */
+        private List<String> list(String folderPath, ListingPaths listingPaths) throws IOException {
+            List<String> subfolders = new ArrayList<>();
+            try {
+                read(folderPath, listingPaths, subfolders);
+            } catch (RestClientResponseException e) {
+                // only the folder being exported itself must exist
+                if (!e.getStatusCode().isSameCodeAs(HttpStatus.NOT_FOUND) || folders == 0) {
+                    throw e;
+                }
+                // removed since its parent was listed
+                logger.debug("Export of {} skipped {}, which no longer exists", name, folderPath);
+            }
+            return subfolders;
+        }
+
+        /**
+         * Reads the listing of one folder. A 404 before any of its records were written may come
+         * from a stale id for a renamed or moved folder, so the id is forgotten and the folder is
+         * listed once more by its path.
+         */
+        private void read(String folderPath, ListingPaths listingPaths, List<String> subfolders) throws IOException {
+            long before = records;
+            try {
+                readListing(folderPath, listingPaths.apiPath(folderPath), subfolders);
+            } catch (RestClientResponseException e) {
+                if (!e.getStatusCode().isSameCodeAs(HttpStatus.NOT_FOUND) || records != before
+                        || !listingPaths.forget(folderPath)) {
+                    throw e;
+                }
+                readListing(folderPath, listingPaths.apiPath(folderPath), subfolders);
+            }
+        }
+
+        private void readListing(String folderPath, String apiPath, List<String> subfolders) throws IOException {
+            try {
+                graphClient.readItems(graphClient.open(apiPath), item -> {
+                    try {
+                        writer.write(item, generator);
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    records++;
+                    exported.incrementAndGet();
+                    if (item.folder() && item.childCount() != 0) {
+                        subfolders.add(folderPath.isEmpty() ? item.name() : folderPath + "/" + item.name());
+                    }
+                    return true;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        boolean sinceCheckpoint(Duration interval) {
+            long now = clock.millis();
+            if (now - checkpointedAt < interval.toMillis()) {
+                return false;
+            }
+            checkpointedAt = now;
+            return true;
+        }
+
+        Checkpoint checkpoint(long bytes) {
+            return new Checkpoint(root, bytes, records, folders, List.copyOf(pending));
+        }
+
+        Result result(String file, long bytes, boolean resumed) {
+            double seconds = (System.nanoTime() - startNanos) / 1e9;
+            return new Result(file, records, folders, bytes, seconds, rate(seconds), resumed);
+        }
+
+        private void logProgress(boolean complete) {
+            long now = clock.millis();
+            if (!complete && now - loggedAt < progressInterval.toMillis()) {
+                return;
+            }
+            loggedAt = now;
+            double seconds = (System.nanoTime() - startNanos) / 1e9;
+            logger.info("Export of {} {}: {} records from {} folders, {} records/s", name,
+                    complete ? "complete" : "running", records, folders, Math.round(rate(seconds)));
+        }
+
+        private double rate(double seconds) {
+            return seconds > 0 ? (records - resumedRecords) / seconds : 0;
+        }
+    }
+
+    @FunctionalInterface
+    interface ListingPaths {
+        String apiPath(String folderPath) throws IOException;
+
+        /**
+         * Forgets the id that {@link #apiPath} addressed {@code folderPath} by.
+         *
+         * @return whether there was one, so that the folder is worth listing again by its path
+         */
+        default boolean forget(String folderPath) {
+            return false;
+        }
+    }
+
+    @FunctionalInterface
+    interface RecordWriter {
+        void write(DriveItem item, JsonGenerator generator) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface FolderDone {
+        void done() throws IOException;
+    }
+
+    /**
+     * Where an interrupted export carries on: {@code bytes} of the file hold the records of
+     * {@code folders} folders, and {@code pending} are the folders still to be listed, next first.
+     */
+    record Checkpoint(String root, long bytes, long records, long folders, List<String> pending) {
+
+    }
+
+    /**
+     * @param file the name of the exported file, null for a stream
+     * @param bytes its size, -1 for a stream
+     * @param recordsPerSecond the throughput of this run, not counting records of a resumed export
+     */
+    record Result(String file, long records, long folders, long bytes, double seconds, double recordsPerSecond,
+            boolean resumed) {
+
+    }
+}
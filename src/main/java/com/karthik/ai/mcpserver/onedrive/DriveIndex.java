@@ -0,0 +1,215 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientResponseException;
+
+/**
+ * Optional in-memory index of drive item metadata, built from {@code /me/drive/root/delta} and kept
+ * current by replaying the stored delta link on a schedule. While the last successful sync is
+ * within {@code onedrive.index.max-staleness}, name and folder-scoped searches are answered from
+ * memory; otherwise callers fall back to the live Graph search. Folders that a delta renames, moves
+ * or deletes are forgotten by the {@link PathIdTrie}, so that their old paths are not served by id.
+ */
+@Component
+class DriveIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(DriveIndex.class);
+
+    static final String DELTA_PATH =
+            "/me/drive/root/delta?$select=id,name,webUrl,file,folder,parentReference,root,deleted,lastModifiedDateTime";
+
+    private static final String ROOT_PATH = "/drive/root:";
+
+    private final GraphClient graphClient;
+    private final PathIdTrie pathIds;
+    private final boolean enabled;
+    private final Duration maxStaleness;
+    private final Clock clock;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile String deltaLink;
+    private volatile Instant lastSynced;
+
+    @Autowired
+    DriveIndex(GraphClient graphClient,
+            @Value("${onedrive.index.enabled:false}") boolean enabled,
+            @Value("${onedrive.index.max-staleness:PT5M}") Duration maxStaleness,
+            PathIdTrie pathIds) {
+        this(graphClient, enabled, maxStaleness, pathIds, Clock.systemUTC());
+    }
+
+    DriveIndex(GraphClient graphClient, boolean enabled, Duration maxStaleness) {
+        this(graphClient, enabled, maxStaleness, Clock.systemUTC());
+    }
+
+    DriveIndex(GraphClient graphClient, boolean enabled, Duration maxStaleness, Clock clock) {
+        this(graphClient, enabled, maxStaleness, new PathIdTrie(false, Duration.ZERO, 0), clock);
+    }
+
+    DriveIndex(GraphClient graphClient, boolean enabled, Duration maxStaleness, PathIdTrie pathIds, Clock clock) {
+        this.graphClient = graphClient;
+        this.pathIds = pathIds;
+        this.enabled = enabled;
+        this.maxStaleness = maxStaleness;
+        this.clock = clock;
+    }
+
+    /**
+     * Whether searches may be answered from the index: it is enabled and has completed a sync
+     * within the freshness bound.
+     */
+    boolean isFresh() {
+        Instant synced = lastSynced;
+        return enabled && synced != null && !synced.plus(maxStaleness).isBefore(clock.instant());
+    }
+
+    @Scheduled(initialDelayString = "${onedrive.index.initial-delay:PT0S}",
+            fixedDelayString = "${onedrive.index.refresh-interval:PT1M}")
+    void refresh() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            sync();
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Drive index refresh failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Applies the changes since the stored delta link, or enumerates the whole drive on first use
+     * and whenever Graph asks for a resync (410 Gone).
+     */
+    synchronized void sync() throws IOException {
+        String link = deltaLink;
+        ClientHttpResponse response;
+        try {
+            response = link != null ? graphClient.open(URI.create(link)) : graphClient.open(DELTA_PATH);
+        } catch (RestClientResponseException e) {
+            if (link == null || !e.getStatusCode().isSameCodeAs(HttpStatus.GONE)) {
+                throw e;
+            }
+            logger.info("Drive index delta link expired, rebuilding");
+            reset();
+            response = graphClient.open(DELTA_PATH);
+        }
+        if (link == null) {
+            // a full enumeration must not be served half-built
+            lastSynced = null;
+        }
+        DriveItemReader.Page last = graphClient.readItems(response, item -> {
+            apply(item);
+            return true;
+        });
+        deltaLink = last.deltaLink();
+        lastSynced = clock.instant();
+    }
+
+    /**
+     * Returns items whose name contains {@code query} (case-insensitive), optionally restricted to
+     * the subtree of {@code folder}, which is a path relative to the drive root such as
+     * "Documents/Bills".
+     */
+    List<DriveItem> search(String query, String folder, boolean foldersOnly, int limit) {
+        String needle = query != null ? query.toLowerCase(Locale.ROOT) : "";
+        String scope = folder != null && !folder.isEmpty()
+                ? (ROOT_PATH + "/" + trimSlashes(folder)).toLowerCase(Locale.ROOT)
+                : null;
+        List<DriveItem> results = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (results.size() >= limit) {
+                break;
+            }
+            DriveItem item = entry.item();
+            if (item.root() || (foldersOnly && !item.folder()) || !entry.lowerName().contains(needle)) {
+                continue;
+            }
+            String parentPath = folderPath(item.parentId());
+            if (scope != null && !isWithin(parentPath.toLowerCase(Locale.ROOT), scope)) {
+                continue;
+            }
+            results.add(item.withParentPath(parentPath));
+        }
+        return results;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void apply(DriveItem item) {
+        Entry previous;
+        if (item.deleted()) {
+            previous = entries.remove(item.id());
+        } else {
+            previous = entries.put(item.id(), new Entry(item, item.name().toLowerCase(Locale.ROOT)));
+        }
+        if (previous != null && previous.item().folder() && (item.deleted()
+                || !previous.item().name().equals(item.name()) || !previous.item().parentId().equals(item.parentId()))) {
+            pathIds.invalidateId(item.id());
+        }
+    }
+
+    private void reset() {
+        lastSynced = null;
+        deltaLink = null;
+        entries.clear();
+    }
+
+    /**
+     * Rebuilds the Graph style path ("/drive/root:/Documents") of a folder from the parent chain,
+     * because delta responses do not carry parentReference.path.
+     */
+    private String folderPath(String id) {
+        StringBuilder path = new StringBuilder();
+        Entry entry = entries.get(id);
+        int depth = 0;
+        while (entry != null && !entry.item().root()) {
+            if (++depth > 256) {
+                // a cycle can only come from a torn update; treat the path as unknown
+                return "";
+            }
+            path.insert(0, "/" + entry.item().name());
+            entry = entries.get(entry.item().parentId());
+        }
+        return entry != null ? ROOT_PATH + path : "";
+    }
+
+    private static boolean isWithin(String path, String scope) {
+        return path.equals(scope) || path.startsWith(scope + "/");
+    }
+
+    private static String trimSlashes(String path) {
+        int start = 0;
+        int end = path.length();
+        while (start < end && path.charAt(start) == '/') {
+            start++;
+        }
+        while (end > start && path.charAt(end - 1) == '/') {
+            end--;
+        }
+        return path.substring(start, end);
+    }
+
+    private record Entry(DriveItem item, String lowerName) {
+
+    }
+}
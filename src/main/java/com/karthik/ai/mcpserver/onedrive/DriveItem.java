@@ -0,0 +1,31 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+/**
+ * The subset of a Graph driveItem that the tools project, read straight off the response stream
+ * by {@link DriveItemReader}. {@code root} and {@code deleted} mirror the facets of the same name,
+ * which only delta responses carry. {@code lastModified} is the ISO-8601 lastModifiedDateTime, or
+ * empty when the response did not select it. {@code driveId} is the drive of the parent folder, or
+ * empty when the response did not name it.
+ */
+record DriveItem(String id, String name, String webUrl, String fileType, String parentPath,
+        boolean folder, int childCount, String parentId, boolean root, boolean deleted,
+        String eTag, String cTag, String lastModified, String driveId) {
+
+    DriveItem(String id, String name, String webUrl, String fileType, String parentPath,
+            boolean folder, int childCount, String parentId, boolean root, boolean deleted,
+            String eTag, String cTag, String lastModified) {
+        this(id, name, webUrl, fileType, parentPath, folder, childCount, parentId, root, deleted, eTag, cTag,
+                lastModified, "");
+    }
+
+    DriveItem(String id, String name, String webUrl, String fileType, String parentPath,
+            boolean folder, int childCount, String parentId, boolean root, boolean deleted,
+            String eTag, String cTag) {
+        this(id, name, webUrl, fileType, parentPath, folder, childCount, parentId, root, deleted, eTag, cTag, "");
+    }
+
+    DriveItem withParentPath(String parentPath) {
+        return new DriveItem(id, name, webUrl, fileType, parentPath, folder, childCount, parentId, root, deleted,
+                eTag, cTag, lastModified, driveId);
+    }
+}
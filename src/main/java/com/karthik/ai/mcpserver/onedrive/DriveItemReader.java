@@ -0,0 +1,417 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+/**
+ * Token-streaming reader for Graph driveItem collections. Only the fields that end up in the tool
+ * output are materialized; everything else is skipped without building a tree.
+ */
+class DriveItemReader {
+
+    private final JsonFactory jsonFactory;
+
+    DriveItemReader(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    /**
+     * Reads one page of a collection, handing each item of {@code value} to {@code consumer} until
+     * it returns false.
+     *
+     * @return the page's links; the next link is null if this is the last page or the consumer stopped reading
+     */
+    Page read(InputStream body, Predicate<DriveItem> consumer) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a JSON object");
+            }
+            return readPage(parser, consumer, false);
+        }
+    }
+
+    /**
+     * Starts reading one page of a collection whose body arrives in chunks, as on a non-blocking
+     * client. Items are handed to {@code consumer} as soon as their last byte has been fed, so
+     * no more than one item is held besides the chunk being fed.
+     */
+    PageFeeder feedPage(Predicate<DriveItem> consumer) throws IOException {
+        return new PageFeeder(jsonFactory.createNonBlockingByteArrayParser(), consumer);
+    }
+
+    /**
+     * Reads a JSON $batch response whose sub-responses are driveItem collections. Successful
+     * bodies are streamed to {@link GraphClient.BatchConsumer#items}; a body that arrives before
+     * its status is buffered as tokens and replayed once the status is known.
+     *
+     * @return the @odata.nextLink of every sub-response that has more pages, by request id
+     */
+    Map<Integer, String> readBatch(InputStream body, GraphClient.BatchConsumer consumer) throws IOException {
+        Map<Integer, String> nextLinks = new HashMap<>();
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                if ("responses".equals(field) && token == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        readBatchResponse(parser, consumer, nextLinks);
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return nextLinks;
+    }
+
+    private void readBatchResponse(JsonParser parser, GraphClient.BatchConsumer consumer,
+            Map<Integer, String> nextLinks) throws IOException {
+        int id = -1;
+        int status = 0;
+        TokenBuffer bufferedBody = null;
+        boolean bodyRead = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            if ("id".equals(field)) {
+                id = Integer.parseInt(parser.getValueAsString("-1"));
+            } else if ("status".equals(field)) {
+                status = parser.getValueAsInt();
+            } else if ("body".equals(field) && token == JsonToken.START_OBJECT) {
+                if (id >= 0 && status != 0) {
+                    readBatchBody(parser, id, status, consumer, nextLinks);
+                    bodyRead = true;
+                } else {
+                    bufferedBody = new TokenBuffer(parser);
+                    bufferedBody.copyCurrentStructure(parser);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (id < 0) {
+            throw new JsonParseException(parser, "Batch response without an id");
+        }
+        if (bufferedBody != null) {
+            try (JsonParser replay = bufferedBody.asParser()) {
+                replay.nextToken();
+                readBatchBody(replay, id, status, consumer, nextLinks);
+            }
+        } else if (!bodyRead) {
+            consumer.failed(id, status, "no response body");
+        }
+    }
+
+    private void readBatchBody(JsonParser parser, int id, int status, GraphClient.BatchConsumer consumer,
+            Map<Integer, String> nextLinks) throws IOException {
+        if (status >= 200 && status < 300) {
+            // the rest of the batch follows this body, so it has to be read to the end even when the consumer stops
+            Page page = readPage(parser, consumer.items(id), true);
+            if (page.nextLink() != null) {
+                nextLinks.put(id, page.nextLink());
+            }
+        } else {
+            consumer.failed(id, status, readErrorMessage(parser));
+        }
+    }
+
+    /**
+     * Reads {@code error.message} out of a Graph error body, skipping everything else.
+     */
+    private String readErrorMessage(JsonParser parser) throws IOException {
+        String message = "";
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if ("error".equals(field)) {
+                message = readStringFields(parser, "message")[0];
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return message;
+    }
+
+    private Page readPage(JsonParser parser, Predicate<DriveItem> consumer, boolean drain) throws IOException {
+        String nextLink = null;
+        String deltaLink = null;
+        boolean stopped = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            if ("value".equals(field) && token == JsonToken.START_ARRAY) {
+                if (!readValues(parser, consumer)) {
+                    if (!drain) {
+                        return Page.STOPPED;
+                    }
+                    stopped = true;
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        parser.skipChildren();
+                    }
+                }
+            } else if ("@odata.nextLink".equals(field) && token == JsonToken.VALUE_STRING) {
+                nextLink = parser.getText();
+            } else if ("@odata.deltaLink".equals(field) && token == JsonToken.VALUE_STRING) {
+                deltaLink = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return stopped ? Page.STOPPED : new Page(nextLink, deltaLink);
+    }
+
+    /**
+     * Reads a single driveItem response, such as {@code GET /me/drive/root:/Documents}.
+     */
+    DriveItem readItem(InputStream body) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a JSON object");
+            }
+            return readItem(parser);
+        }
+    }
+
+    private boolean readValues(JsonParser parser, Predicate<DriveItem> consumer) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == null) {
+                throw new JsonParseException(parser, "Unexpected end of value array");
+            }
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+            } else if (!consumer.test(readItem(parser))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private DriveItem readItem(JsonParser parser) throws IOException {
+        String id = "";
+        String name = "";
+        String webUrl = "";
+        String fileType = "";
+        String parentPath = "";
+        String parentId = "";
+        boolean folder = false;
+        int childCount = 0;
+        boolean root = false;
+        boolean deleted = false;
+        String eTag = "";
+        String cTag = "";
+        String lastModified = "";
+        String driveId = "";
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "id" -> id = parser.getValueAsString("");
+                case "name" -> name = parser.getValueAsString("");
+                case "webUrl" -> webUrl = parser.getValueAsString("");
+                case "eTag" -> eTag = parser.getValueAsString("");
+                case "cTag" -> cTag = parser.getValueAsString("");
+                case "lastModifiedDateTime" -> lastModified = parser.getValueAsString("");
+                case "file" -> {
+                    fileType = token.isScalarValue() ? parser.getValueAsString("") : "";
+                    parser.skipChildren();
+                }
+                case "folder" -> {
+                    folder = true;
+                    childCount = readIntField(parser, "childCount");
+                }
+                case "parentReference" -> {
+                    String[] reference = readStringFields(parser, "path", "id", "driveId");
+                    parentPath = reference[0];
+                    parentId = reference[1];
+                    driveId = reference[2];
+                }
+                case "root" -> {
+                    root = true;
+                    parser.skipChildren();
+                }
+                case "deleted" -> {
+                    deleted = true;
+                    parser.skipChildren();
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        return new DriveItem(id, name, webUrl, fileType, parentPath, folder, childCount,
+                parentId, root, deleted, eTag, cTag, lastModified, driveId);
+    }
+
+    private int readIntField(JsonParser parser, String name) throws IOException {
+        int result = 0;
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            return result;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if (name.equals(field)) {
+                result = parser.getValueAsInt();
+            }
+            parser.skipChildren();
+        }
+        return result;
+    }
+
+    private String[] readStringFields(JsonParser parser, String... names) throws IOException {
+        String[] result = new String[names.length];
+        Arrays.fill(result, "");
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            return result;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(field)) {
+                    result[i] = parser.getValueAsString("");
+                }
+            }
+            parser.skipChildren();
+        }
+        return result;
+    }
+
+    /**
+     * Reads a page fed chunk by chunk with the non-blocking parser. Only the tokens of the item
+     * being read are buffered; once it is complete they are replayed through the same item reader
+     * as a blocking read.
+     */
+    final class PageFeeder implements AutoCloseable {
+
+        private final JsonParser parser;
+        private final ByteArrayFeeder feeder;
+        private final Predicate<DriveItem> consumer;
+        // depth of the page's structure, 1 inside the page object and 2 inside its value array
+        private int depth;
+        private String field;
+        private boolean inValue;
+        private boolean complete;
+        private boolean stopped;
+        private TokenBuffer item;
+        private int itemDepth;
+        private String nextLink;
+        private String deltaLink;
+
+        private PageFeeder(JsonParser parser, Predicate<DriveItem> consumer) {
+            this.parser = parser;
+            this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+            this.consumer = consumer;
+        }
+
+        /**
+         * Parses the next chunk of the body. The chunk is no longer needed once this returns.
+         */
+        void feed(byte[] chunk, int offset, int length) throws IOException {
+            feeder.feedInput(chunk, offset, offset + length);
+            readAvailable();
+        }
+
+        /**
+         * Parses what is left once the whole body has been fed.
+         *
+         * @return the page's links; the next link is null if this is the last page or the consumer stopped reading
+         */
+        Page finish() throws IOException {
+            feeder.endOfInput();
+            readAvailable();
+            if (!complete) {
+                throw new JsonParseException(parser, "Unexpected end of page");
+            }
+            return stopped ? Page.STOPPED : new Page(nextLink, deltaLink);
+        }
+
+        @Override
+        public void close() throws IOException {
+            parser.close();
+        }
+
+        private void readAvailable() throws IOException {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                if (item != null) {
+                    copy(token);
+                } else if (depth == 0) {
+                    if (token != JsonToken.START_OBJECT || complete) {
+                        throw new JsonParseException(parser, "Expected a JSON object");
+                    }
+                    depth = 1;
+                } else if (depth == 1) {
+                    readPageToken(token);
+                } else if (inValue && depth == 2 && token == JsonToken.START_OBJECT) {
+                    item = new TokenBuffer(parser);
+                    itemDepth = 0;
+                    copy(token);
+                } else if (inValue && depth == 2 && token == JsonToken.END_ARRAY) {
+                    inValue = false;
+                    depth = 1;
+                } else {
+                    // skipped, like a field of the page other than value and the links
+                    depth += token.isStructStart() ? 1 : token.isStructEnd() ? -1 : 0;
+                }
+            }
+        }
+
+        private void readPageToken(JsonToken token) throws IOException {
+            if (token == JsonToken.FIELD_NAME) {
+                field = parser.currentName();
+            } else if (token == JsonToken.END_OBJECT) {
+                depth = 0;
+                complete = true;
+            } else if (token == JsonToken.START_ARRAY && "value".equals(field)) {
+                inValue = true;
+                depth = 2;
+            } else if (token == JsonToken.VALUE_STRING && "@odata.nextLink".equals(field)) {
+                nextLink = parser.getText();
+            } else if (token == JsonToken.VALUE_STRING && "@odata.deltaLink".equals(field)) {
+                deltaLink = parser.getText();
+            } else if (token.isStructStart()) {
+                depth++;
+            }
+        }
+
+        private void copy(JsonToken token) throws IOException {
+            item.copyCurrentEvent(parser);
+            itemDepth += token.isStructStart() ? 1 : token.isStructEnd() ? -1 : 0;
+            if (itemDepth > 0) {
+                return;
+            }
+            try (JsonParser replay = item.asParser()) {
+                replay.nextToken();
+                DriveItem read = readItem(replay);
+                if (!stopped && !consumer.test(read)) {
+                    // the rest of the body is still parsed so that the response can be released
+                    stopped = true;
+                }
+            }
+            item = null;
+        }
+    }
+
+    /**
+     * The paging links of a collection page. {@code nextLink} is set while more pages follow;
+     * {@code deltaLink} only appears on the last page of a delta query.
+     */
+    record Page(String nextLink, String deltaLink) {
+
+        static final Page STOPPED = new Page(null, null);
+    }
+}
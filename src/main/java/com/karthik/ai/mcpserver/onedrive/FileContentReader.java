@@ -0,0 +1,175 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientResponseException;
+
+/**
+ * Reads a text file one bounded chunk at a time with ranged requests for its {@code /content}.
+ * Only the requested bytes are transferred, read into a buffer no larger than
+ * {@code max-chunk-bytes}, so a file of any size costs at most one chunk of memory per call. A
+ * chunk ends on a character boundary, and its {@code nextOffset} is where the next one starts.
+ */
+@Component
+class FileContentReader {
+
+    /**
+     * The longest UTF-8 sequence, so that every chunk can hold at least one character.
+     */
+    private static final int MIN_CHUNK_BYTES = 4;
+
+    private static final int SKIP_BUFFER_BYTES = 8192;
+
+    private final GraphClient graphClient;
+    private final int maxChunkBytes;
+
+    FileContentReader(GraphClient graphClient, @Value("${onedrive.content.max-chunk-bytes:65536}") int maxChunkBytes) {
+        this.graphClient = graphClient;
+        this.maxChunkBytes = maxChunkBytes;
+    }
+
+    int maxChunkBytes() {
+        return maxChunkBytes;
+    }
+
+    /**
+     * Reads up to {@code length} bytes from {@code offset} of the file at {@code apiPath} and decodes
+     * them as text.
+     *
+     * @param apiPath the file's {@code /content} path
+     * @param length the chunk size in bytes, capped at {@code max-chunk-bytes}; 0 or less for the cap
+     * @throws IllegalArgumentException when the bytes are not text
+     */
+    Chunk read(String apiPath, long offset, int length) throws IOException {
+        if (offset < 0) {
+            throw new IllegalArgumentException("offset must not be negative");
+        }
+        int capacity = length <= 0 ? maxChunkBytes : Math.max(MIN_CHUNK_BYTES, Math.min(length, maxChunkBytes));
+        ClientHttpResponse response;
+        try {
+            response = graphClient.openRange(apiPath, offset, offset + capacity - 1);
+        } catch (RestClientResponseException e) {
+            if (e.getStatusCode().isSameCodeAs(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)) {
+                // the offset is at or past the end: "Content-Range: bytes */size"
+                HttpHeaders headers = e.getResponseHeaders();
+                return new Chunk("", offset, null, headers != null ? totalSize(headers) : -1);
+            }
+            throw e;
+        }
+        try (response; ReadableByteChannel channel = Channels.newChannel(response.getBody())) {
+            long size;
+            if (response.getStatusCode().isSameCodeAs(HttpStatus.PARTIAL_CONTENT)) {
+                size = totalSize(response.getHeaders());
+            } else {
+                // the range was ignored and the whole file is coming
+                size = response.getHeaders().getContentLength();
+                skip(channel, offset);
+            }
+            ByteBuffer bytes = ByteBuffer.allocate(capacity);
+            boolean endOfFile = false;
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes) < 0) {
+                    endOfFile = true;
+                    break;
+                }
+            }
+            bytes.flip();
+            endOfFile |= size >= 0 && offset + bytes.remaining() >= size;
+            return decode(bytes, offset, size, endOfFile, charset(response.getHeaders()));
+        }
+    }
+
+    private static Chunk decode(ByteBuffer bytes, long offset, long size, boolean endOfFile, Charset charset) {
+        // a NUL byte is not text in any charset that encodes it as one byte, unlike UTF-16
+        if ("\0".getBytes(charset).length == 1) {
+            for (int i = bytes.position(); i < bytes.limit(); i++) {
+                if (bytes.get(i) == 0) {
+                    throw new IllegalArgumentException("the file is not a text file");
+                }
+            }
+        }
+        if (offset == 0 && charset == StandardCharsets.UTF_8 && startsWithByteOrderMark(bytes)) {
+            bytes.position(3);
+        }
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer chars = CharBuffer.allocate((int) Math.ceil(bytes.remaining() * (double) decoder.maxCharsPerByte()));
+        decoder.decode(bytes, chars, endOfFile);
+        if (endOfFile) {
+            decoder.flush(chars);
+        }
+        chars.flip();
+        // bytes of a character cut off at the end of the chunk are left for the next one
+        Long nextOffset = endOfFile ? null : offset + bytes.position();
+        return new Chunk(chars.toString(), offset, nextOffset, size);
+    }
+
+    private static void skip(ReadableByteChannel channel, long count) throws IOException {
+        ByteBuffer discard = ByteBuffer.allocate((int) Math.min(SKIP_BUFFER_BYTES, Math.max(count, 1)));
+        long remaining = count;
+        while (remaining > 0) {
+            discard.clear().limit((int) Math.min(discard.capacity(), remaining));
+            int read = channel.read(discard);
+            if (read < 0) {
+                return;
+            }
+            remaining -= read;
+        }
+    }
+
+    private static boolean startsWithByteOrderMark(ByteBuffer bytes) {
+        return bytes.remaining() >= 3 && (bytes.get(0) & 0xFF) == 0xEF && (bytes.get(1) & 0xFF) == 0xBB
+                && (bytes.get(2) & 0xFF) == 0xBF;
+    }
+
+    /**
+     * The file size from a {@code Content-Range: bytes first-last/size} header, or -1 when it is
+     * missing or unknown.
+     */
+    static long totalSize(HttpHeaders headers) {
+        String contentRange = headers.getFirst(HttpHeaders.CONTENT_RANGE);
+        int slash = contentRange != null ? contentRange.lastIndexOf('/') : -1;
+        if (slash < 0) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentRange.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static Charset charset(HttpHeaders headers) {
+        MediaType contentType;
+        try {
+            contentType = headers.getContentType();
+        } catch (IllegalArgumentException e) {
+            return StandardCharsets.UTF_8;
+        }
+        Charset charset = contentType != null ? contentType.getCharset() : null;
+        return charset != null ? charset : StandardCharsets.UTF_8;
+    }
+
+    /**
+     * @param nextOffset where the next chunk starts, null at the end of the file
+     * @param size the file size in bytes, -1 when Graph did not say
+     */
+    record Chunk(String content, long offset, Long nextOffset, long size) {
+
+    }
+}
@@ -0,0 +1,305 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Bounded LRU cache of folder listings. An entry is served from memory until its TTL runs out;
+ * after that the folder is revalidated with {@code If-None-Match} against the cTag it had when it
+ * was listed, so an unchanged folder costs a 304 instead of a full listing. Many folders carry no
+ * cTag, so their eTag is used instead; a folder with neither is simply listed again.
+ * <p>
+ * Listings loaded from Graph are also written to the {@link MetadataStore}, and the listings it
+ * kept from the last run are restored at startup. A restored listing is served at once on its first
+ * use and revalidated in the background, so a restart does not start with a cold cache.
+ */
+@Component
+class FolderListingCache {
+
+    private final GraphClient graphClient;
+    private final boolean enabled;
+    private final Duration ttl;
+    private final int maxEntries;
+    private final Clock clock;
+    private final MetadataStore metadataStore;
+    private final Executor background;
+
+    private final Map<String, Entry> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+
+    @Autowired
+    FolderListingCache(GraphClient graphClient,
+            @Value("${onedrive.cache.enabled:false}") boolean enabled,
+            @Value("${onedrive.cache.ttl:PT30S}") Duration ttl,
+            @Value("${onedrive.cache.max-entries:256}") int maxEntries,
+            MetadataStore metadataStore) {
+        this(graphClient, enabled, ttl, maxEntries, Clock.systemUTC(), metadataStore,
+                command -> Thread.ofVirtual().start(command));
+    }
+
+    FolderListingCache(GraphClient graphClient, boolean enabled, Duration ttl, int maxEntries) {
+        this(graphClient, enabled, ttl, maxEntries, Clock.systemUTC());
+    }
+
+    FolderListingCache(GraphClient graphClient, boolean enabled, Duration ttl, int maxEntries, Clock clock) {
+        this(graphClient, enabled, ttl, maxEntries, clock, MetadataStore.disabled(), Runnable::run);
+    }
+
+    FolderListingCache(GraphClient graphClient, boolean enabled, Duration ttl, int maxEntries, Clock clock,
+            MetadataStore metadataStore, Executor background) {
+        this.graphClient = graphClient;
+        this.enabled = enabled;
+        this.ttl = ttl;
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+        this.metadataStore = metadataStore;
+        this.background = background;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > FolderListingCache.this.maxEntries;
+            }
+        };
+        if (enabled) {
+            for (MetadataStore.Listing listing : metadataStore.restored()) {
+                String tag = listing.cTag() != null ? listing.cTag() : "";
+                entries.put(listing.key(), new Entry(listing.items(), tag, Instant.MIN, true));
+            }
+        }
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the listing of a folder, loading it with {@code loader} on a miss or when the folder
+     * changed since it was cached.
+     *
+     * @param folderPath the folder path as given by the caller, normalized for the cache key
+     * @param select the $select of the listing, part of the cache key
+     * @param itemPath the Graph path of the folder item itself, used to fetch and revalidate its tag
+     */
+    List<DriveItem> get(String folderPath, String select, String itemPath, Loader loader) throws IOException {
+        String key = normalize(folderPath) + "|" + select;
+        Entry entry = lookup(key);
+        Instant now = clock.instant();
+        if (entry != null && now.isBefore(entry.expiresAt())) {
+            hits.incrementAndGet();
+            return entry.items();
+        }
+        if (entry != null && entry.restored()) {
+            hits.incrementAndGet();
+            store(key, new Entry(entry.items(), entry.tag(), now.plus(ttl), false));
+            background.execute(() -> revalidate(key, entry, now, itemPath, loader));
+            return entry.items();
+        }
+
+        String tag;
+        if (entry == null) {
+            // read the tag before the listing so that a change in between is caught next time
+            tag = tag(graphClient.readItem(graphClient.open(itemPath)));
+        } else if (!entry.tag().isEmpty()) {
+            ClientHttpResponse response = graphClient.openIfNoneMatch(itemPath, entry.tag());
+            if (response.getStatusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+                response.close();
+                hits.incrementAndGet();
+                revalidations.incrementAndGet();
+                store(key, new Entry(entry.items(), entry.tag(), now.plus(ttl), false));
+                return entry.items();
+            }
+            tag = tag(graphClient.readItem(response));
+        } else {
+            // nothing to revalidate against, and the item would not have a tag now either
+            tag = "";
+        }
+
+        misses.incrementAndGet();
+        List<DriveItem> items = List.copyOf(loader.load());
+        storeLoaded(key, items, tag, now);
+        return items;
+    }
+
+    /**
+     * Checks a restored listing against Graph after it was served, replacing it when the folder
+     * changed and dropping it when the check fails, so that the next call lists the folder again.
+     */
+    private void revalidate(String key, Entry entry, Instant now, String itemPath, Loader loader) {
+        try {
+            String tag = "";
+            if (!entry.tag().isEmpty()) {
+                ClientHttpResponse response = graphClient.openIfNoneMatch(itemPath, entry.tag());
+                if (response.getStatusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+                    response.close();
+                    revalidations.incrementAndGet();
+                    return;
+                }
+                tag = tag(graphClient.readItem(response));
+            }
+            misses.incrementAndGet();
+            storeLoaded(key, List.copyOf(loader.load()), tag, now);
+        } catch (IOException | RuntimeException e) {
+            remove(key);
+        }
+    }
+
+    /**
+     * Non-blocking variant of {@link #get} for the ASYNC server mode, fetching and revalidating the
+     * folder's tag with the reactive client.
+     */
+    Mono<List<DriveItem>> getAsync(String folderPath, String select, String itemPath, ReactiveGraphClient graphClient,
+            Supplier<Mono<List<DriveItem>>> loader) {
+        String key = normalize(folderPath) + "|" + select;
+        Entry entry = lookup(key);
+        Instant now = clock.instant();
+        if (entry != null && now.isBefore(entry.expiresAt())) {
+            hits.incrementAndGet();
+            return Mono.just(entry.items());
+        }
+        if (entry != null && entry.restored()) {
+            hits.incrementAndGet();
+            store(key, new Entry(entry.items(), entry.tag(), now.plus(ttl), false));
+            Mono<List<DriveItem>> revalidation = entry.tag().isEmpty()
+                    ? loadAsync(key, "", now, loader)
+                    : graphClient.readItemIfNoneMatch(itemPath, entry.tag())
+                            .flatMap(changed -> loadAsync(key, tag(changed), now, loader))
+                            .doOnSuccess(items -> {
+                                if (items == null) {
+                                    revalidations.incrementAndGet();
+                                }
+                            });
+            revalidation.subscribe(null, error -> remove(key));
+            return Mono.just(entry.items());
+        }
+
+        if (entry != null && !entry.tag().isEmpty()) {
+            return graphClient.readItemIfNoneMatch(itemPath, entry.tag())
+                    .flatMap(changed -> loadAsync(key, tag(changed), now, loader))
+                    .switchIfEmpty(Mono.fromSupplier(() -> {
+                        hits.incrementAndGet();
+                        revalidations.incrementAndGet();
+                        store(key, new Entry(entry.items(), entry.tag(), now.plus(ttl), false));
+                        return entry.items();
+                    }));
+        }
+        if (entry != null) {
+            return loadAsync(key, "", now, loader);
+        }
+        // read the tag before the listing so that a change in between is caught next time
+        return graphClient.readItem(itemPath).flatMap(item -> loadAsync(key, tag(item), now, loader));
+    }
+
+    Stats stats() {
+        synchronized (entries) {
+            return new Stats(hits.get(), misses.get(), revalidations.get(), entries.size());
+        }
+    }
+
+    private Mono<List<DriveItem>> loadAsync(String key, String tag, Instant now,
+            Supplier<Mono<List<DriveItem>>> loader) {
+        misses.incrementAndGet();
+        return loader.get().map(loaded -> {
+            List<DriveItem> items = List.copyOf(loaded);
+            storeLoaded(key, items, tag, now);
+            return items;
+        });
+    }
+
+    /**
+     * The tag to revalidate a folder against: its cTag, or its eTag when Graph gave it none, or
+     * empty when it has neither.
+     */
+    private static String tag(DriveItem folder) {
+        if (folder.cTag() != null && !folder.cTag().isEmpty()) {
+            return folder.cTag();
+        }
+        return folder.eTag() != null ? folder.eTag() : "";
+    }
+
+    /**
+     * Caches a listing fresh from Graph and writes it to the store off the calling thread, which
+     * may be a reactive one.
+     */
+    private void storeLoaded(String key, List<DriveItem> items, String tag, Instant now) {
+        store(key, new Entry(items, tag, now.plus(ttl), false));
+        background.execute(() -> metadataStore.append(key, tag, items));
+    }
+
+    private Entry lookup(String key) {
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    private void store(String key, Entry entry) {
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    private void remove(String key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * OneDrive paths are case-insensitive, so "Documents/Bills", "/documents/bills/" and
+     * "Documents//Bills" share an entry.
+     */
+    static String normalize(String folderPath) {
+        if (folderPath == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder();
+        for (String segment : folderPath.split("/")) {
+            if (!segment.isBlank()) {
+                if (!normalized.isEmpty()) {
+                    normalized.append('/');
+                }
+                normalized.append(segment.trim());
+            }
+        }
+        return normalized.toString().toLowerCase(Locale.ROOT);
+    }
+
+    @FunctionalInterface
+    interface Loader {
+        List<DriveItem> load() throws IOException;
+    }
+
+    /**
+     * Hit and miss counts for tuning the TTL and size. Revalidations are the hits that needed a
+     * 304 round trip.
+     */
+    record Stats(long hits, long misses, long revalidations, int size) {
+
+    }
+
+    /**
+     * @param tag the cTag or eTag of the folder when it was listed, or empty when it had neither
+     * @param restored whether the entry came from the store and was not checked against Graph yet
+     */
+    private record Entry(List<DriveItem> items, String tag, Instant expiresAt, boolean restored) {
+
+    }
+}
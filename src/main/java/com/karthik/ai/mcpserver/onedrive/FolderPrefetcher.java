@@ -0,0 +1,295 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Lists the subfolders of a folder listing in the background, betting that the client drills into
+ * one of them next. After a listing, up to {@code max-folders} of its subfolders are listed on
+ * virtual threads, those listed recently first and then those with the most children. Their
+ * listings are kept for {@code ttl} and handed out once, to the first listing of that folder.
+ * <p>
+ * Prefetching is optional work and gives way to everything else. No more than
+ * {@code max-concurrency} prefetches run at once, and a prefetch is dropped rather than sent while
+ * Graph is throttling, the breaker is open, the rate limit is running low or requests are waiting
+ * for a pooled connection. The same is checked every {@code check-interval} while prefetches run,
+ * and running prefetches are interrupted as soon as it no longer holds.
+ */
+@Component
+class FolderPrefetcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(FolderPrefetcher.class);
+
+    private static final int MAX_LISTED = 256;
+
+    private static final Comparator<Candidate> RANKING = Comparator
+            .comparing(Candidate::lastListed, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(Comparator.comparingInt(Candidate::childCount).reversed());
+
+    private final boolean enabled;
+    private final int maxFolders;
+    private final Duration ttl;
+    private final int maxEntries;
+    private final Semaphore permits;
+    private final BooleanSupplier headroom;
+    private final Clock clock;
+    private final Executor executor;
+
+    // guarded by itself
+    private final Map<String, Entry> prefetched;
+
+    /**
+     * When each folder was last listed, least recently listed first, guarded by itself.
+     */
+    private final Map<String, Instant> listed = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Instant> eldest) {
+            return size() > MAX_LISTED;
+        }
+    };
+
+    private final Set<Prefetch> running = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong wasted = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+
+    @Autowired
+    FolderPrefetcher(GraphRequestScheduler scheduler, GraphHttpClientFactory httpClientFactory,
+            @Value("${onedrive.prefetch.enabled:false}") boolean enabled,
+            @Value("${onedrive.prefetch.max-folders:3}") int maxFolders,
+            @Value("${onedrive.prefetch.ttl:PT15S}") Duration ttl,
+            @Value("${onedrive.prefetch.max-entries:64}") int maxEntries,
+            @Value("${onedrive.prefetch.max-concurrency:2}") int maxConcurrency) {
+        this(enabled, maxFolders, ttl, maxEntries, maxConcurrency,
+                () -> scheduler.hasHeadroom() && httpClientFactory.stats().pending() <= 0, Clock.systemUTC(),
+                command -> Thread.ofVirtual().start(command));
+    }
+
+    /**
+     * @param headroom whether Graph and the connection pool can take a prefetch now
+     */
+    FolderPrefetcher(boolean enabled, int maxFolders, Duration ttl, int maxEntries, int maxConcurrency,
+            BooleanSupplier headroom, Clock clock, Executor executor) {
+        this.enabled = enabled;
+        this.maxFolders = maxFolders;
+        this.ttl = ttl;
+        this.maxEntries = maxEntries;
+        this.permits = new Semaphore(Math.max(1, maxConcurrency));
+        this.headroom = headroom;
+        this.clock = clock;
+        this.executor = executor;
+        this.prefetched = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= FolderPrefetcher.this.maxEntries) {
+                    return false;
+                }
+                wasted.incrementAndGet();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * A prefetcher that never prefetches, for services built without one.
+     */
+    static FolderPrefetcher disabled() {
+        return new FolderPrefetcher(false, 0, Duration.ZERO, 0, 1, () -> false, Clock.systemUTC(), Runnable::run);
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Hands out the prefetched listing of a folder, once.
+     *
+     * @return the listing, or null when none was prefetched or it has expired
+     */
+    List<DriveItem> take(String folderPath) {
+        if (!enabled) {
+            return null;
+        }
+        String key = FolderListingCache.normalize(folderPath);
+        Instant now = clock.instant();
+        synchronized (listed) {
+            listed.remove(key);
+            listed.put(key, now);
+        }
+        Entry entry;
+        synchronized (prefetched) {
+            entry = prefetched.remove(key);
+        }
+        if (entry == null) {
+            return null;
+        }
+        if (!now.isBefore(entry.expiresAt())) {
+            wasted.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.items();
+    }
+
+    /**
+     * Starts listing the most promising subfolders of a listing that was just returned.
+     *
+     * @param lister lists a folder the way a tool call would, without asking this prefetcher
+     */
+    void prefetch(String folderPath, List<DriveItem> items, FolderTreeCrawler.Lister lister) {
+        if (!enabled || maxFolders <= 0) {
+            return;
+        }
+        String parentPath = folderPath == null ? "" : folderPath.trim();
+        List<Candidate> candidates = new ArrayList<>();
+        for (DriveItem item : items) {
+            if (!item.folder() || item.childCount() == 0) {
+                continue;
+            }
+            String path = parentPath.isEmpty() ? item.name() : parentPath + "/" + item.name();
+            String key = FolderListingCache.normalize(path);
+            synchronized (prefetched) {
+                if (prefetched.containsKey(key)) {
+                    continue;
+                }
+            }
+            synchronized (listed) {
+                candidates.add(new Candidate(path, item.childCount(), listed.get(key)));
+            }
+        }
+        candidates.sort(RANKING);
+        for (Candidate candidate : candidates.subList(0, Math.min(maxFolders, candidates.size()))) {
+            executor.execute(() -> load(candidate.path(), lister));
+        }
+    }
+
+    Stats stats() {
+        int size;
+        synchronized (prefetched) {
+            size = prefetched.size();
+        }
+        return new Stats(sent.get(), hits.get(), wasted.get(), skipped.get(), cancelled.get(), size);
+    }
+
+    /**
+     * Interrupts the running prefetches once Graph or the connection pool has no headroom left, so
+     * that they stop holding connections and rate limit tokens that tool calls are waiting for.
+     */
+    @Scheduled(fixedDelayString = "${onedrive.prefetch.check-interval:PT0.1S}")
+    void checkHeadroom() {
+        if (running.isEmpty() || headroom.getAsBoolean()) {
+            return;
+        }
+        for (Prefetch prefetch : running) {
+            if (prefetch.cancel()) {
+                cancelled.incrementAndGet();
+            }
+        }
+    }
+
+    private void load(String folderPath, FolderTreeCrawler.Lister lister) {
+        if (!headroom.getAsBoolean() || !permits.tryAcquire()) {
+            skipped.incrementAndGet();
+            return;
+        }
+        Prefetch prefetch = new Prefetch(Thread.currentThread());
+        running.add(prefetch);
+        try {
+            sent.incrementAndGet();
+            List<DriveItem> items = lister.list(folderPath);
+            if (prefetch.finish()) {
+                synchronized (prefetched) {
+                    prefetched.put(FolderListingCache.normalize(folderPath),
+                            new Entry(items, clock.instant().plus(ttl)));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Prefetch of {} failed: {}", folderPath, e.getMessage());
+        } finally {
+            prefetch.finish();
+            running.remove(prefetch);
+            permits.release();
+        }
+    }
+
+    /**
+     * Prefetch counts for checking that prefetching pays off: {@code hits} of the {@code sent}
+     * listings were used, {@code wasted} expired or were evicted unused, {@code skipped}
+     * prefetches were dropped under load and {@code cancelled} were interrupted by it.
+     */
+    record Stats(long sent, long hits, long wasted, long skipped, long cancelled, int size) {
+
+    }
+
+    private record Entry(List<DriveItem> items, Instant expiresAt) {
+
+    }
+
+    private record Candidate(String path, int childCount, Instant lastListed) {
+
+    }
+
+    /**
+     * A running prefetch and the thread it runs on.
+     */
+    private static final class Prefetch {
+
+        private final Thread thread;
+        private boolean finished;
+        private boolean cancelled;
+
+        Prefetch(Thread thread) {
+            this.thread = thread;
+        }
+
+        /**
+         * @return whether the prefetch was still running and is now interrupted
+         */
+        synchronized boolean cancel() {
+            if (finished || cancelled) {
+                return false;
+            }
+            cancelled = true;
+            thread.interrupt();
+            return true;
+        }
+
+        /**
+         * Ends the prefetch on its own thread and clears the interrupt that cancelled it, if any.
+         *
+         * @return whether it ended without being cancelled
+         */
+        synchronized boolean finish() {
+            if (!finished) {
+                finished = true;
+                if (cancelled) {
+                    Thread.interrupted();
+                }
+            }
+            return !cancelled;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Crawls a folder subtree with one virtual thread per folder. The number of folder
+ * listings in flight is capped by a semaphore shared by all crawls, so a wide tree cannot push the
+ * server past Graph's request limits.
+ */
+@Component
+class FolderTreeCrawler {
+
+    private final Semaphore permits;
+
+    FolderTreeCrawler(@Value("${onedrive.tree.max-concurrency:8}") int maxConcurrency) {
+        this.permits = new Semaphore(maxConcurrency, true);
+    }
+
+    /**
+     * Lists {@code folderPath} and its subfolders down to {@code maxDepth} levels, where 1 is the
+     * folder's own contents. Crawling stops as soon as {@code maxItems} items have been collected.
+     */
+    Tree crawl(String folderPath, int maxDepth, int maxItems, Lister lister) throws IOException, InterruptedException {
+        Crawl crawl = new Crawl(maxDepth, maxItems, lister);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            crawl.executor = executor;
+            List<Node> items = crawl.list(folderPath);
+            crawl.expand(folderPath, items, 1);
+            return new Tree(items, crawl.truncated.get());
+        }
+    }
+
+    private final class Crawl {
+
+        private final int maxDepth;
+        private final Lister lister;
+        private final AtomicInteger remaining;
+        private final AtomicBoolean truncated = new AtomicBoolean();
+        private ExecutorService executor;
+
+        Crawl(int maxDepth, int maxItems, Lister lister) {
+            this.maxDepth = maxDepth;
+            this.lister = lister;
+            this.remaining = new AtomicInteger(maxItems);
+        }
+
+        List<Node> list(String folderPath) throws IOException, InterruptedException {
+            List<DriveItem> listing;
+            permits.acquire();
+            try {
+                listing = lister.list(folderPath);
+            } finally {
+                permits.release();
+            }
+            List<Node> nodes = new ArrayList<>();
+            for (DriveItem item : listing) {
+                if (remaining.getAndDecrement() <= 0) {
+                    truncated.set(true);
+                    break;
+                }
+                nodes.add(new Node(item, item.folder() ? Collections.synchronizedList(new ArrayList<>()) : List.of()));
+            }
+            return nodes;
+        }
+
+        /**
+         * Fans the subfolders of {@code nodes} out to virtual threads and waits for the whole subtree.
+         */
+        void expand(String parentPath, List<Node> nodes, int depth) {
+            if (depth >= maxDepth) {
+                return;
+            }
+            List<Future<?>> pending = new ArrayList<>();
+            for (Node node : nodes) {
+                if (!node.item().folder() || node.item().childCount() == 0) {
+                    continue;
+                }
+                String childPath = parentPath == null || parentPath.isEmpty()
+                        ? node.item().name()
+                        : parentPath + "/" + node.item().name();
+                pending.add(executor.submit(() -> {
+                    if (remaining.get() <= 0) {
+                        truncated.set(true);
+                        return null;
+                    }
+                    try {
+                        List<Node> children = list(childPath);
+                        node.children().addAll(children);
+                        expand(childPath, children, depth + 1);
+                    } catch (IOException | RuntimeException e) {
+                        node.error().set(e.getMessage());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : pending) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    // failures are recorded on the node itself
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface Lister {
+        List<DriveItem> list(String folderPath) throws IOException;
+    }
+
+    /**
+     * A crawled item. Folders carry the children that were listed, or the error that stopped it.
+     */
+    record Node(DriveItem item, List<Node> children, AtomicReference<String> error) {
+
+        Node(DriveItem item, List<Node> children) {
+            this(item, children, new AtomicReference<>());
+        }
+    }
+
+    record Tree(List<Node> items, boolean truncated) {
+
+    }
+}
@@ -0,0 +1,309 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.fasterxml.jackson.core.JsonFactory;
+
+/**
+ * Thin Microsoft Graph client shared by the tools and the background index. Responses are handed
+ * back still open so that callers can parse them as they stream in.
+ */
+@Component
+class GraphClient {
+
+    /**
+     * Graph's limit on the number of requests in one JSON $batch call.
+     */
+    static final int MAX_BATCH_SIZE = 20;
+
+    private final RestClient restClient;
+    private final String accessToken;
+    private final GraphRequestScheduler scheduler;
+    private final DriveItemReader itemReader;
+
+    /**
+     * Caps the responses this client holds open, and so its share of the connection pool; null
+     * when it is not capped.
+     */
+    private final Semaphore inFlight;
+    private final Duration acquireTimeout;
+    private final RequestHedger hedger;
+
+    @Autowired
+    GraphClient(GraphHttpClientFactory httpClientFactory, GraphRequestScheduler scheduler, OnedriveMetrics metrics,
+            RequestHedger hedger, @Value("${onedrive.access-token}") String accessToken) {
+        this(httpClientFactory.restClientBuilder()
+                .requestInterceptors(interceptors -> interceptors.add(0, metrics::intercept))
+                .build(), accessToken, scheduler, 0, Duration.ZERO, hedger);
+    }
+
+    GraphClient(RestClient restClient, String accessToken) {
+        this(restClient, accessToken, GraphRequestScheduler.unlimited());
+    }
+
+    GraphClient(RestClient restClient, String accessToken, GraphRequestScheduler scheduler) {
+        this(restClient, accessToken, scheduler, 0, Duration.ZERO, RequestHedger.disabled());
+    }
+
+    /**
+     * @param maxInFlight the most responses to hold open at once, 0 for no limit
+     * @param acquireTimeout how long a request waits for one of them before it is rejected
+     * @param hedger sends slow searches a second time
+     */
+    GraphClient(RestClient restClient, String accessToken, GraphRequestScheduler scheduler, int maxInFlight,
+            Duration acquireTimeout, RequestHedger hedger) {
+        this.restClient = restClient;
+        this.accessToken = accessToken;
+        this.scheduler = scheduler;
+        this.itemReader = new DriveItemReader(new JsonFactory());
+        this.inFlight = maxInFlight > 0 ? new Semaphore(maxInFlight, true) : null;
+        this.acquireTimeout = acquireTimeout;
+        this.hedger = hedger;
+    }
+
+    /**
+     * A client for another account that sends through the same connection pool, with its own
+     * scheduler and a cap on the connections it may hold at once.
+     */
+    GraphClient forAccount(String accessToken, GraphRequestScheduler scheduler, int maxInFlight,
+            Duration acquireTimeout) {
+        return new GraphClient(restClient, accessToken, scheduler, maxInFlight, acquireTimeout, hedger);
+    }
+
+    /**
+     * The key under which identical reads of {@code apiPath} by this client are coalesced.
+     */
+    RequestCoalescer.Key requestKey(String apiPath, Class<?> resultType) {
+        return new RequestCoalescer.Key(accessToken, apiPath, resultType);
+    }
+
+    ClientHttpResponse open(String apiPath) {
+        return exchange(() -> restClient.get().uri(apiPath));
+    }
+
+    /**
+     * {@link #open(String)} for a search, which is sent once more when it is slow to answer, see
+     * {@link RequestHedger}.
+     */
+    ClientHttpResponse openHedged(String apiPath) {
+        return hedger.execute(() -> open(apiPath));
+    }
+
+    /**
+     * Conditional GET: Graph answers 304 Not Modified, with no body, while {@code tag} still
+     * matches the item's eTag or cTag.
+     */
+    ClientHttpResponse openIfNoneMatch(String apiPath, String tag) {
+        return exchange(() -> restClient.get().uri(apiPath).header(HttpHeaders.IF_NONE_MATCH, tag));
+    }
+
+    /**
+     * Ranged GET of a file's bytes. Graph redirects {@code /content} to a download URL, which
+     * answers 206 Partial Content with a Content-Range header.
+     *
+     * @param last the last byte to read, inclusive
+     */
+    ClientHttpResponse openRange(String apiPath, long first, long last) {
+        return exchange(() -> restClient.get().uri(apiPath).header(HttpHeaders.RANGE, "bytes=" + first + "-" + last),
+                MediaType.ALL);
+    }
+
+    ClientHttpResponse open(URI link) {
+        // paging links are absolute, already encoded URLs so they must not go through the URI template
+        return exchange(() -> restClient.get().uri(link));
+    }
+
+    /**
+     * Reads a paged driveItem collection starting at {@code firstPage}, following @odata.nextLink
+     * until the collection ends or {@code consumer} returns false. Every page is closed once read.
+     *
+     * @return the links of the last page read, carrying the @odata.deltaLink of a delta query
+     */
+    DriveItemReader.Page readItems(ClientHttpResponse firstPage, Predicate<DriveItem> consumer) throws IOException {
+        ClientHttpResponse page = firstPage;
+        while (true) {
+            DriveItemReader.Page links;
+            try (ClientHttpResponse response = page) {
+                links = itemReader.read(response.getBody(), consumer);
+            }
+            if (links.nextLink() == null) {
+                return links;
+            }
+            page = open(URI.create(links.nextLink()));
+        }
+    }
+
+    /**
+     * Sends up to {@link #MAX_BATCH_SIZE} GET requests in one {@code POST /$batch}. Each request's id
+     * is its index in {@code apiPaths}.
+     */
+    ClientHttpResponse openBatch(List<String> apiPaths) {
+        if (apiPaths.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("A batch holds at most " + MAX_BATCH_SIZE + " requests");
+        }
+        List<Map<String, String>> requests = new ArrayList<>();
+        for (int i = 0; i < apiPaths.size(); i++) {
+            // batch urls skip the RestClient URI template, so encode them the way it would
+            String url = UriComponentsBuilder.fromUriString(apiPaths.get(i)).encode().build().toUriString();
+            requests.add(Map.of("id", String.valueOf(i), "method", "GET", "url", url));
+        }
+        Map<String, Object> body = Map.of("requests", requests);
+        return exchange(() -> restClient.post()
+                .uri("/$batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body));
+    }
+
+    /**
+     * Demultiplexes a $batch response of driveItem collections into {@code consumer}, then follows
+     * the @odata.nextLink of every sub-response that has more pages with regular requests.
+     */
+    void readBatch(ClientHttpResponse response, BatchConsumer consumer) throws IOException {
+        Map<Integer, Predicate<DriveItem>> itemConsumers = new HashMap<>();
+        BatchConsumer memoized = new BatchConsumer() {
+            @Override
+            public Predicate<DriveItem> items(int id) {
+                return itemConsumers.computeIfAbsent(id, consumer::items);
+            }
+
+            @Override
+            public void failed(int id, int status, String message) {
+                consumer.failed(id, status, message);
+            }
+        };
+        Map<Integer, String> nextLinks;
+        try (response) {
+            nextLinks = itemReader.readBatch(response.getBody(), memoized);
+        }
+        for (Map.Entry<Integer, String> nextLink : nextLinks.entrySet()) {
+            readItems(open(URI.create(nextLink.getValue())), memoized.items(nextLink.getKey()));
+        }
+    }
+
+    DriveItem readItem(ClientHttpResponse response) throws IOException {
+        try (response) {
+            return itemReader.readItem(response.getBody());
+        }
+    }
+
+    /**
+     * Sends the request once an in-flight slot is free, giving the slot back if it fails.
+     */
+    private ClientHttpResponse acquired(Supplier<ClientHttpResponse> exchange) {
+        if (inFlight == null) {
+            return exchange.get();
+        }
+        try {
+            if (!inFlight.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new GraphRequestScheduler.RejectedException(
+                        "Too many Graph requests in flight for this account; retry shortly");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GraphRequestScheduler.RejectedException("Interrupted while waiting for Graph");
+        }
+        try {
+            return exchange.get();
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Gives the in-flight slot back when the response is closed, which is when its connection
+     * returns to the pool.
+     */
+    private ClientHttpResponse releasingOnClose(ClientHttpResponse response) {
+        if (inFlight == null) {
+            return response;
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        return new GraphHttpClientFactory.DelegatingResponse(response) {
+
+            @Override
+            public void close() {
+                try {
+                    super.close();
+                } finally {
+                    if (released.compareAndSet(false, true)) {
+                        inFlight.release();
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Receives the sub-responses of a $batch call by request id.
+     */
+    interface BatchConsumer {
+
+        /**
+         * Returns the consumer for the items of a successful sub-response. It is asked for once
+         * per id and then also receives the items of any further pages.
+         */
+        Predicate<DriveItem> items(int id);
+
+        void failed(int id, int status, String message);
+    }
+
+    /**
+     * Sends the request through the scheduler and returns the still-open response so that its body
+     * can be parsed as it arrives. The caller owns the response and must close it.
+     *
+     * @param request builds the request; called again for every retry
+     */
+    private ClientHttpResponse exchange(Supplier<RestClient.RequestHeadersSpec<?>> request) {
+        return exchange(request, MediaType.APPLICATION_JSON);
+    }
+
+    private ClientHttpResponse exchange(Supplier<RestClient.RequestHeadersSpec<?>> request, MediaType accept) {
+        return scheduler.execute(() -> send(request.get(), accept));
+    }
+
+    private ClientHttpResponse send(RestClient.RequestHeadersSpec<?> request, MediaType accept) {
+        ClientHttpResponse response = releasingOnClose(acquired(() -> request
+                .header("Authorization", "Bearer " + accessToken)
+                .accept(accept)
+                .exchange((clientRequest, clientResponse) -> clientResponse, false)));
+        try {
+            HttpStatusCode status = response.getStatusCode();
+            if (status.isError()) {
+                try (response) {
+                    throw new RestClientResponseException("Graph request failed with " + status.value(),
+                            status, response.getStatusText(), response.getHeaders(),
+                            response.getBody().readAllBytes(), StandardCharsets.UTF_8);
+                }
+            }
+            return response;
+        } catch (IOException e) {
+            response.close();
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.JdkClientHttpConnector;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import io.netty.channel.ChannelOption;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Builds the one HTTP client that all Graph calls share, configured under {@code onedrive.http}.
+ * {@code base-url} only needs changing to point the server at a Graph stand-in, as the load test does.
+ * <ul>
+ * <li>{@code pooled} (default): Apache HttpClient with a bounded keep-alive connection pool.
+ * It negotiates gzip and decompresses response bodies as they stream.</li>
+ * <li>{@code jdk}: the JDK {@link HttpClient} over HTTP/2, which multiplexes concurrent calls
+ * over a few connections. Gzip is requested and decoded here because that client does not do it.</li>
+ * </ul>
+ * The non-blocking {@link WebClient} of the ASYNC server mode gets the same timeouts, on a Reactor
+ * Netty pool for {@code pooled} and on the same JDK client for {@code jdk}.
+ */
+@Component
+class GraphHttpClientFactory implements DisposableBean {
+
+    private final String baseUrl;
+    private final ClientHttpRequestFactory requestFactory;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient pooledClient;
+    private final HttpClient jdkClient;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final Duration connectTimeout;
+    private final Duration readTimeout;
+    private final Duration poolAcquireTimeout;
+    private final int maxConnections;
+    private final Duration connectionTtl;
+    private final Duration idleTimeout;
+
+    // created on first use, guarded by this
+    private ClientHttpConnector connector;
+    private ConnectionProvider connectionProvider;
+
+    GraphHttpClientFactory(@Value("${onedrive.http.base-url:https://graph.microsoft.com/v1.0}") String baseUrl,
+            @Value("${onedrive.http.client:pooled}") String client,
+            @Value("${onedrive.http.connect-timeout:PT5S}") Duration connectTimeout,
+            @Value("${onedrive.http.read-timeout:PT30S}") Duration readTimeout,
+            @Value("${onedrive.http.pool-acquire-timeout:PT5S}") Duration poolAcquireTimeout,
+            @Value("${onedrive.http.max-connections:50}") int maxConnections,
+            @Value("${onedrive.http.max-connections-per-route:20}") int maxConnectionsPerRoute,
+            @Value("${onedrive.http.connection-ttl:PT5M}") Duration connectionTtl,
+            @Value("${onedrive.http.idle-timeout:PT30S}") Duration idleTimeout) {
+        this.baseUrl = baseUrl;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.poolAcquireTimeout = poolAcquireTimeout;
+        this.maxConnections = maxConnections;
+        this.connectionTtl = connectionTtl;
+        this.idleTimeout = idleTimeout;
+        if ("jdk".equalsIgnoreCase(client)) {
+            this.connectionManager = null;
+            this.pooledClient = null;
+            this.jdkClient = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .connectTimeout(connectTimeout)
+                    .followRedirects(HttpClient.Redirect.NORMAL)
+                    .build();
+            JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(jdkClient);
+            factory.setReadTimeout(readTimeout);
+            this.requestFactory = factory;
+        } else if ("pooled".equalsIgnoreCase(client)) {
+            this.jdkClient = null;
+            this.connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                    .setMaxConnTotal(maxConnections)
+                    .setMaxConnPerRoute(maxConnectionsPerRoute)
+                    .setDefaultConnectionConfig(ConnectionConfig.custom()
+                            .setConnectTimeout(Timeout.of(connectTimeout))
+                            .setSocketTimeout(Timeout.of(readTimeout))
+                            .setTimeToLive(TimeValue.of(connectionTtl))
+                            .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                            .build())
+                    .build();
+            this.pooledClient = HttpClients.custom()
+                    .setConnectionManager(connectionManager)
+                    .setDefaultRequestConfig(RequestConfig.custom()
+                            .setConnectionRequestTimeout(Timeout.of(poolAcquireTimeout))
+                            .setResponseTimeout(Timeout.of(readTimeout))
+                            .build())
+                    .evictExpiredConnections()
+                    .evictIdleConnections(TimeValue.of(idleTimeout))
+                    .build();
+            this.requestFactory = new HttpComponentsClientHttpRequestFactory(pooledClient);
+        } else {
+            throw new IllegalArgumentException("onedrive.http.client must be 'pooled' or 'jdk' but was '" + client + "'");
+        }
+    }
+
+    /**
+     * Returns a builder preconfigured with the shared request factory and the Graph base URL.
+     */
+    RestClient.Builder restClientBuilder() {
+        RestClient.Builder builder = RestClient.builder()
+                .baseUrl(baseUrl)
+                .requestFactory(requestFactory)
+                .requestInterceptor(this::countInFlight);
+        if (jdkClient != null) {
+            builder.requestInterceptor(GraphHttpClientFactory::decompressGzip);
+        }
+        return builder;
+    }
+
+    /**
+     * Returns a non-blocking client builder preconfigured with the Graph base URL. Requests wait
+     * for a pooled connection for at most the pool-acquire timeout rather than failing when the
+     * pool is busy, since the request scheduler already bounds how many are sent.
+     */
+    synchronized WebClient.Builder webClientBuilder() {
+        if (connector == null) {
+            if (jdkClient != null) {
+                JdkClientHttpConnector jdkConnector = new JdkClientHttpConnector(jdkClient);
+                jdkConnector.setReadTimeout(readTimeout);
+                connector = jdkConnector;
+            } else {
+                connectionProvider = ConnectionProvider.builder("graph")
+                        .maxConnections(maxConnections)
+                        .pendingAcquireMaxCount(-1)
+                        .pendingAcquireTimeout(poolAcquireTimeout)
+                        .maxIdleTime(idleTimeout)
+                        .maxLifeTime(connectionTtl)
+                        .build();
+                connector = new ReactorClientHttpConnector(reactor.netty.http.client.HttpClient.create(connectionProvider)
+                        .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                        .responseTimeout(readTimeout)
+                        .compress(true));
+            }
+        }
+        return WebClient.builder()
+                .baseUrl(baseUrl)
+                .clientConnector(connector);
+    }
+
+    ConnectionStats stats() {
+        if (connectionManager == null) {
+            return new ConnectionStats(inFlight.get(), -1, -1, -1, -1);
+        }
+        PoolStats pool = connectionManager.getTotalStats();
+        return new ConnectionStats(inFlight.get(), pool.getLeased(), pool.getAvailable(), pool.getPending(), pool.getMax());
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        synchronized (this) {
+            if (connectionProvider != null) {
+                connectionProvider.dispose();
+            }
+        }
+        if (pooledClient != null) {
+            pooledClient.close();
+        }
+        if (jdkClient != null) {
+            jdkClient.close();
+        }
+    }
+
+    /**
+     * Tracks requests until their response is closed, which for streamed responses is after the
+     * body has been read.
+     */
+    private ClientHttpResponse countInFlight(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        inFlight.incrementAndGet();
+        ClientHttpResponse response;
+        try {
+            response = execution.execute(request, body);
+        } catch (IOException | RuntimeException e) {
+            inFlight.decrementAndGet();
+            throw e;
+        }
+        return new DelegatingResponse(response) {
+            private boolean closed;
+
+            @Override
+            public void close() {
+                if (!closed) {
+                    closed = true;
+                    inFlight.decrementAndGet();
+                }
+                super.close();
+            }
+        };
+    }
+
+    static ClientHttpResponse decompressGzip(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        request.getHeaders().set(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        ClientHttpResponse response = execution.execute(request, body);
+        if (!"gzip".equalsIgnoreCase(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING))) {
+            return response;
+        }
+        return new DelegatingResponse(response) {
+            private InputStream decoded;
+
+            @Override
+            public InputStream getBody() throws IOException {
+                if (decoded == null) {
+                    decoded = new GZIPInputStream(super.getBody(), 8192);
+                }
+                return decoded;
+            }
+        };
+    }
+
+    /**
+     * Connections in use. The pool figures are -1 for the JDK client, which does not expose its pool.
+     */
+    record ConnectionStats(int inFlight, int leased, int available, int pending, int max) {
+
+    }
+
+    /**
+     * Base for response decorators.
+     */
+    static class DelegatingResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse delegate;
+
+        DelegatingResponse(ClientHttpResponse delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+}
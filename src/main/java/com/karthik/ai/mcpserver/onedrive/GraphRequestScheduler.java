@@ -0,0 +1,408 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.nio.channels.ClosedByInterruptException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestClientResponseException;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Runs every Graph request so that throttling is handled in one place. A token bucket keeps the
+ * request rate under the tenant quota, 429/503/504 answers are retried after their Retry-After or
+ * a jittered exponential backoff, and a circuit breaker fails calls fast while Graph keeps failing
+ * instead of letting them pile up behind it.
+ * <p>
+ * A Retry-After pauses the whole bucket, not just the request that got it: Graph throttles the
+ * app as a whole, so every other request would only be throttled too. A request that fails because
+ * its own thread was interrupted, such as a cancelled prefetch, is not held against Graph.
+ */
+@Component
+class GraphRequestScheduler {
+
+    private final int maxRetries;
+    private final Duration baseBackoff;
+    private final Duration maxBackoff;
+    private final double requestsPerSecond;
+    private final int burst;
+    private final Duration maxWait;
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final Clock clock;
+    private final Sleeper sleeper;
+
+    // bucket and breaker state, guarded by this
+    private double tokens;
+    private long refilledAt;
+    private long pausedUntil;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openUntil;
+    private boolean probing;
+
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    @Autowired
+    GraphRequestScheduler(@Value("${onedrive.throttle.max-retries:3}") int maxRetries,
+            @Value("${onedrive.throttle.base-backoff:PT1S}") Duration baseBackoff,
+            @Value("${onedrive.throttle.max-backoff:PT30S}") Duration maxBackoff,
+            @Value("${onedrive.throttle.requests-per-second:20}") double requestsPerSecond,
+            @Value("${onedrive.throttle.burst:40}") int burst,
+            @Value("${onedrive.throttle.max-wait:PT10S}") Duration maxWait,
+            @Value("${onedrive.throttle.failure-threshold:5}") int failureThreshold,
+            @Value("${onedrive.throttle.open-duration:PT30S}") Duration openDuration) {
+        this(maxRetries, baseBackoff, maxBackoff, requestsPerSecond, burst, maxWait, failureThreshold, openDuration,
+                Clock.systemUTC(), Thread::sleep);
+    }
+
+    GraphRequestScheduler(int maxRetries, Duration baseBackoff, Duration maxBackoff, double requestsPerSecond,
+            int burst, Duration maxWait, int failureThreshold, Duration openDuration, Clock clock, Sleeper sleeper) {
+        this.maxRetries = maxRetries;
+        this.baseBackoff = baseBackoff;
+        this.maxBackoff = maxBackoff;
+        this.requestsPerSecond = requestsPerSecond;
+        this.burst = Math.max(1, burst);
+        this.maxWait = maxWait;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.clock = clock;
+        this.sleeper = sleeper;
+        this.tokens = this.burst;
+        this.refilledAt = clock.millis();
+    }
+
+    /**
+     * A scheduler that sends every request straight away: no rate limit, no retries and a breaker
+     * that never opens.
+     */
+    static GraphRequestScheduler unlimited() {
+        return new GraphRequestScheduler(0, Duration.ZERO, Duration.ZERO, 0, 1, Duration.ZERO, 0, Duration.ZERO,
+                Clock.systemUTC(), Thread::sleep);
+    }
+
+    /**
+     * A scheduler with the retry and breaker settings of this one but its own bucket, breaker and
+     * counters, so that one account's throttling does not hold back the others.
+     */
+    GraphRequestScheduler withRate(double requestsPerSecond, int burst) {
+        return new GraphRequestScheduler(maxRetries, baseBackoff, maxBackoff, requestsPerSecond, burst, maxWait,
+                failureThreshold, openDuration, clock, sleeper);
+    }
+
+    /**
+     * Sends a request through the bucket and the breaker, retrying it while Graph answers that it
+     * is throttling or temporarily unavailable.
+     *
+     * @param request sends the request once; called again for every retry
+     * @throws RejectedException when the breaker is open or the wait for a slot would exceed the
+     *         configured maximum
+     */
+    <T> T execute(Supplier<T> request) {
+        for (int attempt = 0;; attempt++) {
+            boolean probe = admit();
+            T response;
+            try {
+                // inside the try so that a rejected or interrupted wait still releases the probe
+                sleep(reserve());
+                response = request.get();
+            } catch (RuntimeException e) {
+                Duration delay = onFailure(e, attempt, probe);
+                if (delay == null) {
+                    throw e;
+                }
+                sleep(delay);
+                continue;
+            }
+            recordSuccess(probe);
+            return response;
+        }
+    }
+
+    /**
+     * Non-blocking variant of {@link #execute}: waits for the bucket, a Retry-After or a backoff on
+     * a timer instead of a sleeping thread.
+     *
+     * @param request sends the request once; subscribed to again for every retry
+     */
+    <T> Mono<T> executeAsync(Supplier<Mono<T>> request) {
+        return executeAsync(request, 0);
+    }
+
+    private <T> Mono<T> executeAsync(Supplier<Mono<T>> request, int attempt) {
+        return Mono.defer(() -> {
+            boolean probe = admit();
+            // reserved within the chain so that a rejected wait still releases the probe
+            Mono<T> response = Mono.defer(() -> {
+                Duration wait = reserve();
+                Mono<T> call = Mono.defer(request);
+                return wait.isZero() ? call : Mono.delay(wait).then(call);
+            });
+            return response
+                    .doOnSuccess(value -> recordSuccess(probe))
+                    .doOnCancel(() -> releaseProbe(probe))
+                    .onErrorResume(e -> {
+                        Duration delay = onFailure(e, attempt, probe);
+                        if (delay == null) {
+                            return Mono.error(e);
+                        }
+                        Mono<T> retry = executeAsync(request, attempt + 1);
+                        return delay.isZero() ? retry : Mono.delay(delay).then(retry);
+                    });
+        });
+    }
+
+    /**
+     * Whether a request sent now would go straight through: the breaker is closed, no Retry-After
+     * pause is running and at least half of the bucket is left. Optional requests, such as
+     * prefetches, are only sent while this holds.
+     */
+    synchronized boolean hasHeadroom() {
+        long now = clock.millis();
+        if (state != State.CLOSED || pausedUntil > now) {
+            return false;
+        }
+        if (requestsPerSecond <= 0) {
+            return true;
+        }
+        double available = Math.min(burst, tokens + (now - refilledAt) * requestsPerSecond / 1000);
+        return available >= burst / 2.0;
+    }
+
+    Stats stats() {
+        synchronized (this) {
+            return new Stats(state, throttled.get(), retries.get(), rejected.get());
+        }
+    }
+
+    /**
+     * Records a failed attempt and decides whether to retry it.
+     *
+     * @return how long to back off before the retry, zero when a Retry-After pause of the bucket
+     *         takes care of the wait, or null to give up and rethrow
+     */
+    private Duration onFailure(Throwable error, int attempt, boolean probe) {
+        if (error instanceof ResourceAccessException) {
+            if (isInterrupted(error)) {
+                // the caller gave up on the request, which says nothing about Graph
+                releaseProbe(probe);
+                return null;
+            }
+            recordFailure(probe);
+            return null;
+        }
+        if (!(error instanceof RestClientResponseException e)) {
+            releaseProbe(probe);
+            return null;
+        }
+        int status = e.getStatusCode().value();
+        if (!isFailure(status)) {
+            // a 404 or 403 still means Graph is up
+            recordSuccess(probe);
+            return null;
+        }
+        recordFailure(probe);
+        if (!isRetryable(status)) {
+            return null;
+        }
+        if (status == 429 || status == 503) {
+            throttled.incrementAndGet();
+        }
+        Duration retryAfter = retryAfter(e.getResponseHeaders());
+        if (retryAfter != null) {
+            // also holds back every other request, which would only be throttled as well
+            pause(jitter(retryAfter));
+        }
+        if (attempt >= maxRetries || (retryAfter != null && retryAfter.compareTo(maxWait) > 0)) {
+            return null;
+        }
+        retries.incrementAndGet();
+        return retryAfter == null ? backoff(attempt) : Duration.ZERO;
+    }
+
+
+    /**
+     * Lets a request through the breaker. Once the open period has passed, a single request is let
+     * through to probe whether Graph has recovered.
+     *
+     * @return whether the request is that probe
+     */
+    private synchronized boolean admit() {
+        if (state == State.CLOSED) {
+            return false;
+        }
+        long now = clock.millis();
+        if (state == State.OPEN && now >= openUntil) {
+            state = State.HALF_OPEN;
+        }
+        if (state == State.HALF_OPEN && !probing) {
+            probing = true;
+            return true;
+        }
+        rejected.incrementAndGet();
+        long waitSeconds = Math.max(1, Duration.ofMillis(openUntil - now).toSeconds());
+        throw new RejectedException("Graph is failing, requests are paused; retry in " + waitSeconds + "s");
+    }
+
+    /**
+     * Takes a token and returns how long to wait for the bucket to refill or a Retry-After pause to
+     * end. The token is reserved before waiting so that concurrent callers queue up behind each other.
+     */
+    private synchronized Duration reserve() {
+        long now = clock.millis();
+        long waitMillis = Math.max(0, pausedUntil - now);
+        if (requestsPerSecond > 0) {
+            tokens = Math.min(burst, tokens + (now - refilledAt) * requestsPerSecond / 1000);
+            refilledAt = now;
+            if (tokens < 1) {
+                waitMillis = Math.max(waitMillis, (long) Math.ceil((1 - tokens) * 1000 / requestsPerSecond));
+            }
+        }
+        if (waitMillis > maxWait.toMillis()) {
+            rejected.incrementAndGet();
+            throw new RejectedException("Graph is throttling requests; retry in "
+                    + Math.max(1, Duration.ofMillis(waitMillis).toSeconds()) + "s");
+        }
+        tokens -= 1;
+        return Duration.ofMillis(waitMillis);
+    }
+
+    private synchronized void pause(Duration delay) {
+        pausedUntil = Math.max(pausedUntil, clock.millis() + delay.toMillis());
+    }
+
+    private synchronized void recordSuccess(boolean probe) {
+        consecutiveFailures = 0;
+        if (probe) {
+            probing = false;
+            state = State.CLOSED;
+        }
+    }
+
+    private synchronized void recordFailure(boolean probe) {
+        consecutiveFailures++;
+        if (probe || (failureThreshold > 0 && state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            probing = false;
+            state = State.OPEN;
+            openUntil = clock.millis() + openDuration.toMillis();
+        }
+    }
+
+    private synchronized void releaseProbe(boolean probe) {
+        if (probe) {
+            probing = false;
+        }
+    }
+
+    /**
+     * Exponential backoff with equal jitter: half of the capped delay plus a random part of the
+     * other half, so that clients that failed together do not retry together.
+     */
+    private Duration backoff(int attempt) {
+        long cap = Math.min(maxBackoff.toMillis(), baseBackoff.toMillis() << Math.min(attempt, 20));
+        return Duration.ofMillis(cap / 2 + ThreadLocalRandom.current().nextLong(cap / 2 + 1));
+    }
+
+    private static Duration jitter(Duration retryAfter) {
+        return retryAfter.plusMillis(ThreadLocalRandom.current().nextLong(retryAfter.toMillis() / 10 + 1));
+    }
+
+    /**
+     * Graph sends Retry-After in seconds, but the header may also carry an HTTP date.
+     */
+    private Duration retryAfter(HttpHeaders headers) {
+        String value = headers == null ? null : headers.getFirst(HttpHeaders.RETRY_AFTER);
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(value.trim())));
+        } catch (NumberFormatException e) {
+            try {
+                Instant at = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+                Duration delay = Duration.between(clock.instant(), at);
+                return delay.isNegative() ? Duration.ZERO : delay;
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+    }
+
+    private void sleep(Duration duration) {
+        if (duration.isZero()) {
+            return;
+        }
+        try {
+            sleeper.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedException("Interrupted while waiting for Graph");
+        }
+    }
+
+    /**
+     * Whether a request failed because its thread was interrupted, which on a virtual thread closes
+     * the socket it was reading. Timeouts are not interruptions, even where they extend
+     * {@link java.io.InterruptedIOException}.
+     */
+    private static boolean isInterrupted(Throwable error) {
+        if (Thread.currentThread().isInterrupted()) {
+            return true;
+        }
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InterruptedException || cause instanceof ClosedByInterruptException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isFailure(int status) {
+        return status == 429 || status >= 500;
+    }
+
+    private static boolean isRetryable(int status) {
+        return status == 429 || status == 503 || status == 504;
+    }
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * Breaker state and how often Graph throttled us, for tuning the rate limit.
+     */
+    record Stats(State state, long throttled, long retries, long rejected) {
+
+    }
+
+    @FunctionalInterface
+    interface Sleeper {
+        void sleep(Duration duration) throws InterruptedException;
+    }
+
+    /**
+     * Thrown instead of sending a request that would only be throttled or fail.
+     */
+    static class RejectedException extends RestClientException {
+
+        RejectedException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps folder listings on disk so that a restarted server, or the next stdio session, starts with
+ * what the last one knew. The store is an append-only log of length-prefixed, checksummed records,
+ * one per listing. At startup the log is mapped into memory and scanned once. The offset of the
+ * latest record of each listing goes into an index, and those records are handed to the
+ * {@link FolderListingCache} and the {@link PathIdTrie}.
+ * <p>
+ * When the log outgrows {@code max-bytes}, it is compacted to the latest record of each listing,
+ * dropping the oldest listings until at most half of {@code max-bytes} is left. A log that does not
+ * start with the store's header, or that has a torn or corrupted record, is rebuilt from the
+ * records before the damage. Write failures only disable the store; they never fail a tool call.
+ * <p>
+ * The header names the drive that the listings were read from, by the id of its root item, which
+ * is asked of Graph before anything is restored. A log written for another drive, such as after the
+ * access token was changed to another user's, is discarded, and one whose drive cannot be told is
+ * left alone and not used for that run.
+ */
+@Component
+class MetadataStore implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetadataStore.class);
+
+    private static final int MAGIC = 0x4F444D32;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final byte LISTING = 1;
+
+    private final boolean enabled;
+    private final Path path;
+    private final long maxBytes;
+    private final byte[] header;
+
+    /**
+     * The latest record of each listing, in the order they were written.
+     */
+    private final Map<String, Slot> index = new LinkedHashMap<>();
+    private final List<Listing> restored;
+    private FileChannel channel;
+    private long size;
+    private boolean failed;
+
+    @Autowired
+    MetadataStore(@Value("${onedrive.store.enabled:false}") boolean enabled,
+            @Value("${onedrive.store.path:${user.home}/.onedrive-mcp-server/metadata.log}") String path,
+            @Value("${onedrive.store.max-bytes:16777216}") long maxBytes, GraphClient graphClient) {
+        this(enabled, path, maxBytes, enabled ? driveOf(graphClient, path) : null);
+    }
+
+    /**
+     * @param drive the id of the root item of the drive whose listings are kept, or null when it is
+     *        not known, which leaves the log alone
+     */
+    MetadataStore(boolean enabled, String path, long maxBytes, String drive) {
+        this.enabled = enabled;
+        this.path = Path.of(path);
+        this.maxBytes = maxBytes;
+        this.header = drive != null ? header(drive) : null;
+        this.failed = enabled && drive == null;
+        this.restored = enabled && drive != null ? open() : List.of();
+    }
+
+    /**
+     * A store that keeps nothing, for components built without one.
+     */
+    static MetadataStore disabled() {
+        return new MetadataStore(false, "", 0, (String) null);
+    }
+
+    /**
+     * The listings read from disk at startup, oldest first.
+     */
+    List<Listing> restored() {
+        return restored;
+    }
+
+    /**
+     * Appends a listing, replacing any earlier record under the same key.
+     *
+     * @param key the listing's cache key
+     */
+    synchronized void append(String key, String cTag, List<DriveItem> items) {
+        if (!enabled || failed) {
+            return;
+        }
+        try {
+            ByteBuffer record = encode(new Listing(key, cTag, items));
+            if (record.remaining() > maxBytes / 2) {
+                return;
+            }
+            long offset = size;
+            while (record.hasRemaining()) {
+                size += channel.write(record);
+            }
+            index.remove(key);
+            index.put(key, new Slot(offset, (int) (size - offset)));
+            if (size > maxBytes) {
+                compact();
+            }
+        } catch (IOException e) {
+            logger.warn("Metadata store {} disabled after a write failure: {}", path, e.getMessage());
+            failed = true;
+        }
+    }
+
+    /**
+     * Bytes on disk, including records that were replaced by later ones.
+     */
+    synchronized long size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void destroy() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private List<Listing> open() {
+        List<Listing> listings = new ArrayList<>();
+        try {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            boolean intact = true;
+            long valid = 0;
+            if (Files.exists(path)) {
+                try (FileChannel reader = FileChannel.open(path, StandardOpenOption.READ)) {
+                    valid = scan(reader.map(FileChannel.MapMode.READ_ONLY, 0, reader.size()));
+                    intact = valid == reader.size();
+                }
+            }
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            size = channel.size();
+            if (size == 0) {
+                channel.write(ByteBuffer.wrap(header));
+                size = header.length;
+            } else if (!intact || liveBytes() * 2 < size - header.length) {
+                if (valid == 0) {
+                    logger.info("Metadata store {} was written for another drive or version, starting over", path);
+                } else if (!intact) {
+                    logger.warn("Metadata store {} is damaged after byte {}, rebuilding it from the records before",
+                            path, valid);
+                }
+                size = valid;
+                compact();
+            }
+            channel.position(size);
+            MappedByteBuffer log = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            for (Slot slot : index.values()) {
+                listings.add(decode(log.slice((int) slot.offset() + RECORD_HEADER_BYTES,
+                        slot.length() - RECORD_HEADER_BYTES)));
+            }
+            logger.info("Restored {} folder listings from {}", listings.size(), path);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Metadata store {} could not be opened, continuing without it: {}", path, e.getMessage());
+            failed = true;
+            listings.clear();
+        }
+        return listings;
+    }
+
+    /**
+     * Indexes the records of a mapped log and returns the length of its undamaged prefix, which is
+     * 0 when the header does not match, because the log is of another drive or format.
+     */
+    private long scan(ByteBuffer log) {
+        index.clear();
+        if (log.remaining() < header.length || !log.slice(0, header.length).equals(ByteBuffer.wrap(header))) {
+            return 0;
+        }
+        int position = header.length;
+        CRC32 crc = new CRC32();
+        while (log.limit() - position >= RECORD_HEADER_BYTES) {
+            int length = log.getInt(position);
+            if (length <= 0 || length > log.limit() - position - RECORD_HEADER_BYTES) {
+                break;
+            }
+            ByteBuffer payload = log.slice(position + RECORD_HEADER_BYTES, length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != log.getInt(position + 4)) {
+                break;
+            }
+            try {
+                String key = readKey(payload);
+                index.remove(key);
+                index.put(key, new Slot(position, RECORD_HEADER_BYTES + length));
+            } catch (IOException | RuntimeException e) {
+                break;
+            }
+            position += RECORD_HEADER_BYTES + length;
+        }
+        return position;
+    }
+
+    /**
+     * Rewrites the log with only the latest record of each listing, oldest listings first, and
+     * drops the oldest ones while the result would exceed half of {@code max-bytes}.
+     */
+    private void compact() throws IOException {
+        long live = liveBytes();
+        Iterator<Slot> oldest = index.values().iterator();
+        while (live > maxBytes / 2 && oldest.hasNext()) {
+            live -= oldest.next().length();
+            oldest.remove();
+        }
+        Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+        Map<String, Slot> moved = new LinkedHashMap<>();
+        try (FileChannel writer = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writer.write(ByteBuffer.wrap(header));
+            long position = header.length;
+            for (Map.Entry<String, Slot> entry : index.entrySet()) {
+                Slot slot = entry.getValue();
+                channel.transferTo(slot.offset(), slot.length(), writer);
+                moved.put(entry.getKey(), new Slot(position, slot.length()));
+                position += slot.length();
+            }
+        }
+        channel.close();
+        Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        size = channel.size();
+        channel.position(size);
+        index.clear();
+        index.putAll(moved);
+    }
+
+    private long liveBytes() {
+        long live = 0;
+        for (Slot slot : index.values()) {
+            live += slot.length();
+        }
+        return live;
+    }
+
+    /**
+     * The id of the root item of the drive that {@code graphClient} reads as {@code /me/drive}, or
+     * null when Graph cannot be asked.
+     */
+    private static String driveOf(GraphClient graphClient, String path) {
+        try {
+            String id = graphClient.readItem(graphClient.open("/me/drive/root?$select=id")).id();
+            if (id != null && !id.isEmpty()) {
+                return id;
+            }
+            logger.warn("Metadata store {} not used: Graph named no root item for the drive", path);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Metadata store {} not used: the drive could not be identified: {}", path, e.getMessage());
+        }
+        return null;
+    }
+
+    private static byte[] header(String drive) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeUTF(drive);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static ByteBuffer encode(Listing listing) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(new byte[RECORD_HEADER_BYTES]);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(LISTING);
+        out.writeUTF(listing.key());
+        writeString(out, listing.cTag());
+        out.writeInt(listing.items().size());
+        for (DriveItem item : listing.items()) {
+            writeString(out, item.id());
+            writeString(out, item.name());
+            writeString(out, item.webUrl());
+            writeString(out, item.fileType());
+            writeString(out, item.parentPath());
+            out.writeBoolean(item.folder());
+            out.writeInt(item.childCount());
+            writeString(out, item.parentId());
+            out.writeBoolean(item.root());
+            out.writeBoolean(item.deleted());
+            writeString(out, item.eTag());
+            writeString(out, item.cTag());
+            writeString(out, item.lastModified());
+            writeString(out, item.driveId());
+        }
+        out.flush();
+        ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+        int length = record.remaining() - RECORD_HEADER_BYTES;
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), RECORD_HEADER_BYTES, length);
+        record.putInt(0, length).putInt(4, (int) crc.getValue());
+        return record;
+    }
+
+    private static String readKey(ByteBuffer payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteBufferInputStream(payload.duplicate()));
+        if (in.readByte() != LISTING) {
+            throw new IOException("unknown record type");
+        }
+        return in.readUTF();
+    }
+
+    private static Listing decode(ByteBuffer payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteBufferInputStream(payload));
+        in.readByte();
+        String key = in.readUTF();
+        String cTag = readString(in);
+        int count = in.readInt();
+        List<DriveItem> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String id = readString(in);
+            String name = readString(in);
+            String webUrl = readString(in);
+            String fileType = readString(in);
+            String parentPath = readString(in);
+            boolean folder = in.readBoolean();
+            int childCount = in.readInt();
+            String parentId = readString(in);
+            boolean root = in.readBoolean();
+            boolean deleted = in.readBoolean();
+            String eTag = readString(in);
+            String itemCTag = readString(in);
+            String lastModified = readString(in);
+            String driveId = readString(in);
+            items.add(new DriveItem(id, name, webUrl, fileType, parentPath, folder, childCount, parentId, root, deleted,
+                    eTag, itemCTag, lastModified, driveId));
+        }
+        return new Listing(key, cTag, List.copyOf(items));
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * A folder listing as the cache keeps it.
+     */
+    record Listing(String key, String cTag, List<DriveItem> items) {
+
+    }
+
+    private record Slot(long offset, int length) {
+
+    }
+
+    private static final class ByteBufferInputStream extends java.io.InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
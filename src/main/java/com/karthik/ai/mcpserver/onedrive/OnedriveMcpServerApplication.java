@@ -1,12 +1,23 @@
 package com.karthik.ai.mcpserver.onedrive;
 
+import java.util.List;
+
 import org.springframework.ai.tool.ToolCallbackProvider;
 import org.springframework.ai.tool.method.MethodToolCallbackProvider;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.LazyInitializationExcludeFilter;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import io.modelcontextprotocol.server.McpAsyncServer;
+import io.modelcontextprotocol.server.McpServerFeatures;
+import io.modelcontextprotocol.server.McpSyncServer;
 
 @SpringBootApplication
+@EnableScheduling
 public class OnedriveMcpServerApplication {
 
 	public static void main(String[] args) {
@@ -14,10 +25,44 @@ public class OnedriveMcpServerApplication {
 	}
 
 	@Bean
-	public ToolCallbackProvider onedriveTools(OnedriveService onedriveService) {
-		return MethodToolCallbackProvider
+	@ConditionalOnProperty(prefix = "spring.ai.mcp.server", name = "type", havingValue = "SYNC", matchIfMissing = true)
+	public ToolCallbackProvider onedriveTools(OnedriveService onedriveService, OnedriveMetrics metrics,
+			ToolBulkhead bulkhead, ObjectProvider<AccountContexts> accounts) {
+		ToolCallbackProvider tools = MethodToolCallbackProvider
 			.builder()
 			.toolObjects(onedriveService)
 			.build();
+		AccountContexts accountContexts = accounts.getIfAvailable();
+		return metrics.timed(bulkhead.guard(accountContexts != null ? accountContexts.route(tools) : tools));
+	}
+
+	/**
+	 * With {@code spring.ai.mcp.server.type: ASYNC} the same tools are registered as reactive tool
+	 * specifications instead, so that tool calls waiting on Graph do not hold a thread; the
+	 * {@code async} profile also serves them over the WebFlux transport, whose requests do not wait
+	 * on a thread either. With {@code onedrive.accounts.enabled} the tools of both modes answer as
+	 * the calling account, and with {@code onedrive.bulkhead.enabled} calls of both modes are let in
+	 * through the bulkhead.
+	 */
+	@Bean
+	@ConditionalOnProperty(prefix = "spring.ai.mcp.server", name = "type", havingValue = "ASYNC")
+	List<McpServerFeatures.AsyncToolSpecification> onedriveAsyncTools(OnedriveService onedriveService,
+			ReactiveOnedriveTools reactiveTools, ObjectProvider<AccountContexts> accounts) {
+		ToolCallbackProvider tools = MethodToolCallbackProvider
+			.builder()
+			.toolObjects(onedriveService)
+			.build();
+		AccountContexts accountContexts = accounts.getIfAvailable();
+		return accountContexts != null ? reactiveTools.accountToolSpecifications(accountContexts.route(tools))
+				: reactiveTools.toolSpecifications(tools);
+	}
+
+	/**
+	 * Under {@code spring.main.lazy-initialization}, as the {@code stdio} profile sets it, nothing
+	 * would ask for the MCP server, so it is created eagerly and with it the tools it serves.
+	 */
+	@Bean
+	static LazyInitializationExcludeFilter mcpServerEagerInitialization() {
+		return LazyInitializationExcludeFilter.forBeanTypes(McpSyncServer.class, McpAsyncServer.class);
 	}
 }
@@ -0,0 +1,149 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Publishes the counters that the cache, connection pool, request scheduler, hedger, prefetcher,
+ * coalescer, tool bulkhead, index, result cursors, path ids, exporter and accounts already keep,
+ * sampled when the registry is scraped.
+ */
+@Component
+class OnedriveMeterBinder implements MeterBinder {
+
+    private final FolderListingCache folderCache;
+    private final GraphHttpClientFactory httpClientFactory;
+    private final GraphRequestScheduler scheduler;
+    private final RequestHedger hedger;
+    private final FolderPrefetcher prefetcher;
+    private final RequestCoalescer coalescer;
+    private final ToolBulkhead bulkhead;
+    private final DriveIndex driveIndex;
+    private final ResultCursors cursors;
+    private final PathIdTrie pathIds;
+    private final DriveExporter exporter;
+    private final ObjectProvider<AccountContexts> accounts;
+
+    OnedriveMeterBinder(FolderListingCache folderCache, GraphHttpClientFactory httpClientFactory,
+            GraphRequestScheduler scheduler, RequestHedger hedger, FolderPrefetcher prefetcher,
+            RequestCoalescer coalescer, ToolBulkhead bulkhead, DriveIndex driveIndex, ResultCursors cursors,
+            PathIdTrie pathIds, DriveExporter exporter, ObjectProvider<AccountContexts> accounts) {
+        this.folderCache = folderCache;
+        this.httpClientFactory = httpClientFactory;
+        this.scheduler = scheduler;
+        this.hedger = hedger;
+        this.prefetcher = prefetcher;
+        this.coalescer = coalescer;
+        this.bulkhead = bulkhead;
+        this.driveIndex = driveIndex;
+        this.cursors = cursors;
+        this.pathIds = pathIds;
+        this.exporter = exporter;
+        this.accounts = accounts;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("onedrive.cache.requests", folderCache, cache -> cache.stats().hits())
+                .tag("result", "hit").register(registry);
+        FunctionCounter.builder("onedrive.cache.requests", folderCache, cache -> cache.stats().misses())
+                .tag("result", "miss").register(registry);
+        FunctionCounter.builder("onedrive.cache.revalidations", folderCache, cache -> cache.stats().revalidations())
+                .description("cache hits that needed a 304 round trip").register(registry);
+        Gauge.builder("onedrive.cache.size", folderCache, cache -> cache.stats().size()).register(registry);
+
+        Gauge.builder("onedrive.http.requests.in.flight", httpClientFactory, factory -> factory.stats().inFlight())
+                .register(registry);
+        // the pool figures are only known for the pooled client
+        if (httpClientFactory.stats().max() >= 0) {
+            Gauge.builder("onedrive.http.connections", httpClientFactory, factory -> factory.stats().leased())
+                    .tag("state", "leased").register(registry);
+            Gauge.builder("onedrive.http.connections", httpClientFactory, factory -> factory.stats().available())
+                    .tag("state", "available").register(registry);
+            Gauge.builder("onedrive.http.connections.pending", httpClientFactory, factory -> factory.stats().pending())
+                    .register(registry);
+            Gauge.builder("onedrive.http.connections.max", httpClientFactory, factory -> factory.stats().max())
+                    .register(registry);
+        }
+
+        FunctionCounter.builder("onedrive.graph.throttled", scheduler, s -> s.stats().throttled())
+                .description("429 and 503 answers from Graph").register(registry);
+        FunctionCounter.builder("onedrive.graph.retries", scheduler, s -> s.stats().retries()).register(registry);
+        FunctionCounter.builder("onedrive.graph.rejected", scheduler, s -> s.stats().rejected())
+                .description("requests failed fast by the rate limit or the circuit breaker").register(registry);
+        Gauge.builder("onedrive.graph.breaker.open", scheduler,
+                s -> s.stats().state() == GraphRequestScheduler.State.CLOSED ? 0 : 1).register(registry);
+
+        if (hedger.isEnabled()) {
+            FunctionCounter.builder("onedrive.graph.hedges", hedger, h -> h.stats().hedged())
+                    .tag("result", "sent").description("searches sent a second time for being slow").register(registry);
+            FunctionCounter.builder("onedrive.graph.hedges", hedger, h -> h.stats().won())
+                    .tag("result", "won").description("hedges that answered before the first request")
+                    .register(registry);
+            Gauge.builder("onedrive.graph.hedge.delay", hedger, h -> h.stats().delay().toNanos() / 1e9)
+                    .baseUnit("seconds").register(registry);
+        }
+
+        if (prefetcher.isEnabled()) {
+            FunctionCounter.builder("onedrive.prefetch.listings", prefetcher, p -> p.stats().sent())
+                    .tag("result", "sent").register(registry);
+            FunctionCounter.builder("onedrive.prefetch.listings", prefetcher, p -> p.stats().hits())
+                    .tag("result", "hit").register(registry);
+            FunctionCounter.builder("onedrive.prefetch.listings", prefetcher, p -> p.stats().wasted())
+                    .tag("result", "wasted").description("prefetched listings that expired unused").register(registry);
+            FunctionCounter.builder("onedrive.prefetch.listings", prefetcher, p -> p.stats().skipped())
+                    .tag("result", "skipped").description("prefetches dropped while Graph was busy").register(registry);
+            FunctionCounter.builder("onedrive.prefetch.listings", prefetcher, p -> p.stats().cancelled())
+                    .tag("result", "cancelled").description("prefetches interrupted once Graph got busy")
+                    .register(registry);
+            Gauge.builder("onedrive.prefetch.size", prefetcher, p -> p.stats().size()).register(registry);
+        }
+
+        FunctionCounter.builder("onedrive.graph.coalesced", coalescer, RequestCoalescer::coalesced)
+                .description("reads answered by an identical in-flight request").register(registry);
+
+        if (bulkhead.isEnabled()) {
+            Gauge.builder("onedrive.tool.bulkhead.calls", bulkhead, b -> b.stats().running())
+                    .tag("state", "running").register(registry);
+            Gauge.builder("onedrive.tool.bulkhead.calls", bulkhead, b -> b.stats().queued())
+                    .tag("state", "queued").register(registry);
+            FunctionCounter.builder("onedrive.tool.bulkhead.admitted", bulkhead, b -> b.stats().admitted())
+                    .register(registry);
+            FunctionCounter.builder("onedrive.tool.bulkhead.rejected", bulkhead, b -> b.stats().queueFull())
+                    .tag("reason", "queue_full").register(registry);
+            FunctionCounter.builder("onedrive.tool.bulkhead.rejected", bulkhead, b -> b.stats().overShare())
+                    .tag("reason", "session_share").register(registry);
+            FunctionCounter.builder("onedrive.tool.bulkhead.rejected", bulkhead, b -> b.stats().deadline())
+                    .tag("reason", "deadline").description("calls expected to wait longer than max-wait")
+                    .register(registry);
+            FunctionCounter.builder("onedrive.tool.bulkhead.rejected", bulkhead, b -> b.stats().timedOut())
+                    .tag("reason", "timeout").register(registry);
+        }
+
+        Gauge.builder("onedrive.index.items", driveIndex, DriveIndex::size).register(registry);
+
+        Gauge.builder("onedrive.cursor.results", cursors, ResultCursors::size)
+                .description("paged results kept for their next page").register(registry);
+
+        FunctionCounter.builder("onedrive.path.ids.lookups", pathIds, trie -> trie.stats().hits())
+                .tag("result", "hit").register(registry);
+        FunctionCounter.builder("onedrive.path.ids.lookups", pathIds, trie -> trie.stats().misses())
+                .tag("result", "miss").register(registry);
+        Gauge.builder("onedrive.path.ids.size", pathIds, trie -> trie.stats().size()).register(registry);
+
+        FunctionCounter.builder("onedrive.export.records", exporter, DriveExporter::exported)
+                .description("records written by metadata exports").register(registry);
+
+        accounts.ifAvailable(contexts -> {
+            Gauge.builder("onedrive.accounts.active", contexts, c -> c.stats().accounts()).register(registry);
+            FunctionCounter.builder("onedrive.accounts.created", contexts, c -> c.stats().created()).register(registry);
+            FunctionCounter.builder("onedrive.accounts.evicted", contexts, c -> c.stats().evicted())
+                    .description("accounts dropped for being idle or least recently used").register(registry);
+        });
+    }
+}
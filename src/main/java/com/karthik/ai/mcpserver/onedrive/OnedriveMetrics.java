@@ -0,0 +1,271 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.ToolCallbackProvider;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Mono;
+
+/**
+ * Hot-path instrumentation of tool calls and Graph requests. Meters are looked up once per tag
+ * combination and cached, so recording costs two {@link System#nanoTime()} calls and a map lookup.
+ * Percentile histograms are switched on in configuration rather than here.
+ * <ul>
+ * <li>{@code onedrive.tool.calls}: latency of each tool call, by tool and outcome</li>
+ * <li>{@code onedrive.tool.items}: items returned, by tool</li>
+ * <li>{@code onedrive.tool.parse}: time spent parsing and formatting results, by tool. For results
+ * streamed from Graph this includes waiting for further pages, which
+ * {@code onedrive.graph.requests} shows separately.</li>
+ * <li>{@code onedrive.graph.requests}: time to response headers of each Graph request, by endpoint,
+ * method and status</li>
+ * <li>{@code onedrive.graph.response.size}: response body bytes as read, by endpoint</li>
+ * </ul>
+ */
+@Component
+class OnedriveMetrics {
+
+    private static final String IO_ERROR = "IO_ERROR";
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> summaries = new ConcurrentHashMap<>();
+
+    OnedriveMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Wraps every tool of {@code tools} so that its calls are timed.
+     */
+    ToolCallbackProvider timed(ToolCallbackProvider tools) {
+        ToolCallback[] timed = Arrays.stream(tools.getToolCallbacks())
+                .map(TimedToolCallback::new)
+                .toArray(ToolCallback[]::new);
+        return () -> timed;
+    }
+
+    /**
+     * Times a reactive tool call from subscription until it completes.
+     */
+    Mono<String> timed(String tool, Mono<String> call) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return call.doOnSuccess(result -> recordTool(tool, result, start))
+                    .doOnError(e -> recordTool(tool, null, start));
+        });
+    }
+
+    void recordItems(String tool, int items, long startNanos) {
+        timer("onedrive.tool.parse", "tool", tool).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        summary("onedrive.tool.items", null, "tool", tool).record(items);
+    }
+
+    /**
+     * RestClient interceptor recording each Graph request and, once its body is closed, the bytes
+     * read from it.
+     */
+    ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        String endpoint = endpoint(request.getURI());
+        String method = request.getMethod().name();
+        long start = System.nanoTime();
+        ClientHttpResponse response;
+        try {
+            response = execution.execute(request, body);
+        } catch (IOException | RuntimeException e) {
+            recordGraph(endpoint, method, IO_ERROR, start);
+            throw e;
+        }
+        recordGraph(endpoint, method, String.valueOf(response.getStatusCode().value()), start);
+        DistributionSummary size = summary("onedrive.graph.response.size", "bytes", "endpoint", endpoint);
+        return new GraphHttpClientFactory.DelegatingResponse(response) {
+            private CountingInputStream counted;
+
+            @Override
+            public InputStream getBody() throws IOException {
+                if (counted == null) {
+                    counted = new CountingInputStream(super.getBody());
+                }
+                return counted;
+            }
+
+            private boolean closed;
+
+            @Override
+            public void close() {
+                if (!closed) {
+                    closed = true;
+                    size.record(counted != null ? counted.count : 0);
+                }
+                super.close();
+            }
+        };
+    }
+
+    /**
+     * WebClient filter recording the same meters as {@link #intercept} for the ASYNC mode.
+     */
+    Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        String endpoint = endpoint(request.url());
+        String method = request.method().name();
+        long start = System.nanoTime();
+        return next.exchange(request)
+                .doOnError(e -> recordGraph(endpoint, method, IO_ERROR, start))
+                .map(response -> {
+                    recordGraph(endpoint, method, String.valueOf(response.statusCode().value()), start);
+                    DistributionSummary size = summary("onedrive.graph.response.size", "bytes", "endpoint", endpoint);
+                    AtomicLong bytes = new AtomicLong();
+                    return response.mutate()
+                            .body(buffers -> buffers
+                                    .doOnNext(buffer -> bytes.addAndGet(buffer.readableByteCount()))
+                                    .doFinally(signal -> size.record(bytes.get())))
+                            .build();
+                });
+    }
+
+    /**
+     * Maps a Graph URL to a low-cardinality endpoint name, leaving out paths and item ids.
+     */
+    static String endpoint(URI uri) {
+        String path = uri.getRawPath() != null ? uri.getRawPath() : "";
+        if (path.endsWith("/$batch")) {
+            return "batch";
+        }
+        if (path.contains("/search(") || path.contains("/search%28")) {
+            return "search";
+        }
+        if (path.endsWith("/delta") || path.contains("/delta(") || path.contains("/delta%28")) {
+            return "delta";
+        }
+        if (path.endsWith("/children")) {
+            return "children";
+        }
+        if (path.endsWith("/content")) {
+            return "content";
+        }
+        return "item";
+    }
+
+    private void recordTool(String tool, String result, long startNanos) {
+        // tools report failures as text, which the tool callback may have JSON-quoted
+        boolean failed = result == null || result.startsWith("Error") || result.startsWith("\"Error");
+        timer("onedrive.tool.calls", "tool", tool, "outcome", failed ? "error" : "success")
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void recordGraph(String endpoint, String method, String status, long startNanos) {
+        timer("onedrive.graph.requests", "endpoint", endpoint, "method", method, "status", status)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer timer(String name, String... tags) {
+        return timers.computeIfAbsent(name + Arrays.toString(tags),
+                key -> Timer.builder(name).tags(tags).register(registry));
+    }
+
+    private DistributionSummary summary(String name, String baseUnit, String... tags) {
+        return summaries.computeIfAbsent(name + Arrays.toString(tags),
+                key -> DistributionSummary.builder(name).baseUnit(baseUnit).tags(tags).register(registry));
+    }
+
+    private final class TimedToolCallback implements ToolCallback {
+
+        private final ToolCallback delegate;
+        private final String tool;
+
+        TimedToolCallback(ToolCallback delegate) {
+            this.delegate = delegate;
+            this.tool = delegate.getToolDefinition().name();
+        }
+
+        @Override
+        public ToolDefinition getToolDefinition() {
+            return delegate.getToolDefinition();
+        }
+
+        @Override
+        public ToolMetadata getToolMetadata() {
+            return delegate.getToolMetadata();
+        }
+
+        @Override
+        public String call(String toolInput) {
+            long start = System.nanoTime();
+            String result = null;
+            try {
+                result = delegate.call(toolInput);
+                return result;
+            } finally {
+                recordTool(tool, result, start);
+            }
+        }
+
+        @Override
+        public String call(String toolInput, ToolContext toolContext) {
+            long start = System.nanoTime();
+            String result = null;
+            try {
+                result = delegate.call(toolInput, toolContext);
+                return result;
+            } finally {
+                recordTool(tool, result, start);
+            }
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -1,64 +1,139 @@
 package com.karthik.ai.mcpserver.onedrive;
 
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
 
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.MediaType;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientResponseException;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 
 @Service
+@ImportRuntimeHints(OnedriveService.ToolHints.class)
 public class OnedriveService {
 
-    private final RestClient restClient;
+    static final String LISTING_SELECT = "name,id,webUrl,file,folder,parentReference";
+
+    private static final String SEARCH_SELECT = "name,id,webUrl,file,parentReference,lastModifiedDateTime";
+
+    private static final String FORMAT_DESCRIPTION = "'json' (default) for a list of objects, or 'compact' for a table with the column names given once and the path and URL prefix shared by all rows factored out, which is much smaller for large results";
+    private static final String LIMIT_DESCRIPTION = "the maximum number of items to return. When there are more, the result has a nextCursor for the next page";
+    private static final String CURSOR_DESCRIPTION = "the nextCursor of a previous call, to get the next page of that result without searching again";
+
+    private final GraphClient graphClient;
+    private final DriveIndex driveIndex;
+    private final FolderListingCache folderCache;
+    private final FolderTreeCrawler treeCrawler;
+    private final RequestCoalescer coalescer;
+    private final OnedriveMetrics metrics;
+    private final ResultCursors cursors;
+    private final PathIdTrie pathIds;
+    private final FileContentReader contentReader;
+    private final FolderPrefetcher prefetcher;
+    private final DriveExporter exporter;
     private final ObjectMapper objectMapper;
+    private final ObjectWriter recordWriter;
+
+    @Value("${onedrive.paging.page-size:200}")
+    private int pageSize = 200;
+
+    @Value("${onedrive.paging.max-items:1000}")
+    private int maxItems = 1000;
+
+    @Value("${onedrive.tree.max-depth:5}")
+    private int treeMaxDepth = 5;
+
+    @Value("${onedrive.tree.max-items:5000}")
+    private int treeMaxItems = 5000;
 
-    @Value("${onedrive.access-token}")
-    private String accessToken;
+    @Value("${onedrive.search.max-terms:8}")
+    private int searchMaxTerms = 8;
 
-    public OnedriveService() {
-        this.restClient = RestClient.builder()
-                .baseUrl("https://graph.microsoft.com/v1.0")
-                .build();
+    public OnedriveService(GraphClient graphClient, DriveIndex driveIndex, FolderListingCache folderCache,
+            FolderTreeCrawler treeCrawler, RequestCoalescer coalescer, OnedriveMetrics metrics, ResultCursors cursors,
+            PathIdTrie pathIds, FileContentReader contentReader, FolderPrefetcher prefetcher, DriveExporter exporter) {
+        this.graphClient = graphClient;
+        this.driveIndex = driveIndex;
+        this.folderCache = folderCache;
+        this.treeCrawler = treeCrawler;
+        this.coalescer = coalescer;
+        this.metrics = metrics;
+        this.cursors = cursors;
+        this.pathIds = pathIds;
+        this.contentReader = contentReader;
+        this.prefetcher = prefetcher;
+        this.exporter = exporter;
         this.objectMapper = new ObjectMapper();
+        this.recordWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
     }
 
-    @Tool(description = "Search for files in OneDrive using a query under an optional folder and returns file name and Web URL as link and its path")
-    public String searchFiles(@ToolParam(description = "the search file name in the given query") String fileName,
-            @ToolParam(description = "A folder name in the search query to search files under") String folder) {
+    /**
+     * {@link #searchFiles} returning the plain list of every match.
+     */
+    String searchFiles(String fileName, String folder) {
+        return searchFiles(fileName, folder, null, null, null);
+    }
+
+    @Tool(description = "Search for files in OneDrive using a query under an optional folder and returns file name and Web URL as link and its path. Several terms, such as 'resume ats' or 'resume OR \"cover letter\"', are searched for separately and the files matching any of them are returned, best match first")
+    public String searchFiles(@ToolParam(description = "the search file name in the given query, or several terms separated by spaces, commas or OR, with phrases in double quotes") String fileName,
+            @ToolParam(description = "A folder name in the search query to search files under") String folder,
+            @ToolParam(description = FORMAT_DESCRIPTION, required = false) String format,
+            @ToolParam(description = LIMIT_DESCRIPTION, required = false) Integer limit,
+            @ToolParam(description = CURSOR_DESCRIPTION, required = false) String cursor) {
         try {
-            String encodedFolder = folder != null && !folder.isEmpty() 
-                ? java.net.URLEncoder.encode(folder, StandardCharsets.UTF_8.toString())
-                : "";
-
-            // Microsoft Graph API requires single quotes around the search term
-            String searchQuery = String.format("'%s'", fileName);
-            
-            String apiPath;
-            if (!encodedFolder.isEmpty()) {
-                apiPath = String.format("/me/drive/root:/%s:/search(q=%s)?$select=id,name,webUrl,file,parentReference",
-                        encodedFolder, searchQuery);
-            } else {
-                apiPath = String.format("/me/drive/root/search(q=%s)?$select=name,id,webUrl,file,parentReference",
-                        searchQuery);
+            if (cursor != null && !cursor.isBlank()) {
+                return nextPage("searchFiles", cursor, format, limit);
             }
+            List<String> terms = SearchTerms.split(fileName, searchMaxTerms);
+            if (terms.size() > 1) {
+                return fileResults(searchTerms(terms, folder), format, limit);
+            }
+            if (driveIndex.isFresh()) {
+                return fileResults(driveIndex.search(fileName, folder, false, maxItems), format, limit);
+            }
+
+            return byFolderId(folder, () -> {
+                String apiPath = searchFilesPath(fileName, folder);
 
-            String response = restClient.get()
-                    .uri(apiPath)
-                    .header("Authorization", "Bearer " + accessToken)
-                    .accept(MediaType.APPLICATION_JSON)
-                    .retrieve()
-                    .body(String.class);
+                if (!isPlain(format, limit)) {
+                    return fileResults(coalescer.execute(graphClient.requestKey(apiPath, List.class),
+                            () -> List.copyOf(collectItems(graphClient.openHedged(apiPath)))), format, limit);
+                }
+                return coalescer.execute(graphClient.requestKey(apiPath, String.class), () -> {
+                    ClientHttpResponse response = graphClient.openHedged(apiPath);
 
-            return filterMatchingFiles(response);
+                    return filterMatchingFiles(fromGraph(response));
+                });
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "Error searching files: interrupted";
         } catch (Exception e) {
             return "Error searching files: " + e.getMessage();
         }
@@ -67,18 +142,17 @@ public class OnedriveService {
     @Tool(description = "Search for folder path in OneDrive using folder name and returns folder details including path")
     public String searchFolderPath(@ToolParam(description = "the folder name to search for") String folderName) {
         try {
-            // Microsoft Graph API requires single quotes around the search term
-            String searchQuery = String.format("'%s'", folderName);
-            String apiPath = String.format("/me/drive/root/search(q=%s)?$filter=folder ne null&$select=name,id,webUrl,folder,parentReference", searchQuery);
-
-            String response = restClient.get()
-                    .uri(apiPath)
-                    .header("Authorization", "Bearer " + accessToken)
-                    .accept(MediaType.APPLICATION_JSON)
-                    .retrieve()
-                    .body(String.class);
-
-            return filterMatchingFolders(response);
+            if (driveIndex.isFresh()) {
+                return filterMatchingFolders(fromItems(driveIndex.search(folderName, null, true, maxItems)));
+            }
+
+            String apiPath = searchFoldersPath(folderName);
+
+            return coalescer.execute(graphClient.requestKey(apiPath, String.class), () -> {
+                ClientHttpResponse response = graphClient.openHedged(apiPath);
+
+                return filterMatchingFolders(fromGraph(response));
+            });
         } catch (java.io.IOException e) {
             return "Error processing response: " + e.getMessage();
         } catch (RuntimeException e) {
@@ -86,107 +160,688 @@ public class OnedriveService {
         }
     }
 
+    /**
+     * {@link #listFolderContents} returning the plain list of the whole folder.
+     */
+    String listFolderContents(String folderPath) {
+        return listFolderContents(folderPath, null, null, null);
+    }
+
     @Tool(description = "List all files and folders under a specific folder path in OneDrive. The folder path can be nested like 'Documents/Bills'")
-    public String listFolderContents(@ToolParam(description = "the folder path to list contents from, e.g. 'Documents' or 'Documents/Bills'") String folderPath) {
+    public String listFolderContents(@ToolParam(description = "the folder path to list contents from, e.g. 'Documents' or 'Documents/Bills'") String folderPath,
+            @ToolParam(description = FORMAT_DESCRIPTION, required = false) String format,
+            @ToolParam(description = LIMIT_DESCRIPTION, required = false) Integer limit,
+            @ToolParam(description = CURSOR_DESCRIPTION, required = false) String cursor) {
         try {
-            String encodedPath = folderPath != null && !folderPath.isEmpty()
-                ? java.net.URLEncoder.encode(folderPath, StandardCharsets.UTF_8.toString())
-                : "";
-
-            String apiPath = encodedPath.isEmpty()
-                ? "/me/drive/root/children?$select=name,id,webUrl,file,folder,parentReference"
-                : String.format("/me/drive/root:/%s:/children?$select=name,id,webUrl,file,folder,parentReference", encodedPath);
-
-            String response = restClient.get()
-                    .uri(apiPath)
-                    .header("Authorization", "Bearer " + accessToken)
-                    .accept(MediaType.APPLICATION_JSON)
-                    .retrieve()
-                    .body(String.class);
-
-            return filterFolderContents(response);
+            if (cursor != null && !cursor.isBlank()) {
+                return nextPage("listFolderContents", cursor, format, limit);
+            }
+            if (folderCache.isEnabled() || prefetcher.isEnabled() || !isPlain(format, limit)) {
+                List<DriveItem> items = loadFolder(folderPath);
+                prefetcher.prefetch(folderPath, items, this::listFolder);
+                return folderContentResults(items, format, limit);
+            }
+
+            return byFolderId(folderPath, () -> {
+                String apiPath = listingPath(folderPath);
+
+                return coalescer.execute(graphClient.requestKey(apiPath, String.class), () -> {
+                    ClientHttpResponse response = graphClient.open(apiPath);
+
+                    return filterFolderContents(fromGraph(response));
+                });
+            });
         } catch (Exception e) {
             return "Error listing folder contents: " + e.getMessage();
         }
     }
 
-    private String filterMatchingFiles(String response) throws java.io.IOException {
+    @Tool(description = "List a OneDrive folder together with its subfolders, down to a maximum depth, as a nested tree of files and folders. Use this instead of listing subfolders one by one")
+    public String listFolderTree(@ToolParam(description = "the folder path to list, e.g. 'Documents' or 'Documents/Bills'. Empty for the drive root", required = false) String folderPath,
+            @ToolParam(description = "how many folder levels to expand, 1 lists only the folder itself. Defaults to 3", required = false) Integer maxDepth,
+            @ToolParam(description = "the maximum number of files and folders to return. Defaults to the server limit", required = false) Integer maxItems) {
+        try {
+            int depth = Math.min(maxDepth != null && maxDepth > 0 ? maxDepth : 3, treeMaxDepth);
+            int items = Math.min(maxItems != null && maxItems > 0 ? maxItems : this.maxItems, treeMaxItems);
+            FolderTreeCrawler.Tree tree = treeCrawler.crawl(folderPath, depth, items, this::loadFolder);
+            return objectMapper.writeValueAsString(new FolderTree(folderPath != null ? folderPath : "",
+                    toTreeItems(tree.items()), tree.truncated()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "Error listing folder tree: interrupted";
+        } catch (Exception e) {
+            return "Error listing folder tree: " + e.getMessage();
+        }
+    }
+
+    @Tool(description = "List the files and folders under several OneDrive folder paths at once. Returns one entry per folder path with either its contents or an error")
+    public String listFolderContentsBatch(@ToolParam(description = "the folder paths to list, e.g. ['Documents', 'Documents/Bills']") List<String> folderPaths) {
+        try {
+            return writeBatch("folderPath", folderPaths, runBatch(folderPaths, i -> listingPath(folderPaths.get(i))),
+                    this::writeFolderContent);
+        } catch (Exception e) {
+            return "Error listing folder contents: " + e.getMessage();
+        }
+    }
+
+    @Tool(description = "Search for several file names in OneDrive at once under an optional folder. Returns one entry per query with either its matching files or an error")
+    public String searchFilesBatch(@ToolParam(description = "the file names to search for") List<String> fileNames,
+            @ToolParam(description = "A folder name to search files under", required = false) String folder) {
+        try {
+            if (driveIndex.isFresh()) {
+                List<BatchResult> results = new ArrayList<>();
+                for (String fileName : fileNames) {
+                    results.add(new BatchResult(driveIndex.search(fileName, folder, false, maxItems), null));
+                }
+                return writeBatch("fileName", fileNames, results, this::writeFileInfo);
+            }
+
+            List<String> folders = Collections.nCopies(fileNames.size(), folder);
+            return writeBatch("fileName", fileNames, runBatch(folders, i -> searchFilesPath(fileNames.get(i), folder)),
+                    this::writeFileInfo);
+        } catch (Exception e) {
+            return "Error searching files: " + e.getMessage();
+        }
+    }
+
+    @Tool(description = "Read the text of a OneDrive file one chunk at a time. Returns the text from the offset, the file size and, unless the end of the file was reached, the nextOffset to read the following chunk from")
+    public String readFileContent(@ToolParam(description = "the path of the file, e.g. 'Documents/notes.txt'") String path,
+            @ToolParam(description = "the byte offset to read from: 0 for the start of the file, or the nextOffset of the previous chunk. Defaults to 0", required = false) Long offset,
+            @ToolParam(description = "the maximum number of bytes to read. Defaults to the server limit, which also caps it", required = false) Integer length) {
+        try {
+            FileContentReader.Chunk chunk = contentReader.read(contentPath(path), offset != null ? offset : 0,
+                    length != null ? length : 0);
+            return objectMapper.writeValueAsString(new FileContent(path, chunk.offset(), chunk.nextOffset(),
+                    chunk.size() >= 0 ? chunk.size() : null, chunk.content()));
+        } catch (Exception e) {
+            return "Error reading file content: " + e.getMessage();
+        }
+    }
+
+    @Tool(description = "Export the metadata of every file and folder under a OneDrive folder to a file on the server, one JSON object per line in the format of listFolderContents. Calling it again with the same folder and file name resumes an interrupted export. Returns the number of records written and the throughput")
+    public String exportFolderMetadata(@ToolParam(description = "the folder path to export, e.g. 'Documents'. Empty for the whole drive", required = false) String folderPath,
+            @ToolParam(description = "the name of the file to write in the server's export directory, e.g. 'documents.ndjson'") String fileName) {
+        try {
+            return objectMapper.writeValueAsString(
+                    exporter.exportToFile(folderPath, fileName, exportPaths(), this::writeFolderContent));
+        } catch (Exception e) {
+            return "Error exporting folder metadata: " + e.getMessage();
+        }
+    }
+
+    /**
+     * Streams the metadata of everything under {@code folderPath} to {@code out} as NDJSON.
+     */
+    DriveExporter.Result exportFolderMetadata(String folderPath, java.io.OutputStream out) throws java.io.IOException {
+        return exporter.export(folderPath, out, exportPaths(), this::writeFolderContent);
+    }
+
+    /**
+     * Addresses export listings like tool listings, by id where one is known.
+     */
+    private DriveExporter.ListingPaths exportPaths() {
+        return new DriveExporter.ListingPaths() {
+            @Override
+            public String apiPath(String folderPath) throws java.io.IOException {
+                return listingPath(folderPath);
+            }
+
+            @Override
+            public boolean forget(String folderPath) {
+                return pathIds.invalidate(folderPath);
+            }
+        };
+    }
+
+    int maxItems() {
+        return maxItems;
+    }
+
+    int searchMaxTerms() {
+        return searchMaxTerms;
+    }
+
+    /**
+     * The same tools for another account: Graph is called through {@code graphClient}, and the
+     * listings, result cursors and path ids are the account's own. The tree crawler, the coalescer,
+     * whose keys include the token, and the metrics are shared. Accounts have no drive index, no
+     * prefetching and no exports.
+     */
+    OnedriveService forAccount(GraphClient graphClient, FolderListingCache folderCache, ResultCursors cursors,
+            PathIdTrie pathIds) {
+        OnedriveService account = new OnedriveService(graphClient,
+                new DriveIndex(graphClient, false, Duration.ZERO), folderCache, treeCrawler, coalescer, metrics,
+                cursors, pathIds, new FileContentReader(graphClient, contentReader.maxChunkBytes()),
+                FolderPrefetcher.disabled(), exporter.forAccount(graphClient));
+        account.pageSize = pageSize;
+        account.maxItems = maxItems;
+        account.treeMaxDepth = treeMaxDepth;
+        account.treeMaxItems = treeMaxItems;
+        account.searchMaxTerms = searchMaxTerms;
+        return account;
+    }
+
+    /**
+     * Searches for every term on a virtual thread of its own, so that the search takes as long as
+     * the slowest term rather than all of them together, and ranks the merged results. The first
+     * failed term search fails the whole search.
+     */
+    List<DriveItem> searchTerms(List<String> terms, String folder) throws java.io.IOException, InterruptedException {
+        List<List<DriveItem>> results = new ArrayList<>();
+        if (driveIndex.isFresh()) {
+            for (String term : terms) {
+                results.add(driveIndex.search(term, folder, false, maxItems));
+            }
+            return SearchTerms.rank(terms, results, maxItems);
+        }
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<List<DriveItem>>> searches = new ArrayList<>();
+            for (String term : terms) {
+                searches.add(executor.submit(() -> searchTerm(term, folder)));
+            }
+            try {
+                for (Future<List<DriveItem>> search : searches) {
+                    results.add(search.get());
+                }
+            } catch (ExecutionException e) {
+                executor.shutdownNow();
+                if (e.getCause() instanceof java.io.IOException cause) {
+                    throw cause;
+                }
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return SearchTerms.rank(terms, results, maxItems);
+    }
+
+    /**
+     * Formats files as {@link #searchFiles} does, for results that were read elsewhere.
+     */
+    String fileResults(List<DriveItem> items) throws java.io.IOException {
+        return filterMatchingFiles(fromItems(items));
+    }
+
+    /**
+     * Formats folders as {@link #searchFolderPath} does.
+     */
+    String folderResults(List<DriveItem> items) throws java.io.IOException {
+        return filterMatchingFolders(fromItems(items));
+    }
+
+    /**
+     * Formats a listing as {@link #listFolderContents} does.
+     */
+    String folderContentResults(List<DriveItem> items) throws java.io.IOException {
+        return filterFolderContents(fromItems(items));
+    }
+
+    /**
+     * Formats files as {@link #searchFiles} does when given a format or limit, storing the result
+     * for its next page when it does not fit the limit.
+     */
+    String fileResults(List<DriveItem> items, String format, Integer limit) throws java.io.IOException {
+        if (isPlain(format, limit)) {
+            return fileResults(items);
+        }
+        return writePage("searchFiles", items, 0, limit != null && limit > 0 ? limit : 0, null, isCompact(format));
+    }
+
+    /**
+     * Formats a listing as {@link #listFolderContents} does when given a format or limit.
+     */
+    String folderContentResults(List<DriveItem> items, String format, Integer limit) throws java.io.IOException {
+        if (isPlain(format, limit)) {
+            return folderContentResults(items);
+        }
+        return writePage("listFolderContents", items, 0, limit != null && limit > 0 ? limit : 0, null,
+                isCompact(format));
+    }
+
+    /**
+     * Serves the page of a stored result that {@code cursor} points at. Without a limit the page
+     * is as long as the first one.
+     */
+    String nextPage(String tool, String cursor, String format, Integer limit) throws java.io.IOException {
+        ResultCursors.Page page = cursors.page(tool, cursor.trim());
+        return writePage(tool, page.items(), page.offset(), limit != null && limit > 0 ? limit : page.limit(),
+                page.id(), isCompact(format));
+    }
+
+    /**
+     * Whether a call asks for the plain list of every result, which is streamed without holding the
+     * items, rather than for a page or the compact format.
+     */
+    static boolean isPlain(String format, Integer limit) {
+        return !isCompact(format) && (limit == null || limit <= 0);
+    }
+
+    private static boolean isCompact(String format) {
+        if (format == null || format.isBlank() || format.equalsIgnoreCase("json")) {
+            return false;
+        }
+        if (format.equalsIgnoreCase("compact")) {
+            return true;
+        }
+        throw new IllegalArgumentException("format must be 'json' or 'compact' but was '" + format + "'");
+    }
+
+    private String filterMatchingFiles(ItemSource items) throws java.io.IOException {
         try {
-            JsonNode root = objectMapper.readTree(response);
-            JsonNode value = root.get("value");
-
-            List<FileInfo> results = value != null && value.isArray()
-                    ? StreamSupport.stream(value.spliterator(), false)
-                            .map(item -> new FileInfo(
-                                    item.path("name").asText(),
-                                    item.path("webUrl").asText(),
-                                    item.path("file").asText(),
-                                    item.path("parentReference").path("path").asText()
-                                    ))
-                            .collect(Collectors.toList())
-                    : List.of();
-
-            return objectMapper.writeValueAsString(results);
+            return writeItems("searchFiles", items, this::writeFileInfo);
         } catch (Exception e) {
             return "Error processing search results: " + e.getMessage();
         }
     }
 
-    private String filterMatchingFolders(String response) throws java.io.IOException {
+    private String filterMatchingFolders(ItemSource items) throws java.io.IOException {
         try {
-            JsonNode root = objectMapper.readTree(response);
-            JsonNode value = root.get("value");
-
-            List<FolderInfo> results = value != null && value.isArray()
-                    ? StreamSupport.stream(value.spliterator(), false)
-                            .map(item -> new FolderInfo(
-                                    item.path("name").asText(),
-                                    item.path("webUrl").asText(),
-                                    item.path("parentReference").path("path").asText(),
-                                    item.path("folder").path("childCount").asInt()
-                                    ))
-                            .collect(Collectors.toList())
-                    : List.of();
-
-            return objectMapper.writeValueAsString(results);
+            return writeItems("searchFolderPath", items, this::writeFolderInfo);
         } catch (java.io.IOException e) {
             return "Error processing folder search results: " + e.getMessage();
         }
     }
 
-    private String filterFolderContents(String response) throws java.io.IOException {
+    private String filterFolderContents(ItemSource items) throws java.io.IOException {
         try {
-            JsonNode root = objectMapper.readTree(response);
-            JsonNode value = root.get("value");
-
-            List<Object> results = value != null && value.isArray()
-                    ? StreamSupport.stream(value.spliterator(), false)
-                            .map(item -> {
-                                if (item.has("folder")) {
-                                    return new FolderInfo(
-                                        item.path("name").asText(),
-                                        item.path("webUrl").asText(),
-                                        item.path("parentReference").path("path").asText(),
-                                        item.path("folder").path("childCount").asInt()
-                                    );
-                                } else {
-                                    return new FileInfo(
-                                        item.path("name").asText(),
-                                        item.path("webUrl").asText(),
-                                        item.path("file").asText(),
-                                        item.path("parentReference").path("path").asText()
-                                    );
-                                }
-                            })
-                            .collect(Collectors.toList())
-                    : List.of();
-
-            return objectMapper.writeValueAsString(results);
+            return writeItems("listFolderContents", items, this::writeFolderContent);
         } catch (Exception e) {
             return "Error processing folder contents: " + e.getMessage();
         }
     }
 
+    private void writeFileInfo(DriveItem item, JsonGenerator generator) throws java.io.IOException {
+        recordWriter.writeValue(generator, new FileInfo(
+                item.name(),
+                item.webUrl(),
+                item.fileType(),
+                item.parentPath()
+                ));
+    }
+
+    private void writeFolderInfo(DriveItem item, JsonGenerator generator) throws java.io.IOException {
+        recordWriter.writeValue(generator, new FolderInfo(
+                item.name(),
+                item.webUrl(),
+                item.parentPath(),
+                item.childCount()
+                ));
+    }
+
+    private void writeFolderContent(DriveItem item, JsonGenerator generator) throws java.io.IOException {
+        if (item.folder()) {
+            writeFolderInfo(item, generator);
+        } else {
+            writeFileInfo(item, generator);
+        }
+    }
+
+    /**
+     * Streams items into a JSON array until the source is exhausted or {@code maxItems} is reached.
+     * For live Graph sources pages beyond the cap are never requested, and neither the response
+     * body nor the result is ever held as a tree.
+     */
+    private String writeItems(String tool, ItemSource source, ItemWriter writer) throws java.io.IOException {
+        long start = System.nanoTime();
+        StringWriter out = new StringWriter();
+        int[] written = {0};
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartArray();
+            try {
+                source.forEach(item -> {
+                    if (written[0] >= maxItems) {
+                        return false;
+                    }
+                    try {
+                        writer.write(item, generator);
+                    } catch (java.io.IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return ++written[0] < maxItems;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            generator.writeEndArray();
+        }
+        metrics.recordItems(tool, written[0], start);
+        return out.toString();
+    }
+
+    /**
+     * Writes one page of {@code items} as an object holding the page, the total count and, when more
+     * items follow, the cursor of the next page. The result is stored under a new cursor id the
+     * first time it needs one.
+     *
+     * @param limit the page size, or 0 for all remaining items
+     * @param cursorId the id under which the result is already stored, or null
+     */
+    private String writePage(String tool, List<DriveItem> items, int offset, int limit, String cursorId,
+            boolean compact) throws java.io.IOException {
+        long start = System.nanoTime();
+        int end = limit > 0 ? Math.min(items.size(), offset + limit) : items.size();
+        String nextCursor = null;
+        if (end < items.size()) {
+            nextCursor = ResultCursors.cursor(cursorId != null ? cursorId : cursors.store(tool, items, limit), end);
+        }
+        List<DriveItem> page = items.subList(offset, end);
+        boolean withFolders = tool.equals("listFolderContents");
+        StringWriter out = new StringWriter();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartObject();
+            if (compact) {
+                CompactItemTable.write(generator, page, withFolders);
+            } else {
+                generator.writeArrayFieldStart("items");
+                for (DriveItem item : page) {
+                    if (withFolders) {
+                        writeFolderContent(item, generator);
+                    } else {
+                        writeFileInfo(item, generator);
+                    }
+                }
+                generator.writeEndArray();
+            }
+            generator.writeNumberField("total", items.size());
+            if (nextCursor != null) {
+                generator.writeStringField("nextCursor", nextCursor);
+            }
+            generator.writeEndObject();
+        }
+        metrics.recordItems(tool, page.size(), start);
+        return out.toString();
+    }
+
+    /**
+     * Lists a folder into memory, taking a prefetched listing when there is one.
+     */
+    private List<DriveItem> loadFolder(String folderPath) throws java.io.IOException {
+        List<DriveItem> prefetched = prefetcher.take(folderPath);
+        return prefetched != null ? prefetched : listFolder(folderPath);
+    }
+
+    /**
+     * Lists a folder into memory, through the listing cache when it is enabled. Concurrent loads
+     * of the same folder share one listing, or one revalidation of the cached listing.
+     */
+    private List<DriveItem> listFolder(String folderPath) throws java.io.IOException {
+        return byFolderId(folderPath, () -> {
+            String apiPath = listingPath(folderPath);
+            return coalescer.execute(graphClient.requestKey(apiPath, List.class), () -> {
+                if (folderCache.isEnabled()) {
+                    return folderCache.get(folderPath, LISTING_SELECT, folderItemPath(folderPath),
+                            () -> collectItems(graphClient.open(apiPath)));
+                }
+                return List.copyOf(collectItems(graphClient.open(apiPath)));
+            });
+        });
+    }
+
+    private List<DriveItem> searchTerm(String term, String folder) throws java.io.IOException {
+        return byFolderId(folder, () -> {
+            String apiPath = searchFilesPath(term, folder);
+            return coalescer.execute(graphClient.requestKey(apiPath, List.class),
+                    () -> List.copyOf(collectItems(graphClient.openHedged(apiPath))));
+        });
+    }
+
+    /**
+     * Runs a call that may address {@code folderPath} by its id from the {@link PathIdTrie}. When
+     * Graph answers 404 while an id was known, the id is forgotten and the call is repeated once,
+     * which then addresses the folder by its path.
+     */
+    private <T> T byFolderId(String folderPath, RequestCoalescer.Call<T> call) throws java.io.IOException {
+        try {
+            return call.call();
+        } catch (RestClientResponseException e) {
+            if (!e.getStatusCode().isSameCodeAs(HttpStatus.NOT_FOUND) || !pathIds.invalidate(folderPath)) {
+                throw e;
+            }
+            return call.call();
+        }
+    }
+
+    private List<Object> toTreeItems(List<FolderTreeCrawler.Node> nodes) {
+        List<Object> items = new ArrayList<>(nodes.size());
+        for (FolderTreeCrawler.Node node : nodes) {
+            DriveItem item = node.item();
+            if (!item.folder()) {
+                items.add(new FileInfo(item.name(), item.webUrl(), item.fileType(), item.parentPath()));
+                continue;
+            }
+            FolderInfo folder = new FolderInfo(item.name(), item.webUrl(), item.parentPath(), item.childCount());
+            String error = node.error().get();
+            List<Object> children;
+            synchronized (node.children()) {
+                children = node.children().isEmpty() ? null : toTreeItems(node.children());
+            }
+            items.add(new FolderNode(folder, children, error));
+        }
+        return items;
+    }
+
+    private List<DriveItem> collectItems(ClientHttpResponse firstPage) throws java.io.IOException {
+        List<DriveItem> items = new ArrayList<>();
+        graphClient.readItems(firstPage, pathIds.learning(item -> items.add(item) && items.size() < maxItems));
+        return items;
+    }
+
+    private ItemSource fromGraph(ClientHttpResponse firstPage) {
+        return consumer -> graphClient.readItems(firstPage, pathIds.learning(consumer));
+    }
+
+    private static ItemSource fromItems(List<DriveItem> items) {
+        return consumer -> {
+            for (DriveItem item : items) {
+                if (!consumer.test(item)) {
+                    return;
+                }
+            }
+        };
+    }
+
+    /**
+     * Runs one request per folder in $batch calls. Requests that failed with 404 because they
+     * addressed their folder by a stale id are repeated once with its path.
+     *
+     * @param folders the folder that each request addresses
+     */
+    private List<BatchResult> runBatch(List<String> folders, ApiPaths apiPaths) throws java.io.IOException {
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < folders.size(); i++) {
+            paths.add(apiPaths.apiPath(i));
+        }
+        List<BatchResult> results = new ArrayList<>(runBatch(paths));
+        Set<String> invalidated = new HashSet<>();
+        List<Integer> stale = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            String folder = folders.get(i);
+            if (results.get(i).status() == 404 && (invalidated.contains(folder) || pathIds.invalidate(folder))) {
+                invalidated.add(folder);
+                stale.add(i);
+            }
+        }
+        if (!stale.isEmpty()) {
+            List<String> retries = new ArrayList<>();
+            for (int i : stale) {
+                retries.add(apiPaths.apiPath(i));
+            }
+            List<BatchResult> retried = runBatch(retries);
+            for (int i = 0; i < stale.size(); i++) {
+                results.set(stale.get(i), retried.get(i));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Runs the requests in JSON $batch calls of up to {@link GraphClient#MAX_BATCH_SIZE} and
+     * returns one result per request, in request order. A failed sub-request only fails its own
+     * result.
+     */
+    private List<BatchResult> runBatch(List<String> apiPaths) throws java.io.IOException {
+        List<BatchResult> results = new ArrayList<>();
+        for (int start = 0; start < apiPaths.size(); start += GraphClient.MAX_BATCH_SIZE) {
+            List<String> chunk = apiPaths.subList(start, Math.min(start + GraphClient.MAX_BATCH_SIZE, apiPaths.size()));
+            List<List<DriveItem>> items = new ArrayList<>();
+            String[] errors = new String[chunk.size()];
+            int[] statuses = new int[chunk.size()];
+            for (int i = 0; i < chunk.size(); i++) {
+                items.add(new ArrayList<>());
+            }
+            graphClient.readBatch(graphClient.openBatch(chunk), new GraphClient.BatchConsumer() {
+                @Override
+                public Predicate<DriveItem> items(int id) {
+                    List<DriveItem> collected = items.get(id);
+                    return pathIds.learning(item -> collected.add(item) && collected.size() < maxItems);
+                }
+
+                @Override
+                public void failed(int id, int status, String message) {
+                    errors[id] = "Graph request failed with " + status + ": " + message;
+                    statuses[id] = status;
+                }
+            });
+            for (int i = 0; i < chunk.size(); i++) {
+                results.add(new BatchResult(items.get(i), errors[i], statuses[i]));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Writes batch results as a JSON array with one object per key, holding either the mapped
+     * items or the error of that sub-request.
+     */
+    private String writeBatch(String keyName, List<String> keys, List<BatchResult> results, ItemWriter writer)
+            throws java.io.IOException {
+        StringWriter out = new StringWriter();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartArray();
+            for (int i = 0; i < keys.size(); i++) {
+                BatchResult result = results.get(i);
+                generator.writeStartObject();
+                generator.writeStringField(keyName, keys.get(i));
+                if (result.error() != null) {
+                    generator.writeStringField("error", result.error());
+                } else {
+                    generator.writeArrayFieldStart("items");
+                    for (DriveItem item : result.items()) {
+                        writer.write(item, generator);
+                    }
+                    generator.writeEndArray();
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+        return out.toString();
+    }
+
+    String searchFilesPath(String fileName, String folder) throws java.io.IOException {
+        String encodedFolder = encodePath(folder);
+
+        // Microsoft Graph API requires single quotes around the search term
+        String searchQuery = String.format("'%s'", fileName);
+
+        String apiPath;
+        String folderId = pathIds.resolve(folder);
+        if (folderId != null) {
+            apiPath = String.format("/me/drive/items/%s/search(q=%s)?$select=%s",
+                    folderId, searchQuery, SEARCH_SELECT);
+        } else if (!encodedFolder.isEmpty()) {
+            apiPath = String.format("/me/drive/root:/%s:/search(q=%s)?$select=%s",
+                    encodedFolder, searchQuery, SEARCH_SELECT);
+        } else {
+            apiPath = String.format("/me/drive/root/search(q=%s)?$select=%s", searchQuery, SEARCH_SELECT);
+        }
+        return withPageSize(apiPath);
+    }
+
+    String searchFoldersPath(String folderName) {
+        // Microsoft Graph API requires single quotes around the search term
+        String searchQuery = String.format("'%s'", folderName);
+        return withPageSize(String.format("/me/drive/root/search(q=%s)?$filter=folder ne null&$select=name,id,webUrl,folder,parentReference", searchQuery));
+    }
+
+    String listingPath(String folderPath) throws java.io.IOException {
+        String folderId = pathIds.resolve(folderPath);
+        if (folderId != null) {
+            return withPageSize(String.format("/me/drive/items/%s/children?$select=%s", folderId, LISTING_SELECT));
+        }
+        String encodedPath = encodePath(folderPath);
+        return withPageSize(encodedPath.isEmpty()
+            ? "/me/drive/root/children?$select=" + LISTING_SELECT
+            : String.format("/me/drive/root:/%s:/children?$select=%s", encodedPath, LISTING_SELECT));
+    }
+
+    String folderItemPath(String folderPath) throws java.io.IOException {
+        String folderId = pathIds.resolve(folderPath);
+        if (folderId != null) {
+            return String.format("/me/drive/items/%s?$select=id,cTag,eTag", folderId);
+        }
+        String encodedPath = encodePath(folderPath);
+        return encodedPath.isEmpty()
+            ? "/me/drive/root?$select=id,cTag,eTag"
+            : String.format("/me/drive/root:/%s?$select=id,cTag,eTag", encodedPath);
+    }
+
+    private static String contentPath(String filePath) throws java.io.IOException {
+        if (filePath == null || filePath.isBlank()) {
+            throw new IllegalArgumentException("a file path is required");
+        }
+        return String.format("/me/drive/root:/%s:/content", encodePath(filePath));
+    }
+
+    private static String encodePath(String path) throws java.io.UnsupportedEncodingException {
+        return path != null && !path.isEmpty()
+            ? java.net.URLEncoder.encode(path, StandardCharsets.UTF_8.toString())
+            : "";
+    }
+
+    private String withPageSize(String apiPath) {
+        return apiPath + (apiPath.contains("?") ? "&" : "?") + "$top=" + pageSize;
+    }
+
+    @FunctionalInterface
+    private interface ItemSource {
+        void forEach(Predicate<DriveItem> consumer) throws java.io.IOException;
+    }
+
+    @FunctionalInterface
+    private interface ApiPaths {
+        String apiPath(int request) throws java.io.IOException;
+    }
+
+    @FunctionalInterface
+    private interface ItemWriter {
+        void write(DriveItem item, JsonGenerator generator) throws java.io.IOException;
+    }
+
+    private record FolderTree(String folderPath, List<Object> items, boolean truncated) {
+
+    }
+
+    /**
+     * A folder in a tree listing; {@code items} is absent when the folder was not expanded.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private record FolderNode(FolderInfo folder, List<Object> items, String error) {
+
+    }
+
+    /**
+     * @param status the HTTP status of a failed sub-request, 0 otherwise
+     */
+    private record BatchResult(List<DriveItem> items, String error, int status) {
+
+        BatchResult(List<DriveItem> items, String error) {
+            this(items, error, 0);
+        }
+    }
+
     private record FileInfo(String name, String webUrl, String fileType, String path) {
         
     }
@@ -194,4 +849,28 @@ public class OnedriveService {
     private record FolderInfo(String name, String webUrl, String path, int childCount) {
         
     }
+
+    /**
+     * A chunk of a file's text; {@code nextOffset} is absent at the end of the file, and
+     * {@code size} when Graph did not send it.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private record FileContent(String path, long offset, Long nextOffset, Long size, String content) {
+
+    }
+
+    /**
+     * Reflection that a native image cannot see on its own: the tool methods are invoked
+     * reflectively, and the result records are bound by Jackson.
+     */
+    static class ToolHints implements RuntimeHintsRegistrar {
+
+        @Override
+        public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+            hints.reflection().registerType(OnedriveService.class, MemberCategory.INVOKE_PUBLIC_METHODS);
+            new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(),
+                    FileInfo.class, FolderInfo.class, FolderTree.class, FolderNode.class, FileContent.class,
+                    DriveExporter.Result.class, DriveExporter.Checkpoint.class);
+        }
+    }
 }
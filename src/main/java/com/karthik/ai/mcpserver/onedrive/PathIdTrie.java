@@ -0,0 +1,284 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Concurrent trie from folder path segments to drive item ids, so that a folder already seen in a
+ * response is addressed as {@code /me/drive/items/{id}} instead of making Graph resolve its whole
+ * path again. Ids are learned from the listings and searches the tools read anyway: every item
+ * names its parent's path and id, and every folder item its own id. Only items on the user's own
+ * drive are learned, since paths on other drives would shadow folders of the same name.
+ * <p>
+ * A renamed or moved folder keeps its id. When a response shows an id under a new path, such as
+ * the children of a folder listed by id naming its current path, or when the {@link DriveIndex}
+ * delta renames, moves or deletes a folder, its old path and everything under it is forgotten. A
+ * rename seen in neither way is caught by the {@code ttl} of the entry, or by a 404 for the id.
+ */
+@Component
+class PathIdTrie {
+
+    private static final String ROOT_MARKER = "root:";
+    private static final String OWN_DRIVE_ROOT = "/drive/root:";
+    private static final String DRIVES_PREFIX = "/drives/";
+
+    private final boolean enabled;
+    private final Duration ttl;
+    private final int maxEntries;
+    private final Clock clock;
+
+    private final Node root = new Node();
+    private final ConcurrentHashMap<String, String> paths = new ConcurrentHashMap<>();
+    private volatile String driveId;
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Also learns from the listings the {@link MetadataStore} restored, so that folders known to the
+     * last run are addressed by id from the first request.
+     */
+    @Autowired
+    PathIdTrie(@Value("${onedrive.path-ids.enabled:true}") boolean enabled,
+            @Value("${onedrive.path-ids.ttl:PT10M}") Duration ttl,
+            @Value("${onedrive.path-ids.max-entries:10000}") int maxEntries,
+            MetadataStore metadataStore) {
+        this(enabled, ttl, maxEntries, Clock.systemUTC());
+        for (MetadataStore.Listing listing : metadataStore.restored()) {
+            listing.items().forEach(this::learn);
+        }
+    }
+
+    PathIdTrie(boolean enabled, Duration ttl, int maxEntries) {
+        this(enabled, ttl, maxEntries, Clock.systemUTC());
+    }
+
+    PathIdTrie(boolean enabled, Duration ttl, int maxEntries, Clock clock) {
+        this.enabled = enabled;
+        this.ttl = ttl;
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the id of the folder at {@code folderPath}, relative to the drive root, or null when
+     * it is not known. The root itself is never resolved, since it has its own address.
+     */
+    String resolve(String folderPath) {
+        String[] segments = segments(folderPath);
+        if (!enabled || segments.length == 0) {
+            return null;
+        }
+        Node node = root;
+        for (int i = 0; i < segments.length && node != null; i++) {
+            node = node.children.get(segments[i]);
+        }
+        Entry entry = node != null ? node.entry : null;
+        if (entry == null || !clock.instant().isBefore(entry.expiresAt())) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.id();
+    }
+
+    void put(String folderPath, String id) {
+        String[] segments = segments(folderPath);
+        if (!enabled || segments.length == 0 || id == null || id.isEmpty()) {
+            return;
+        }
+        String path = String.join("/", segments);
+        String previousPath = paths.put(id, path);
+        if (previousPath != null && !previousPath.equals(path)) {
+            // the folder was renamed or moved, so nothing is at its old path any more
+            invalidate(previousPath);
+            paths.put(id, path);
+        }
+        Node node = root;
+        for (String segment : segments) {
+            node = node.children.computeIfAbsent(segment, key -> new Node());
+        }
+        Entry previous;
+        synchronized (node) {
+            previous = node.entry;
+            node.entry = new Entry(id, clock.instant().plus(ttl));
+        }
+        if (previous != null && !previous.id().equals(id)) {
+            paths.remove(previous.id(), path);
+        }
+        if (previous == null && size.incrementAndGet() > maxEntries) {
+            // simpler than tracking recency, and cheap to refill from the next responses
+            clear();
+        }
+    }
+
+    /**
+     * Learns the parent folder of {@code item} and, for a folder, the item itself. Items without a
+     * parent path, such as delta items, and items on another drive are ignored.
+     */
+    void learn(DriveItem item) {
+        String parentPath = relativePath(item.parentPath());
+        if (parentPath == null || !onOwnDrive(item)) {
+            return;
+        }
+        put(parentPath, item.parentId());
+        if (item.folder()) {
+            put(parentPath.isEmpty() ? item.name() : parentPath + "/" + item.name(), item.id());
+        }
+    }
+
+    /**
+     * Wraps a consumer of response items so that it learns from them on the way.
+     */
+    Predicate<DriveItem> learning(Predicate<DriveItem> consumer) {
+        if (!enabled) {
+            return consumer;
+        }
+        return item -> {
+            learn(item);
+            return consumer.test(item);
+        };
+    }
+
+    /**
+     * Forgets wherever the folder with {@code id} was learned, and everything under it, because
+     * the folder was renamed, moved or deleted.
+     */
+    void invalidateId(String id) {
+        String path = id != null ? paths.get(id) : null;
+        if (path != null) {
+            invalidate(path);
+        }
+    }
+
+    /**
+     * Forgets the folder at {@code folderPath} and everything under it.
+     *
+     * @return whether an id was known for the folder, meaning that a request for it may have used
+     *         that id and is worth repeating with the path
+     */
+    boolean invalidate(String folderPath) {
+        String[] segments = segments(folderPath);
+        if (segments.length == 0) {
+            return false;
+        }
+        Node parent = root;
+        for (int i = 0; i < segments.length - 1 && parent != null; i++) {
+            parent = parent.children.get(segments[i]);
+        }
+        Node removed = parent != null ? parent.children.remove(segments[segments.length - 1]) : null;
+        if (removed == null) {
+            return false;
+        }
+        size.addAndGet(-forget(removed, String.join("/", segments)));
+        return removed.entry != null;
+    }
+
+    void clear() {
+        root.children.clear();
+        paths.clear();
+        size.set(0);
+    }
+
+    Stats stats() {
+        return new Stats(hits.get(), misses.get(), size.get());
+    }
+
+    /**
+     * Drops the ids of a removed subtree from the id index and counts its entries.
+     */
+    private int forget(Node node, String path) {
+        int count = 0;
+        Entry entry = node.entry;
+        if (entry != null) {
+            paths.remove(entry.id(), path);
+            count++;
+        }
+        for (Map.Entry<String, Node> child : node.children.entrySet()) {
+            count += forget(child.getValue(), path + "/" + child.getKey());
+        }
+        return count;
+    }
+
+    /**
+     * Whether {@code item} is on the drive that the tools address as {@code /me/drive}. Graph names
+     * that drive "/drive/root:" in paths of responses to requests for it, which also tells its id;
+     * "/drives/{id}/root:" is only trusted once the id is known to be that drive's.
+     */
+    private boolean onOwnDrive(DriveItem item) {
+        String parentPath = item.parentPath();
+        if (parentPath.startsWith(OWN_DRIVE_ROOT)) {
+            if (driveId == null && item.driveId() != null && !item.driveId().isEmpty()) {
+                driveId = item.driveId();
+            }
+            return true;
+        }
+        String ownDrive = driveId;
+        if (ownDrive == null || !parentPath.startsWith(DRIVES_PREFIX)) {
+            return false;
+        }
+        int end = parentPath.indexOf('/', DRIVES_PREFIX.length());
+        return end > 0 && ownDrive.equalsIgnoreCase(parentPath.substring(DRIVES_PREFIX.length(), end));
+    }
+
+    /**
+     * Turns a parentReference path such as "/drive/root:/Documents" or
+     * "/drives/{id}/root:/Documents" into "Documents", or null when it is missing.
+     */
+    static String relativePath(String parentPath) {
+        if (parentPath == null || parentPath.isEmpty()) {
+            return null;
+        }
+        int marker = parentPath.indexOf(ROOT_MARKER);
+        if (marker < 0) {
+            return null;
+        }
+        String path = parentPath.substring(marker + ROOT_MARKER.length());
+        if (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        if (path.indexOf('%') >= 0) {
+            try {
+                // keep '+', which is a literal in a path
+                path = URLDecoder.decode(path.replace("+", "%2B"), StandardCharsets.UTF_8);
+            } catch (IllegalArgumentException e) {
+                // a literal '%' in a name
+            }
+        }
+        return path;
+    }
+
+    private static String[] segments(String folderPath) {
+        String normalized = FolderListingCache.normalize(folderPath);
+        return normalized.isEmpty() ? new String[0] : normalized.split("/");
+    }
+
+    /**
+     * Lookups answered from the trie and entries held, for sizing {@code max-entries}.
+     */
+    record Stats(long hits, long misses, int size) {
+
+    }
+
+    private record Entry(String id, Instant expiresAt) {
+
+    }
+
+    private static final class Node {
+
+        final ConcurrentHashMap<String, Node> children = new ConcurrentHashMap<>();
+        volatile Entry entry;
+    }
+}
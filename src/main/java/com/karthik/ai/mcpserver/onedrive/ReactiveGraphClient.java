@@ -0,0 +1,208 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+
+import com.fasterxml.jackson.core.JsonFactory;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link GraphClient} for the ASYNC server mode. No thread waits on
+ * Graph: requests go through the same scheduler on timers, and each page is parsed chunk by chunk
+ * as its body arrives, so a page is never held in memory as a whole. Errors are raised as the
+ * same {@link RestClientResponseException} and {@link ResourceAccessException} as on the blocking
+ * client.
+ */
+@Component
+@ConditionalOnProperty(prefix = "spring.ai.mcp.server", name = "type", havingValue = "ASYNC")
+class ReactiveGraphClient {
+
+    private final WebClient webClient;
+    private final String accessToken;
+    private final GraphRequestScheduler scheduler;
+    private final DriveItemReader itemReader;
+
+    @Autowired
+    ReactiveGraphClient(GraphHttpClientFactory httpClientFactory, GraphRequestScheduler scheduler,
+            OnedriveMetrics metrics, @Value("${onedrive.access-token}") String accessToken) {
+        this(httpClientFactory.webClientBuilder()
+                .filters(filters -> filters.add(0, metrics::filter))
+                .build(), accessToken, scheduler);
+    }
+
+    ReactiveGraphClient(WebClient webClient, String accessToken, GraphRequestScheduler scheduler) {
+        this.webClient = webClient;
+        this.accessToken = accessToken;
+        this.scheduler = scheduler;
+        this.itemReader = new DriveItemReader(new JsonFactory());
+    }
+
+    /**
+     * The key under which identical reads of {@code apiPath} by this client are coalesced, the
+     * same key the blocking client uses for them.
+     */
+    RequestCoalescer.Key requestKey(String apiPath, Class<?> resultType) {
+        return new RequestCoalescer.Key(accessToken, apiPath, resultType);
+    }
+
+    /**
+     * Reads a paged driveItem collection, following @odata.nextLink. Pages are requested as they
+     * are consumed, at most one page ahead, so cancelling stops the paging.
+     */
+    Flux<DriveItem> readItems(String apiPath) {
+        return readPage(() -> webClient.get().uri(apiPath))
+                .expand(page -> page.nextLink() == null
+                        ? Mono.empty()
+                        : readPage(() -> webClient.get().uri(URI.create(page.nextLink()))))
+                .concatMapIterable(ItemPage::items, 1);
+    }
+
+    Mono<DriveItem> readItem(String apiPath) {
+        return exchange(() -> webClient.get().uri(apiPath), this::readItemBody);
+    }
+
+    /**
+     * Conditional GET of a single item.
+     *
+     * @return the item, or empty when Graph answers 304 Not Modified because {@code tag} still
+     *         matches
+     */
+    Mono<DriveItem> readItemIfNoneMatch(String apiPath, String tag) {
+        return exchange(() -> webClient.get().uri(apiPath).header(HttpHeaders.IF_NONE_MATCH, tag),
+                this::readItemBody);
+    }
+
+    private Mono<ItemPage> readPage(Supplier<WebClient.RequestHeadersSpec<?>> request) {
+        return exchange(request, this::readPageBody);
+    }
+
+    /**
+     * Feeds the buffers of a page to the parser as they arrive and releases each one once it has
+     * been parsed.
+     */
+    private Mono<ItemPage> readPageBody(ClientResponse response) {
+        return Mono.using(() -> new PageBody(itemReader), page -> response.bodyToFlux(DataBuffer.class)
+                .doOnNext(buffer -> {
+                    try {
+                        page.feed(buffer);
+                    } finally {
+                        DataBufferUtils.release(buffer);
+                    }
+                })
+                .then(Mono.fromCallable(page::finish)), PageBody::close);
+    }
+
+    /**
+     * A single item is small, so it is parsed once its body has fully arrived.
+     */
+    private Mono<DriveItem> readItemBody(ClientResponse response) {
+        return DataBufferUtils.join(response.bodyToFlux(DataBuffer.class))
+                .map(buffer -> {
+                    try (InputStream body = buffer.asInputStream(true)) {
+                        return itemReader.readItem(body);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    /**
+     * Sends the request through the scheduler and reads a successful response with
+     * {@code bodyReader}.
+     *
+     * @param request builds the request; called again for every retry
+     */
+    private <T> Mono<T> exchange(Supplier<WebClient.RequestHeadersSpec<?>> request,
+            Function<ClientResponse, Mono<T>> bodyReader) {
+        return scheduler.executeAsync(() -> request.get()
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchangeToMono(response -> read(response, bodyReader))
+                .onErrorMap(WebClientRequestException.class, e -> new ResourceAccessException(
+                        "Graph request failed: " + e.getMessage(),
+                        e.getCause() instanceof IOException io ? io : new IOException(e))));
+    }
+
+    private <T> Mono<T> read(ClientResponse response, Function<ClientResponse, Mono<T>> bodyReader) {
+        HttpStatusCode status = response.statusCode();
+        if (status.isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+            return response.releaseBody().then(Mono.empty());
+        }
+        if (status.isError()) {
+            return response.bodyToMono(byte[].class)
+                    .defaultIfEmpty(new byte[0])
+                    .flatMap(body -> Mono.error(new RestClientResponseException(
+                            "Graph request failed with " + status.value(), status, "",
+                            response.headers().asHttpHeaders(), body, StandardCharsets.UTF_8)));
+        }
+        return bodyReader.apply(response);
+    }
+
+    /**
+     * The items of one page parsed so far.
+     */
+    private static final class PageBody {
+
+        private final List<DriveItem> items = new ArrayList<>();
+        private final DriveItemReader.PageFeeder feeder;
+        private byte[] chunk = new byte[0];
+
+        PageBody(DriveItemReader itemReader) throws IOException {
+            this.feeder = itemReader.feedPage(items::add);
+        }
+
+        void feed(DataBuffer buffer) {
+            int length = buffer.readableByteCount();
+            if (chunk.length < length) {
+                chunk = new byte[length];
+            }
+            buffer.read(chunk, 0, length);
+            try {
+                feeder.feed(chunk, 0, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        ItemPage finish() throws IOException {
+            return new ItemPage(items, feeder.finish().nextLink());
+        }
+
+        void close() {
+            try {
+                feeder.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private record ItemPage(List<DriveItem> items, String nextLink) {
+
+    }
+}
@@ -0,0 +1,252 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.ToolCallbackProvider;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.execution.DefaultToolCallResultConverter;
+import org.springframework.ai.tool.execution.ToolCallResultConverter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientResponseException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.modelcontextprotocol.server.McpServerFeatures;
+import io.modelcontextprotocol.spec.McpSchema;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * The tools of {@link OnedriveService} for the ASYNC server mode. Searches and folder listings run
+ * end to end on {@link ReactiveGraphClient}, so a tool call waiting on Graph holds no thread. The
+ * tree crawl and the $batch tools still block and run on the bounded elastic scheduler.
+ * <p>
+ * Tool names, descriptions and schemas come from the {@code @Tool} methods, and results are
+ * converted the same way, so clients see the same tools in both modes.
+ */
+@Component
+@ConditionalOnProperty(prefix = "spring.ai.mcp.server", name = "type", havingValue = "ASYNC")
+class ReactiveOnedriveTools {
+
+    private final OnedriveService onedriveService;
+    private final ReactiveGraphClient graphClient;
+    private final DriveIndex driveIndex;
+    private final FolderListingCache folderCache;
+    private final RequestCoalescer coalescer;
+    private final OnedriveMetrics metrics;
+    private final PathIdTrie pathIds;
+    private final ToolBulkhead bulkhead;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ToolCallResultConverter resultConverter = new DefaultToolCallResultConverter();
+
+    ReactiveOnedriveTools(OnedriveService onedriveService, ReactiveGraphClient graphClient, DriveIndex driveIndex,
+            FolderListingCache folderCache, RequestCoalescer coalescer, OnedriveMetrics metrics, PathIdTrie pathIds,
+            ToolBulkhead bulkhead) {
+        this.onedriveService = onedriveService;
+        this.graphClient = graphClient;
+        this.driveIndex = driveIndex;
+        this.folderCache = folderCache;
+        this.coalescer = coalescer;
+        this.metrics = metrics;
+        this.pathIds = pathIds;
+        this.bulkhead = bulkhead;
+    }
+
+    /**
+     * Builds an async tool specification for every tool of {@code tools}, answering the ones with a
+     * non-blocking implementation here and the others through their blocking callback.
+     */
+    List<McpServerFeatures.AsyncToolSpecification> toolSpecifications(ToolCallbackProvider tools) {
+        List<McpServerFeatures.AsyncToolSpecification> specifications = new ArrayList<>();
+        for (ToolCallback callback : tools.getToolCallbacks()) {
+            specifications.add(new McpServerFeatures.AsyncToolSpecification(tool(callback),
+                    (exchange, arguments) -> call(callback, arguments).map(ReactiveOnedriveTools::result)));
+        }
+        return specifications;
+    }
+
+    /**
+     * Builds an async tool specification for every tool of {@code tools} that answers through its
+     * blocking callback, as the account that made the call. Accounts have no reactive client, so
+     * with {@link AccountContexts} every tool takes this path.
+     */
+    List<McpServerFeatures.AsyncToolSpecification> accountToolSpecifications(ToolCallbackProvider tools) {
+        List<McpServerFeatures.AsyncToolSpecification> specifications = new ArrayList<>();
+        for (ToolCallback callback : tools.getToolCallbacks()) {
+            String name = callback.getToolDefinition().name();
+            specifications.add(new McpServerFeatures.AsyncToolSpecification(tool(callback), (exchange, arguments) -> {
+                // read here, where the context of the request has been restored
+                String token = AccountContexts.currentToken();
+                return metrics.timed(name, bulkhead.guard(name,
+                        Mono.fromCallable(() -> objectMapper.writeValueAsString(arguments))
+                                .map(input -> AccountContexts.withToken(token, () -> callback.call(input)))
+                                .subscribeOn(Schedulers.boundedElastic())))
+                        .map(ReactiveOnedriveTools::result);
+            }));
+        }
+        return specifications;
+    }
+
+    private static McpSchema.Tool tool(ToolCallback callback) {
+        ToolDefinition definition = callback.getToolDefinition();
+        return new McpSchema.Tool(definition.name(), definition.description(), definition.inputSchema());
+    }
+
+    private static McpSchema.CallToolResult result(String text) {
+        return new McpSchema.CallToolResult(List.of(new McpSchema.TextContent(text)), false);
+    }
+
+    Mono<String> searchFiles(String fileName, String folder, String format, Integer limit, String cursor) {
+        if (cursor != null && !cursor.isBlank()) {
+            return Mono.fromCallable(() -> onedriveService.nextPage("searchFiles", cursor, format, limit))
+                    .onErrorResume(e -> Mono.just("Error searching files: " + e.getMessage()));
+        }
+        List<String> terms = SearchTerms.split(fileName, onedriveService.searchMaxTerms());
+        if (terms.size() > 1) {
+            return searchTerms(terms, folder)
+                    .flatMap(items -> Mono.fromCallable(() -> onedriveService.fileResults(items, format, limit)))
+                    .onErrorResume(e -> Mono.just("Error searching files: " + e.getMessage()));
+        }
+        if (driveIndex.isFresh()) {
+            return Mono.fromCallable(() -> onedriveService.fileResults(
+                    driveIndex.search(fileName, folder, false, onedriveService.maxItems()), format, limit))
+                    .onErrorResume(e -> Mono.just("Error searching files: " + e.getMessage()));
+        }
+        return byFolderId(folder, () -> Mono.fromCallable(() -> onedriveService.searchFilesPath(fileName, folder))
+                .flatMap(apiPath -> OnedriveService.isPlain(format, limit)
+                        ? coalesce(apiPath, String.class, () -> readItems(apiPath)
+                                .flatMap(items -> Mono.fromCallable(() -> onedriveService.fileResults(items))))
+                        // pages and the compact format are cut from the whole result
+                        : coalesce(apiPath, List.class, () -> readItems(apiPath).map(List::copyOf))
+                                .flatMap(items -> Mono.fromCallable(() -> onedriveService.fileResults(items, format, limit)))))
+                .onErrorResume(e -> Mono.just("Error searching files: " + e.getMessage()));
+    }
+
+    /**
+     * Searches for all terms at once and ranks the merged results, as {@link OnedriveService} does
+     * on virtual threads.
+     */
+    private Mono<List<DriveItem>> searchTerms(List<String> terms, String folder) {
+        if (driveIndex.isFresh()) {
+            return Mono.fromCallable(() -> onedriveService.searchTerms(terms, folder));
+        }
+        return Flux.fromIterable(terms)
+                .flatMapSequential(term -> byFolderId(folder,
+                        () -> Mono.fromCallable(() -> onedriveService.searchFilesPath(term, folder))
+                                .flatMap(apiPath -> coalesce(apiPath, List.class,
+                                        () -> readItems(apiPath).map(List::copyOf)))),
+                        terms.size())
+                .collectList()
+                .map(results -> SearchTerms.rank(terms, results, onedriveService.maxItems()));
+    }
+
+    Mono<String> searchFolderPath(String folderName) {
+        if (driveIndex.isFresh()) {
+            return Mono.fromCallable(() -> onedriveService.folderResults(
+                    driveIndex.search(folderName, null, true, onedriveService.maxItems())));
+        }
+        String apiPath = onedriveService.searchFoldersPath(folderName);
+        return coalesce(apiPath, String.class, () -> readItems(apiPath)
+                .flatMap(items -> Mono.fromCallable(() -> onedriveService.folderResults(items))))
+                .onErrorResume(java.io.IOException.class, e -> Mono.just("Error processing response: " + e.getMessage()))
+                .onErrorResume(e -> Mono.just("Error searching folders: " + e.getMessage()));
+    }
+
+    Mono<String> listFolderContents(String folderPath, String format, Integer limit, String cursor) {
+        if (cursor != null && !cursor.isBlank()) {
+            return Mono.fromCallable(() -> onedriveService.nextPage("listFolderContents", cursor, format, limit))
+                    .onErrorResume(e -> Mono.just("Error listing folder contents: " + e.getMessage()));
+        }
+        return byFolderId(folderPath, () -> Mono.fromCallable(() -> onedriveService.listingPath(folderPath))
+                .flatMap(apiPath -> coalesce(apiPath, List.class, () -> loadFolder(folderPath, apiPath))))
+                .flatMap(items -> Mono.fromCallable(() -> onedriveService.folderContentResults(items, format, limit)))
+                .onErrorResume(e -> Mono.just("Error listing folder contents: " + e.getMessage()));
+    }
+
+    private Mono<String> call(ToolCallback callback, Map<String, Object> arguments) {
+        String name = callback.getToolDefinition().name();
+        return metrics.timed(name, bulkhead.guard(name, Mono.defer(() -> callTool(name, callback, arguments))));
+    }
+
+    private Mono<String> callTool(String name, ToolCallback callback, Map<String, Object> arguments) {
+        Mono<String> result = switch (name) {
+            case "searchFiles" -> searchFiles(argument(arguments, "fileName"), argument(arguments, "folder"),
+                    argument(arguments, "format"), intArgument(arguments, "limit"), argument(arguments, "cursor"));
+            case "searchFolderPath" -> searchFolderPath(argument(arguments, "folderName"));
+            case "listFolderContents" -> listFolderContents(argument(arguments, "folderPath"),
+                    argument(arguments, "format"), intArgument(arguments, "limit"), argument(arguments, "cursor"));
+            default -> null;
+        };
+        if (result == null) {
+            return Mono.fromCallable(() -> callback.call(objectMapper.writeValueAsString(arguments)))
+                    .subscribeOn(Schedulers.boundedElastic());
+        }
+        return result.map(text -> resultConverter.convert(text, String.class));
+    }
+
+    /**
+     * Loads a listing the way {@link OnedriveService} does for its tree crawl, so that both modes
+     * share the listing cache and coalesce with each other.
+     */
+    private Mono<List<DriveItem>> loadFolder(String folderPath, String apiPath) throws java.io.IOException {
+        if (folderCache.isEnabled()) {
+            return folderCache.getAsync(folderPath, OnedriveService.LISTING_SELECT,
+                    onedriveService.folderItemPath(folderPath), graphClient, () -> readItems(apiPath));
+        }
+        return readItems(apiPath).map(List::copyOf);
+    }
+
+    private Mono<List<DriveItem>> readItems(String apiPath) {
+        return graphClient.readItems(apiPath).take(onedriveService.maxItems()).doOnNext(pathIds::learn).collectList();
+    }
+
+    /**
+     * The non-blocking counterpart of the fallback in {@link OnedriveService}: a 404 for a folder
+     * that was addressed by a known id forgets the id and repeats the call by path.
+     */
+    private <T> Mono<T> byFolderId(String folderPath, Supplier<Mono<T>> call) {
+        return call.get().onErrorResume(RestClientResponseException.class, e -> {
+            if (!e.getStatusCode().isSameCodeAs(HttpStatus.NOT_FOUND) || !pathIds.invalidate(folderPath)) {
+                return Mono.error(e);
+            }
+            return call.get();
+        });
+    }
+
+    private <T> Mono<T> coalesce(String apiPath, Class<?> resultType, Loader<T> loader) {
+        Supplier<Mono<T>> call = () -> {
+            try {
+                return loader.load();
+            } catch (java.io.IOException e) {
+                return Mono.error(e);
+            }
+        };
+        return Mono.fromFuture(() -> coalescer.executeAsync(graphClient.requestKey(apiPath, resultType),
+                () -> call.get().toFuture()));
+    }
+
+    private static String argument(Map<String, Object> arguments, String name) {
+        Object value = arguments.get(name);
+        return value != null ? value.toString() : null;
+    }
+
+    private static Integer intArgument(Map<String, Object> arguments, String name) {
+        Object value = arguments.get(name);
+        if (value instanceof Number number) {
+            return number.intValue();
+        }
+        return value != null && !value.toString().isBlank() ? Integer.valueOf(value.toString().trim()) : null;
+    }
+
+    @FunctionalInterface
+    private interface Loader<T> {
+        Mono<T> load() throws java.io.IOException;
+    }
+}
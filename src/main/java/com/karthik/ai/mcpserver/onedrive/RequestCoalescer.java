@@ -0,0 +1,153 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Single-flight deduplication of Graph reads. While a call for a key is in flight, identical calls
+ * wait for it and share its result instead of sending their own request; once it completes the
+ * next call goes to Graph again. Results are shared between threads and must not be mutated.
+ * <p>
+ * A call that fails because its own thread was interrupted, such as a prefetch cancelled under
+ * load, has not failed for the calls waiting on it: they send their own request instead.
+ */
+@Component
+class RequestCoalescer {
+
+    private final ConcurrentHashMap<Key, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Runs {@code call} unless an identical call is already in flight, in which case this waits for
+     * that call and returns its result or rethrows its failure.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T execute(Key key, Call<T> call) throws IOException {
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> shared = inFlight.putIfAbsent(key, flight);
+        if (shared != null) {
+            coalesced.incrementAndGet();
+            try {
+                return (T) await(shared);
+            } catch (AbandonedException e) {
+                return execute(key, call);
+            }
+        }
+        try {
+            T result = call.call();
+            flight.complete(result);
+            return result;
+        } catch (IOException | RuntimeException | Error e) {
+            // gone before the waiting calls wake up, so that they do not find the failed flight again
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(Thread.currentThread().isInterrupted() ? new AbandonedException(e) : e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * Asynchronous variant of {@link #execute}: {@code call} is only started when no identical call
+     * is in flight. Every caller gets its own future, so cancelling one does not affect the others.
+     */
+    @SuppressWarnings("unchecked")
+    <T> CompletableFuture<T> executeAsync(Key key, Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> shared = inFlight.putIfAbsent(key, flight);
+        if (shared != null) {
+            coalesced.incrementAndGet();
+            return ((CompletableFuture<T>) shared.copy()).exceptionallyCompose(error ->
+                    unwrap(error) instanceof AbandonedException
+                            ? executeAsync(key, call)
+                            : CompletableFuture.failedFuture(error));
+        }
+        CompletableFuture<T> started;
+        try {
+            started = call.get();
+        } catch (RuntimeException e) {
+            started = CompletableFuture.failedFuture(e);
+        }
+        started.whenComplete((result, error) -> {
+            inFlight.remove(key, flight);
+            if (error != null) {
+                flight.completeExceptionally(error);
+            } else {
+                flight.complete(result);
+            }
+        });
+        return (CompletableFuture<T>) flight.copy();
+    }
+
+    /**
+     * How many calls were answered by another call's request.
+     */
+    long coalesced() {
+        return coalesced.get();
+    }
+
+    private static Object await(CompletableFuture<Object> shared) throws IOException {
+        try {
+            return shared.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an identical Graph request");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof AbandonedException abandoned) {
+                throw abandoned;
+            }
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    @FunctionalInterface
+    interface Call<T> {
+        T call() throws IOException;
+    }
+
+    /**
+     * The failure of a call that was interrupted by its own caller, which the calls waiting on it
+     * do not share.
+     */
+    private static final class AbandonedException extends RuntimeException {
+
+        AbandonedException(Throwable cause) {
+            super(cause);
+        }
+    }
+
+    /**
+     * Identifies a Graph read: the token it is sent with, its final URI and what the response is
+     * parsed into, since the same listing is read both as tool output and as items.
+     */
+    record Key(String accessToken, String uri, Class<?> resultType) {
+
+        @Override
+        public String toString() {
+            // keep the token out of logs
+            return "Key[uri=" + uri + ", resultType=" + resultType.getSimpleName() + "]";
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hedges slow Graph reads: when a request has not answered within the {@code percentile} of the
+ * latencies seen recently, the same request is sent once more and whichever answers first is used.
+ * The other response is closed as soon as it arrives, without its body being read.
+ * <p>
+ * Every request earns {@code budget} of a hedge, and a hedge is only sent while a whole one has
+ * been earned, so hedging never adds more than that share of extra requests. Until a few dozen
+ * latencies have been seen, requests are hedged after {@code max-delay}.
+ * <p>
+ * The slower request is not interrupted. On a virtual thread that would close its socket, and with
+ * it a pooled connection that the closed response can otherwise hand back.
+ */
+@Component
+class RequestHedger {
+
+    private static final int MIN_SAMPLES = 20;
+    private static final double MAX_CREDITS = 5;
+
+    private final boolean enabled;
+    private final double percentile;
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+    private final double budget;
+    private final Executor executor;
+
+    // guarded by this
+    private final long[] latencies;
+    private int samples;
+    private int next;
+    private long recorded;
+    private double credits;
+
+    private volatile long delayNanos;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hedged = new AtomicLong();
+    private final AtomicLong won = new AtomicLong();
+
+    @Autowired
+    RequestHedger(@Value("${onedrive.hedging.enabled:false}") boolean enabled,
+            @Value("${onedrive.hedging.percentile:0.95}") double percentile,
+            @Value("${onedrive.hedging.min-delay:PT0.05S}") Duration minDelay,
+            @Value("${onedrive.hedging.max-delay:PT2S}") Duration maxDelay,
+            @Value("${onedrive.hedging.budget:0.05}") double budget,
+            @Value("${onedrive.hedging.window:512}") int window) {
+        this(enabled, percentile, minDelay, maxDelay, budget, window, command -> Thread.ofVirtual().start(command));
+    }
+
+    RequestHedger(boolean enabled, double percentile, Duration minDelay, Duration maxDelay, double budget, int window,
+            Executor executor) {
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.minDelayNanos = minDelay.toNanos();
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.budget = budget;
+        this.executor = executor;
+        this.latencies = new long[Math.max(MIN_SAMPLES, window)];
+        this.delayNanos = maxDelayNanos;
+    }
+
+    /**
+     * A hedger that sends every request once.
+     */
+    static RequestHedger disabled() {
+        return new RequestHedger(false, 0, Duration.ZERO, Duration.ZERO, 0, 0, Runnable::run);
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sends {@code request}, and once more if it is slow and the budget allows.
+     *
+     * @param request sends the request and returns the open response; called once or twice, on
+     *        virtual threads of their own
+     * @return the response that arrived first; a failure is only raised once every request sent
+     *         has failed, and it is the first of them
+     */
+    ClientHttpResponse execute(Supplier<ClientHttpResponse> request) {
+        if (!enabled) {
+            return request.get();
+        }
+        requests.incrementAndGet();
+        earn();
+        Race race = new Race();
+        long start = System.nanoTime();
+        executor.execute(() -> race.attempt(request, false, () -> record(System.nanoTime() - start)));
+        try {
+            try {
+                return race.winner.get(delayNanos, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                if (!race.winner.isDone() && spend() && race.addAttempt()) {
+                    hedged.incrementAndGet();
+                    executor.execute(() -> race.attempt(request, true, () -> {
+                    }));
+                }
+            }
+            return race.winner.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // a response that is already in is closed, a later one by the request that brings it
+            race.winner.cancel(false);
+            race.winner.thenAccept(ClientHttpResponse::close);
+            throw new GraphRequestScheduler.RejectedException("Interrupted while waiting for Graph");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    Stats stats() {
+        return new Stats(requests.get(), hedged.get(), won.get(), Duration.ofNanos(delayNanos));
+    }
+
+    private synchronized void earn() {
+        credits = Math.min(MAX_CREDITS, credits + budget);
+    }
+
+    private synchronized boolean spend() {
+        if (credits < 1) {
+            return false;
+        }
+        credits -= 1;
+        return true;
+    }
+
+    /**
+     * Adds the latency of a request that was not hedged, or of the first of a hedged pair, and
+     * moves the hedge delay to the configured percentile of the window.
+     */
+    private synchronized void record(long latencyNanos) {
+        latencies[next] = latencyNanos;
+        next = (next + 1) % latencies.length;
+        samples = Math.min(samples + 1, latencies.length);
+        recorded++;
+        // sorting the window is cheap, but not worth doing for every request
+        if (samples < MIN_SAMPLES || recorded % 16 != 0) {
+            return;
+        }
+        long[] sorted = Arrays.copyOf(latencies, samples);
+        Arrays.sort(sorted);
+        long at = sorted[(int) Math.min(samples - 1, Math.ceil(percentile * samples) - 1)];
+        delayNanos = Math.max(minDelayNanos, Math.min(maxDelayNanos, at));
+    }
+
+    /**
+     * The requests of one call, of which the first to succeed wins.
+     */
+    private final class Race {
+
+        private final CompletableFuture<ClientHttpResponse> winner = new CompletableFuture<>();
+        private final AtomicInteger running = new AtomicInteger(1);
+        private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+        /**
+         * Counts a second request in before it is sent, unless the first has already finished.
+         */
+        boolean addAttempt() {
+            return running.getAndUpdate(count -> count > 0 ? count + 1 : count) > 0;
+        }
+
+        void attempt(Supplier<ClientHttpResponse> request, boolean hedge, Runnable onSuccess) {
+            ClientHttpResponse response;
+            try {
+                response = request.get();
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+                finish();
+                return;
+            }
+            onSuccess.run();
+            if (winner.complete(response)) {
+                if (hedge) {
+                    won.incrementAndGet();
+                }
+            } else {
+                response.close();
+            }
+            running.decrementAndGet();
+        }
+
+        private void finish() {
+            if (running.decrementAndGet() == 0) {
+                winner.completeExceptionally(failure.get());
+            }
+        }
+    }
+
+    record Stats(long requests, long hedged, long won, Duration delay) {
+
+    }
+}
@@ -0,0 +1,119 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the full result of a paged tool call for a short while, so that the following pages are
+ * cut from memory instead of querying Graph again. A cursor names a stored result and the offset
+ * of the next page in it, so every page of one result shares an entry.
+ */
+@Component
+class ResultCursors {
+
+    private final Duration ttl;
+    private final int maxEntries;
+    private final Clock clock;
+    private final SecureRandom random = new SecureRandom();
+
+    private final Map<String, Entry> entries;
+
+    @Autowired
+    ResultCursors(@Value("${onedrive.cursor.ttl:PT5M}") Duration ttl,
+            @Value("${onedrive.cursor.max-entries:100}") int maxEntries) {
+        this(ttl, maxEntries, Clock.systemUTC());
+    }
+
+    ResultCursors(Duration ttl, int maxEntries, Clock clock) {
+        this.ttl = ttl;
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > ResultCursors.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Stores the result of a call to {@code tool} and returns the id that its cursors carry.
+     *
+     * @param limit the page size of the first call, used for later pages that do not give one
+     */
+    String store(String tool, List<DriveItem> items, int limit) {
+        String id = HexFormat.of().toHexDigits(random.nextLong());
+        synchronized (entries) {
+            entries.put(id, new Entry(tool, List.copyOf(items), limit, clock.instant().plus(ttl)));
+        }
+        return id;
+    }
+
+    /**
+     * Looks up the page that {@code cursor} points at. Reading a page keeps the result for another
+     * TTL.
+     *
+     * @throws IllegalArgumentException when the cursor is malformed, has expired or was issued by
+     *         another tool
+     */
+    Page page(String tool, String cursor) {
+        int dot = cursor.lastIndexOf('.');
+        int offset;
+        try {
+            offset = dot < 0 ? -1 : Integer.parseInt(cursor.substring(dot + 1));
+        } catch (NumberFormatException e) {
+            offset = -1;
+        }
+        if (offset < 0) {
+            throw new IllegalArgumentException("invalid cursor '" + cursor + "'");
+        }
+        String id = cursor.substring(0, dot);
+        Instant now = clock.instant();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(id);
+            if (entry != null && !now.isBefore(entry.expiresAt())) {
+                entries.remove(id);
+                entry = null;
+            }
+            if (entry != null) {
+                entries.put(id, new Entry(entry.tool(), entry.items(), entry.limit(), now.plus(ttl)));
+            }
+        }
+        if (entry == null || !entry.tool().equals(tool) || offset > entry.items().size()) {
+            throw new IllegalArgumentException("cursor has expired or is unknown, run " + tool + " again without it");
+        }
+        return new Page(id, entry.items(), offset, entry.limit());
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    static String cursor(String id, int offset) {
+        return id + "." + offset;
+    }
+
+    /**
+     * A stored result and where the requested page starts in it.
+     */
+    record Page(String id, List<DriveItem> items, int offset, int limit) {
+
+    }
+
+    private record Entry(String tool, List<DriveItem> items, int limit, Instant expiresAt) {
+
+    }
+}
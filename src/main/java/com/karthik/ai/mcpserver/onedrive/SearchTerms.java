@@ -0,0 +1,159 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Splits a file search such as {@code resume ats}, {@code resume OR "cover letter"} or
+ * {@code resume, cv} into terms that are searched for separately, and merges the results of
+ * those searches. Graph matches a query of several words as a whole, so one search per term finds
+ * what any of the terms would have found.
+ * <p>
+ * Merged results are deduplicated by item id and ranked by how well the file name matches the
+ * terms, then by how many of the term searches found the item, then by the most recent
+ * modification.
+ */
+final class SearchTerms {
+
+    private static final Comparator<Candidate> RANKING = Comparator.comparingInt(Candidate::score).reversed()
+            .thenComparing(Comparator.comparingInt(Candidate::hits).reversed())
+            .thenComparing(Candidate::lastModified, Comparator.reverseOrder());
+
+    private SearchTerms() {
+    }
+
+    /**
+     * Splits a query at whitespace, commas, '|' and the word OR, keeping double-quoted phrases
+     * together. Terms are deduplicated ignoring case, and only the first {@code maxTerms} are kept.
+     */
+    static List<String> split(String query, int maxTerms) {
+        Set<String> seen = new HashSet<>();
+        List<String> terms = new ArrayList<>();
+        if (query == null) {
+            return terms;
+        }
+        StringBuilder term = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i <= query.length(); i++) {
+            char c = i < query.length() ? query.charAt(i) : ' ';
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (!quoted && (Character.isWhitespace(c) || c == ',' || c == '|')) {
+                String value = term.toString().trim();
+                term.setLength(0);
+                if (!value.isEmpty() && !value.equals("OR") && terms.size() < maxTerms
+                        && seen.add(value.toLowerCase(Locale.ROOT))) {
+                    terms.add(value);
+                }
+            } else {
+                term.append(c);
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Merges the results of the term searches, in the order of {@code terms}, into at most
+     * {@code limit} items, best match first.
+     */
+    static List<DriveItem> rank(List<String> terms, List<List<DriveItem>> results, int limit) {
+        List<String> needles = terms.stream().map(term -> term.toLowerCase(Locale.ROOT)).toList();
+        Map<String, Candidate> merged = new LinkedHashMap<>();
+        for (List<DriveItem> result : results) {
+            for (DriveItem item : result) {
+                // items without an id only come from stand-ins, their URL is unique as well
+                String key = item.id().isEmpty() ? item.webUrl() : item.id();
+                merged.computeIfAbsent(key, k -> new Candidate(item, score(item.name(), needles),
+                        lastModified(item))).hits++;
+            }
+        }
+        // stable, so equally ranked items keep the order Graph returned them in
+        return merged.values().stream().sorted(RANKING).limit(limit).map(Candidate::item).toList();
+    }
+
+    /**
+     * Scores a file name against the terms: a name that is the term apart from its extension scores
+     * highest, then one starting with it, one with a word starting with it, and one merely
+     * containing it. Graph also matches file contents, which score 0 here.
+     */
+    private static int score(String name, List<String> needles) {
+        String lowerName = name.toLowerCase(Locale.ROOT);
+        int dot = lowerName.lastIndexOf('.');
+        String stem = dot > 0 ? lowerName.substring(0, dot) : lowerName;
+        int score = 0;
+        for (String needle : needles) {
+            int index = lowerName.indexOf(needle);
+            if (index < 0) {
+                continue;
+            }
+            if (stem.equals(needle)) {
+                score += 8;
+            } else if (index == 0) {
+                score += 4;
+            } else if (startsWord(lowerName, needle)) {
+                score += 2;
+            } else {
+                score += 1;
+            }
+        }
+        return score;
+    }
+
+    private static boolean startsWord(String name, String needle) {
+        for (int index = name.indexOf(needle); index >= 0; index = name.indexOf(needle, index + 1)) {
+            if (index == 0 || !Character.isLetterOrDigit(name.charAt(index - 1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Instant lastModified(DriveItem item) {
+        if (item.lastModified().isEmpty()) {
+            return Instant.MIN;
+        }
+        try {
+            return Instant.parse(item.lastModified());
+        } catch (DateTimeParseException e) {
+            return Instant.MIN;
+        }
+    }
+
+    private static final class Candidate {
+
+        private final DriveItem item;
+        private final int score;
+        private final Instant lastModified;
+        private int hits;
+
+        Candidate(DriveItem item, int score, Instant lastModified) {
+            this.item = item;
+            this.score = score;
+            this.lastModified = lastModified;
+        }
+
+        DriveItem item() {
+            return item;
+        }
+
+        int score() {
+            return score;
+        }
+
+        int hits() {
+            return hits;
+        }
+
+        Instant lastModified() {
+            return lastModified;
+        }
+    }
+}
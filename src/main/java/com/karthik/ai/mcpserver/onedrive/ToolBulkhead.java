@@ -0,0 +1,452 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.ToolCallbackProvider;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.execution.DefaultToolCallResultConverter;
+import org.springframework.ai.tool.execution.ToolCallResultConverter;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.context.ContextRegistry;
+import reactor.core.publisher.Mono;
+
+/**
+ * Admission control for tool calls. Each tool is a compartment of its own with at most
+ * {@code max-concurrent} calls running, or its entry in {@code tool-limits}, and at most
+ * {@code max-queue} waiting. A tool slowed down by Graph therefore fills only its own compartment,
+ * and the other tools keep answering. Waiting calls are let in round robin across MCP sessions, and
+ * no session may take more than its share of a queue, so one busy client cannot crowd out the
+ * others.
+ * <p>
+ * A call is turned away at once when its queue is full, or when the calls ahead of it are expected
+ * to take longer than {@code max-wait}; otherwise it is turned away once it has waited that long.
+ * Either way the client gets a "server busy, retry after" error straight away instead of a
+ * timeout.
+ */
+@Component
+class ToolBulkhead {
+
+    /**
+     * The key of the MCP session in the Reactor context.
+     */
+    static final String SESSION_KEY = "onedrive.tool.session";
+
+    private static final ThreadLocal<String> currentSession = new ThreadLocal<>();
+
+    // weight of the latest call in the average time a call holds its slot
+    private static final double SMOOTHING = 0.2;
+
+    private final boolean enabled;
+    private final int maxConcurrent;
+    private final int maxQueue;
+    private final Duration maxWait;
+    private final Map<String, Integer> toolLimits;
+    private final Map<String, Compartment> compartments = new ConcurrentHashMap<>();
+    private final ToolCallResultConverter resultConverter = new DefaultToolCallResultConverter();
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong queueFull = new AtomicLong();
+    private final AtomicLong overShare = new AtomicLong();
+    private final AtomicLong deadline = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+
+    @Autowired
+    ToolBulkhead(@Value("${onedrive.bulkhead.enabled:false}") boolean enabled,
+            @Value("${onedrive.bulkhead.max-concurrent:8}") int maxConcurrent,
+            @Value("${onedrive.bulkhead.max-queue:16}") int maxQueue,
+            @Value("${onedrive.bulkhead.max-wait:PT5S}") Duration maxWait,
+            @Value("${onedrive.bulkhead.tool-limits:listFolderTree=2,listFolderContentsBatch=2,searchFilesBatch=2,"
+                    + "exportFolderMetadata=1}") String toolLimits) {
+        this(enabled, maxConcurrent, maxQueue, maxWait, parseLimits(toolLimits));
+        if (enabled) {
+            ContextRegistry.getInstance().registerThreadLocalAccessor(SESSION_KEY, currentSession::get,
+                    currentSession::set, currentSession::remove);
+        }
+    }
+
+    ToolBulkhead(boolean enabled, int maxConcurrent, int maxQueue, Duration maxWait, Map<String, Integer> toolLimits) {
+        this.enabled = enabled;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxQueue = Math.max(0, maxQueue);
+        this.maxWait = maxWait;
+        this.toolLimits = toolLimits;
+    }
+
+    /**
+     * A bulkhead that lets every call in, for tools built without one.
+     */
+    static ToolBulkhead disabled() {
+        return new ToolBulkhead(false, 1, 0, Duration.ZERO, Map.of());
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * The MCP session of the call this thread is serving, or null outside of one, as over stdio.
+     */
+    static String currentSession() {
+        return currentSession.get();
+    }
+
+    /**
+     * Makes this thread serve {@code session} until the returned scope is closed.
+     */
+    static Scope bindSession(String session) {
+        String previous = currentSession.get();
+        currentSession.set(session);
+        return () -> {
+            if (previous != null) {
+                currentSession.set(previous);
+            } else {
+                currentSession.remove();
+            }
+        };
+    }
+
+    /**
+     * The tools of {@code tools}, each let in through its compartment.
+     */
+    ToolCallbackProvider guard(ToolCallbackProvider tools) {
+        if (!enabled) {
+            return tools;
+        }
+        ToolCallback[] guarded = Arrays.stream(tools.getToolCallbacks())
+                .map(GuardedToolCallback::new)
+                .toArray(ToolCallback[]::new);
+        return () -> guarded;
+    }
+
+    /**
+     * Subscribes to a reactive tool call once its compartment lets it in, without holding a thread
+     * while it waits. Called where the context of the request has been restored.
+     */
+    Mono<String> guard(String tool, Mono<String> call) {
+        if (!enabled) {
+            return call;
+        }
+        String session = currentSession();
+        return Mono.usingWhen(Mono.defer(() -> Mono.fromFuture(compartment(tool).admit(session))),
+                permit -> call, permit -> Mono.fromRunnable(permit::release))
+                .onErrorResume(BusyException.class, e -> Mono.just(busy(tool, e)));
+    }
+
+    /**
+     * Waits until {@code tool} may run a call of {@code session}.
+     *
+     * @return the slot of the call, to be released once it completes
+     * @throws BusyException when the call was turned away
+     */
+    Permit enter(String tool, String session) {
+        CompletableFuture<Permit> admission = compartment(tool).admit(session);
+        try {
+            return admission.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof BusyException busy) {
+                throw busy;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (!admission.cancel(false)) {
+                // let in while being interrupted
+                admission.join().release();
+            }
+            throw new BusyException(maxWait);
+        }
+    }
+
+    Stats stats() {
+        int running = 0;
+        int queued = 0;
+        for (Compartment compartment : compartments.values()) {
+            synchronized (compartment) {
+                running += compartment.running;
+                queued += compartment.queued;
+            }
+        }
+        return new Stats(running, queued, admitted.get(), queueFull.get(), overShare.get(), deadline.get(),
+                timedOut.get());
+    }
+
+    private Compartment compartment(String tool) {
+        return compartments.computeIfAbsent(tool,
+                name -> new Compartment(Math.max(1, toolLimits.getOrDefault(name, maxConcurrent))));
+    }
+
+    private String busy(String tool, BusyException e) {
+        long seconds = Math.max(1, (e.retryAfter().toMillis() + 999) / 1000);
+        return resultConverter.convert("Error calling " + tool + ": server busy, retry after " + seconds + "s",
+                String.class);
+    }
+
+    private Duration retryAfter(long expectedWaitNanos) {
+        return expectedWaitNanos > 0 ? Duration.ofNanos(expectedWaitNanos) : maxWait;
+    }
+
+    /**
+     * Parses {@code tool=limit} pairs separated by commas.
+     */
+    static Map<String, Integer> parseLimits(String toolLimits) {
+        Map<String, Integer> limits = new LinkedHashMap<>();
+        if (toolLimits == null) {
+            return limits;
+        }
+        for (String pair : toolLimits.split(",")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                limits.put(pair.substring(0, separator).trim(),
+                        Integer.parseInt(pair.substring(separator + 1).trim()));
+            }
+        }
+        return limits;
+    }
+
+    /**
+     * The calls one tool is running and the calls waiting for it, by session, guarded by itself.
+     */
+    private final class Compartment {
+
+        private final int limit;
+        private final LinkedHashMap<String, ArrayDeque<Waiter>> waiting = new LinkedHashMap<>();
+        private int running;
+        private int queued;
+        private double holdNanos;
+
+        Compartment(int limit) {
+            this.limit = limit;
+        }
+
+        CompletableFuture<Permit> admit(String session) {
+            String key = session != null ? session : "";
+            Waiter waiter;
+            synchronized (this) {
+                if (running < limit && queued == 0) {
+                    running++;
+                    admitted.incrementAndGet();
+                    return CompletableFuture.completedFuture(new Permit(this));
+                }
+                long expectedWait = expectedWait(queued + 1);
+                if (queued >= maxQueue) {
+                    queueFull.incrementAndGet();
+                    return CompletableFuture.failedFuture(new BusyException(retryAfter(expectedWait)));
+                }
+                ArrayDeque<Waiter> sessionQueue = waiting.get(key);
+                int sessions = waiting.size() + (sessionQueue == null ? 1 : 0);
+                if (sessionQueue != null && sessionQueue.size() >= Math.max(1, maxQueue / sessions)) {
+                    overShare.incrementAndGet();
+                    return CompletableFuture.failedFuture(new BusyException(retryAfter(expectedWait)));
+                }
+                if (expectedWait > maxWait.toNanos()) {
+                    deadline.incrementAndGet();
+                    return CompletableFuture.failedFuture(new BusyException(retryAfter(expectedWait)));
+                }
+                waiter = new Waiter(key, new CompletableFuture<>());
+                waiting.computeIfAbsent(key, k -> new ArrayDeque<>()).add(waiter);
+                queued++;
+            }
+            CompletableFuture.delayedExecutor(maxWait.toNanos(), TimeUnit.NANOSECONDS).execute(() -> {
+                if (dequeue(waiter)) {
+                    timedOut.incrementAndGet();
+                    waiter.admission().completeExceptionally(new BusyException(retryAfter(expectedWait(1))));
+                }
+            });
+            waiter.admission().whenComplete((permit, e) -> {
+                // a client that went away frees its place in the queue
+                if (waiter.admission().isCancelled()) {
+                    dequeue(waiter);
+                }
+            });
+            return waiter.admission();
+        }
+
+        void release(long heldNanos, boolean completed) {
+            List<Waiter> next = new ArrayList<>();
+            synchronized (this) {
+                if (completed) {
+                    holdNanos = holdNanos == 0 ? heldNanos : holdNanos + SMOOTHING * (heldNanos - holdNanos);
+                }
+                running--;
+                while (running < limit && queued > 0) {
+                    next.add(nextWaiter());
+                    queued--;
+                    running++;
+                }
+            }
+            // completed outside the lock, as a reactive call continues on this thread
+            for (Waiter waiter : next) {
+                Permit permit = new Permit(this);
+                if (waiter.admission().complete(permit)) {
+                    admitted.incrementAndGet();
+                } else {
+                    permit.free();
+                }
+            }
+        }
+
+        /**
+         * Takes the first waiter of the session whose turn it is, and sends that session to the
+         * back of the line.
+         */
+        private Waiter nextWaiter() {
+            Iterator<Map.Entry<String, ArrayDeque<Waiter>>> sessions = waiting.entrySet().iterator();
+            Map.Entry<String, ArrayDeque<Waiter>> first = sessions.next();
+            Waiter waiter = first.getValue().poll();
+            sessions.remove();
+            if (!first.getValue().isEmpty()) {
+                waiting.put(first.getKey(), first.getValue());
+            }
+            return waiter;
+        }
+
+        private synchronized boolean dequeue(Waiter waiter) {
+            ArrayDeque<Waiter> sessionQueue = waiting.get(waiter.session());
+            if (sessionQueue == null || !sessionQueue.remove(waiter)) {
+                return false;
+            }
+            if (sessionQueue.isEmpty()) {
+                waiting.remove(waiter.session());
+            }
+            queued--;
+            return true;
+        }
+
+        /**
+         * How long the call at {@code position} in the queue is expected to wait, from how long
+         * calls have held their slot so far, or 0 before any call has completed.
+         */
+        private long expectedWait(int position) {
+            return (long) (holdNanos * ((position + limit - 1) / limit));
+        }
+    }
+
+    /**
+     * The slot of one call in its compartment.
+     */
+    final class Permit {
+
+        private final Compartment compartment;
+        private final long start = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(Compartment compartment) {
+            this.compartment = compartment;
+        }
+
+        /**
+         * Frees the slot once the call has completed. Only the first release counts.
+         */
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                compartment.release(System.nanoTime() - start, true);
+            }
+        }
+
+        private void free() {
+            if (released.compareAndSet(false, true)) {
+                compartment.release(0, false);
+            }
+        }
+    }
+
+    /**
+     * A call turned away, with how long the client had better wait before trying again.
+     */
+    static final class BusyException extends RuntimeException {
+
+        private final Duration retryAfter;
+
+        BusyException(Duration retryAfter) {
+            super("Server busy, retry after " + retryAfter);
+            this.retryAfter = retryAfter;
+        }
+
+        Duration retryAfter() {
+            return retryAfter;
+        }
+    }
+
+    /**
+     * Admission counts: {@code running} and {@code queued} calls now, the calls {@code admitted},
+     * and those turned away because the queue was full, their session had its share of it, they
+     * would have waited past {@code max-wait}, or they did wait that long.
+     */
+    record Stats(int running, int queued, long admitted, long queueFull, long overShare, long deadline,
+            long timedOut) {
+
+    }
+
+    /**
+     * Restores the session a thread served before {@link #bindSession}.
+     */
+    interface Scope extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+
+    private record Waiter(String session, CompletableFuture<Permit> admission) {
+
+    }
+
+    private final class GuardedToolCallback implements ToolCallback {
+
+        private final ToolCallback delegate;
+        private final String tool;
+
+        GuardedToolCallback(ToolCallback delegate) {
+            this.delegate = delegate;
+            this.tool = delegate.getToolDefinition().name();
+        }
+
+        @Override
+        public ToolDefinition getToolDefinition() {
+            return delegate.getToolDefinition();
+        }
+
+        @Override
+        public ToolMetadata getToolMetadata() {
+            return delegate.getToolMetadata();
+        }
+
+        @Override
+        public String call(String toolInput) {
+            return call(toolInput, null);
+        }
+
+        @Override
+        public String call(String toolInput, ToolContext toolContext) {
+            Permit permit;
+            try {
+                permit = enter(tool, currentSession());
+            } catch (BusyException e) {
+                return busy(tool, e);
+            }
+            try {
+                return toolContext != null ? delegate.call(toolInput, toolContext) : delegate.call(toolInput);
+            } finally {
+                permit.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.io.IOException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Binds the MCP session of a message to the thread that serves it, so that {@link ToolBulkhead}
+ * can share its queues fairly between sessions. The SSE transport names the session in the
+ * {@code sessionId} parameter of the message endpoint.
+ */
+@Component
+@ConditionalOnProperty(prefix = "onedrive.bulkhead", name = "enabled", havingValue = "true")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+class ToolSessionFilter extends OncePerRequestFilter {
+
+    private static final String SESSION_PARAMETER = "sessionId";
+
+    private final String messageEndpoint;
+
+    ToolSessionFilter(@Value("${spring.ai.mcp.server.sse-message-endpoint:/mcp/message}") String messageEndpoint) {
+        this.messageEndpoint = messageEndpoint;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !path.equals(messageEndpoint);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        try (ToolBulkhead.Scope scope = ToolBulkhead.bindSession(request.getParameter(SESSION_PARAMETER))) {
+            chain.doFilter(request, response);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * The WebFlux counterpart of {@link ToolSessionFilter}, for the {@code async} profile: the MCP
+ * session of a message is put into the Reactor context of the exchange, from where
+ * {@link ToolBulkhead} reads it.
+ */
+@Component
+@ConditionalOnProperty(prefix = "onedrive.bulkhead", name = "enabled", havingValue = "true")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+class ToolSessionWebFilter implements WebFilter {
+
+    private static final String SESSION_PARAMETER = "sessionId";
+
+    private final String messageEndpoint;
+
+    ToolSessionWebFilter(@Value("${spring.ai.mcp.server.sse-message-endpoint:/mcp/message}") String messageEndpoint) {
+        this.messageEndpoint = messageEndpoint;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String path = exchange.getRequest().getPath().pathWithinApplication().value();
+        String session = exchange.getRequest().getQueryParams().getFirst(SESSION_PARAMETER);
+        if (!path.equals(messageEndpoint) || session == null) {
+            return chain.filter(exchange);
+        }
+        return chain.filter(exchange).contextWrite(context -> context.put(ToolBulkhead.SESSION_KEY, session));
+    }
+}
@@ -0,0 +1,175 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.ToolCallbackProvider;
+import org.springframework.ai.tool.method.MethodToolCallbackProvider;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestClient;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class AccountContextsTest {
+
+    private RestClient restClient;
+    @SuppressWarnings("rawtypes")
+    private RestClient.RequestHeadersUriSpec requestSpec;
+    private MutableClock clock;
+    private GraphClient graphClient;
+    private OnedriveService onedriveService;
+    private AccountContexts accounts;
+
+    @SuppressWarnings("unchecked")
+    @BeforeEach
+    void setUp() {
+        restClient = mock(RestClient.class);
+        requestSpec = mock(RestClient.RequestHeadersUriSpec.class);
+        when(restClient.get()).thenReturn(requestSpec);
+        when(requestSpec.uri(anyString())).thenReturn((RestClient.RequestHeadersSpec<?>) requestSpec);
+        when(requestSpec.uri(any(URI.class))).thenReturn((RestClient.RequestHeadersSpec<?>) requestSpec);
+        when(requestSpec.header(anyString(), anyString())).thenReturn((RestClient.RequestHeadersSpec<?>) requestSpec);
+        when(requestSpec.accept(any())).thenReturn((RestClient.RequestHeadersSpec<?>) requestSpec);
+        when(requestSpec.exchange(any(), eq(false))).thenAnswer(invocation -> jsonResponse("{\"value\":[]}"));
+
+        clock = new MutableClock(Instant.parse("2025-01-01T00:00:00Z"));
+        graphClient = new GraphClient(restClient, "default-token");
+        onedriveService = new OnedriveService(graphClient,
+                new DriveIndex(graphClient, false, Duration.ofMinutes(5)),
+                new FolderListingCache(graphClient, true, Duration.ofSeconds(30), 256),
+                new FolderTreeCrawler(4), new RequestCoalescer(), new OnedriveMetrics(new SimpleMeterRegistry()),
+                new ResultCursors(Duration.ofMinutes(5), 100), new PathIdTrie(true, Duration.ofMinutes(10), 10000),
+                new FileContentReader(graphClient, 65536), FolderPrefetcher.disabled(), DriveExporter.disabled());
+        accounts = new AccountContexts(onedriveService, graphClient, GraphRequestScheduler.unlimited(), clock);
+    }
+
+    private static ClientHttpResponse jsonResponse(String body) {
+        return new MockClientHttpResponse(body.getBytes(StandardCharsets.UTF_8), HttpStatus.OK);
+    }
+
+    private ToolCallback routedTool(String name) {
+        ToolCallbackProvider routed = accounts.route(MethodToolCallbackProvider.builder()
+                .toolObjects(onedriveService)
+                .build());
+        for (ToolCallback tool : routed.getToolCallbacks()) {
+            if (tool.getToolDefinition().name().equals(name)) {
+                return tool;
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    @Test
+    void routedTool_WithToken_CallsGraphAsThatAccount() {
+        ToolCallback searchFolderPath = routedTool("searchFolderPath");
+
+        AccountContexts.withToken("alice-token", () -> searchFolderPath.call("{\"folderName\":\"Bills\"}"));
+
+        verify(requestSpec).header("Authorization", "Bearer alice-token");
+        assertEquals(1, accounts.stats().accounts());
+    }
+
+    @Test
+    void routedTool_WithoutToken_CallsGraphAsConfiguredAccount() {
+        ToolCallback searchFolderPath = routedTool("searchFolderPath");
+
+        searchFolderPath.call("{\"folderName\":\"Bills\"}");
+
+        verify(requestSpec).header("Authorization", "Bearer default-token");
+        assertEquals(0, accounts.stats().accounts());
+    }
+
+    @Test
+    void account_PerToken_KeepsSeparateServices() {
+        AccountContexts.Account alice = accounts.account("alice-token");
+
+        assertSame(alice, accounts.account("alice-token"));
+        assertNotSame(alice.service(), accounts.account("bob-token").service());
+        assertNotSame(onedriveService, alice.service());
+        assertEquals(2, accounts.stats().created());
+    }
+
+    @Test
+    void bind_WhenScopeCloses_RestoresPreviousToken() {
+        try (AccountContexts.Scope outer = AccountContexts.bind("alice-token")) {
+            try (AccountContexts.Scope inner = AccountContexts.bind("bob-token")) {
+                assertEquals("bob-token", AccountContexts.currentToken());
+            }
+            assertEquals("alice-token", AccountContexts.currentToken());
+        }
+        assertNull(AccountContexts.currentToken());
+    }
+
+    @Test
+    void evictIdle_AfterIdleTimeout_DropsAccount() {
+        accounts.account("alice-token");
+        clock.advance(Duration.ofMinutes(20));
+        accounts.account("bob-token");
+        clock.advance(Duration.ofMinutes(15));
+
+        accounts.evictIdle();
+
+        assertEquals(1, accounts.stats().accounts());
+        assertEquals(1, accounts.stats().evicted());
+    }
+
+    @Test
+    void account_BeyondMaxAccounts_EvictsLeastRecentlyUsed() {
+        ReflectionTestUtils.setField(accounts, "maxAccounts", 2);
+        AccountContexts.Account alice = accounts.account("alice-token");
+        clock.advance(Duration.ofSeconds(1));
+        accounts.account("bob-token");
+        clock.advance(Duration.ofSeconds(1));
+        accounts.account("alice-token");
+        clock.advance(Duration.ofSeconds(1));
+
+        accounts.account("carol-token");
+
+        assertEquals(2, accounts.stats().accounts());
+        assertEquals(1, accounts.stats().evicted());
+        assertSame(alice, accounts.account("alice-token"));
+        assertEquals(3, accounts.stats().created());
+    }
+
+    @Test
+    void forAccount_AtMaxInFlight_RejectsUntilResponseIsClosed() throws Exception {
+        GraphClient account = graphClient.forAccount("alice-token", GraphRequestScheduler.unlimited(), 1,
+                Duration.ZERO);
+
+        ClientHttpResponse first = account.open("/me/drive/root/children");
+        assertThrows(GraphRequestScheduler.RejectedException.class, () -> account.open("/me/drive/root/children"));
+        first.close();
+        first.close();
+
+        account.open("/me/drive/root/children").close();
+        account.open("/me/drive/root/children").close();
+    }
+
+    @Test
+    void bearerToken_ParsesAuthorizationHeader() {
+        assertEquals("abc", AccountTokenFilter.bearerToken("Bearer abc"));
+        assertEquals("abc", AccountTokenFilter.bearerToken("bearer  abc "));
+        assertNull(AccountTokenFilter.bearerToken("Basic abc"));
+        assertNull(AccountTokenFilter.bearerToken("Bearer "));
+        assertNull(AccountTokenFilter.bearerToken(null));
+    }
+}
@@ -0,0 +1,115 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class DriveExportControllerTest {
+
+    private static final String LISTING = """
+            {"value": [{"name": "notes.txt", "webUrl": "https://example.com/notes.txt", "file": {}}]}
+            """;
+
+    @TempDir
+    Path directory;
+
+    private OnedriveService onedriveService;
+    private DriveExportController controller;
+
+    @BeforeEach
+    void setUp() {
+        onedriveService = mock(OnedriveService.class);
+        controller = new DriveExportController(onedriveService, "configured-token", (AccountContexts) null);
+    }
+
+    @Test
+    void export_WithoutBearerToken_Returns401() {
+        ResponseEntity<StreamingResponseBody> response = controller.export("Documents", null);
+
+        assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
+        assertEquals("Bearer", response.getHeaders().getFirst(HttpHeaders.WWW_AUTHENTICATE));
+        assertNull(response.getBody());
+        verifyNoInteractions(onedriveService);
+    }
+
+    @Test
+    void export_WithAnotherToken_Returns401() {
+        ResponseEntity<StreamingResponseBody> response = controller.export("Documents", "Bearer someone-else");
+
+        assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
+        verifyNoInteractions(onedriveService);
+    }
+
+    @Test
+    void export_WithConfiguredToken_StreamsExport() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        when(onedriveService.exportFolderMetadata(eq("Documents"), any()))
+                .thenReturn(new DriveExporter.Result(null, 4, 2, -1, 0.5, 8, false));
+
+        ResponseEntity<StreamingResponseBody> response = controller.export("Documents", "Bearer configured-token");
+        response.getBody().writeTo(out);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        verify(onedriveService).exportFolderMetadata("Documents", out);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @Test
+    void export_WithAccountToken_StreamsAsThatAccount() throws Exception {
+        RestClient restClient = mock(RestClient.class);
+        RestClient.RequestHeadersUriSpec requestSpec = mock(RestClient.RequestHeadersUriSpec.class);
+        when(restClient.get()).thenReturn(requestSpec);
+        when(requestSpec.uri(anyString())).thenReturn((RestClient.RequestHeadersSpec<?>) requestSpec);
+        when(requestSpec.uri(any(URI.class))).thenReturn((RestClient.RequestHeadersSpec<?>) requestSpec);
+        when(requestSpec.header(anyString(), anyString())).thenReturn((RestClient.RequestHeadersSpec<?>) requestSpec);
+        when(requestSpec.accept(any())).thenReturn((RestClient.RequestHeadersSpec<?>) requestSpec);
+        when(requestSpec.exchange(any(), eq(false))).thenAnswer(invocation ->
+                new MockClientHttpResponse(LISTING.getBytes(StandardCharsets.UTF_8), HttpStatus.OK));
+        GraphClient graphClient = new GraphClient(restClient, "configured-token");
+        OnedriveService configured = new OnedriveService(graphClient,
+                new DriveIndex(graphClient, false, Duration.ofMinutes(5)),
+                new FolderListingCache(graphClient, false, Duration.ofSeconds(30), 256),
+                new FolderTreeCrawler(4), new RequestCoalescer(), new OnedriveMetrics(new SimpleMeterRegistry()),
+                new ResultCursors(Duration.ofMinutes(5), 100), new PathIdTrie(true, Duration.ofMinutes(10), 10000),
+                new FileContentReader(graphClient, 65536), FolderPrefetcher.disabled(),
+                new DriveExporter(graphClient, true, directory, Duration.ZERO, Duration.ofMinutes(1),
+                        Clock.systemUTC()));
+        controller = new DriveExportController(configured, "configured-token",
+                new AccountContexts(configured, graphClient, GraphRequestScheduler.unlimited()));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        ResponseEntity<StreamingResponseBody> response = controller.export("Documents", "Bearer alice-token");
+        response.getBody().writeTo(out);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertTrue(out.toString(StandardCharsets.UTF_8).contains("notes.txt"));
+        verify(requestSpec).header("Authorization", "Bearer alice-token");
+        verify(requestSpec, never()).header("Authorization", "Bearer configured-token");
+    }
+}
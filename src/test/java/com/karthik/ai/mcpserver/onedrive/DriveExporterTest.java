@@ -0,0 +1,214 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.client.RestClient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class DriveExporterTest {
+
+    private static final String DOCUMENTS = """
+            {"value": [
+                {"name": "Bills", "webUrl": "https://example.com/Bills", "folder": {"childCount": 1},
+                 "parentReference": {"path": "/drive/root:/Documents"}},
+                {"name": "Empty", "webUrl": "https://example.com/Empty", "folder": {"childCount": 0},
+                 "parentReference": {"path": "/drive/root:/Documents"}},
+                {"name": "notes.txt", "webUrl": "https://example.com/notes.txt", "file": {},
+                 "parentReference": {"path": "/drive/root:/Documents"}}
+            ]}
+            """;
+
+    private static final String BILLS = """
+            {"value": [
+                {"name": "march.pdf", "webUrl": "https://example.com/march.pdf", "file": {},
+                 "parentReference": {"path": "/drive/root:/Documents/Bills"}}
+            ]}
+            """;
+
+    @TempDir
+    Path directory;
+
+    private RestClient restClient;
+    @SuppressWarnings("rawtypes")
+    private RestClient.RequestHeadersUriSpec requestSpec;
+    private PathIdTrie pathIds;
+    private OnedriveService onedriveService;
+
+    @SuppressWarnings("unchecked")
+    @BeforeEach
+    void setUp() {
+        restClient = mock(RestClient.class);
+        requestSpec = mock(RestClient.RequestHeadersUriSpec.class);
+        when(restClient.get()).thenReturn(requestSpec);
+        when(requestSpec.uri(anyString())).thenReturn((RestClient.RequestHeadersSpec<?>) requestSpec);
+        when(requestSpec.uri(any(URI.class))).thenReturn((RestClient.RequestHeadersSpec<?>) requestSpec);
+        when(requestSpec.header(anyString(), anyString())).thenReturn((RestClient.RequestHeadersSpec<?>) requestSpec);
+        when(requestSpec.accept(any())).thenReturn((RestClient.RequestHeadersSpec<?>) requestSpec);
+
+        GraphClient graphClient = new GraphClient(restClient, "test-token");
+        pathIds = new PathIdTrie(true, Duration.ofMinutes(10), 10000);
+        onedriveService = new OnedriveService(graphClient,
+                new DriveIndex(graphClient, false, Duration.ofMinutes(5)),
+                new FolderListingCache(graphClient, false, Duration.ofSeconds(30), 256),
+                new FolderTreeCrawler(4), new RequestCoalescer(), new OnedriveMetrics(new SimpleMeterRegistry()),
+                new ResultCursors(Duration.ofMinutes(5), 100), pathIds,
+                new FileContentReader(graphClient, 65536), FolderPrefetcher.disabled(),
+                new DriveExporter(graphClient, true, directory, Duration.ZERO, Duration.ofMinutes(1),
+                        Clock.systemUTC()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubResponses(String firstBody, String... nextBodies) {
+        ClientHttpResponse[] next = new ClientHttpResponse[nextBodies.length];
+        for (int i = 0; i < nextBodies.length; i++) {
+            next[i] = jsonResponse(nextBodies[i]);
+        }
+        when(requestSpec.exchange(any(), eq(false))).thenReturn(jsonResponse(firstBody), (Object[]) next);
+    }
+
+    private static ClientHttpResponse jsonResponse(String body) {
+        return new MockClientHttpResponse(body.getBytes(StandardCharsets.UTF_8), HttpStatus.OK);
+    }
+
+    private static ClientHttpResponse notFound() {
+        return new MockClientHttpResponse("{\"error\":{\"code\":\"itemNotFound\"}}".getBytes(StandardCharsets.UTF_8),
+                HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    void exportFolderMetadata_WalksSubtreeIntoOneRecordPerLine() throws Exception {
+        stubResponses(DOCUMENTS, BILLS);
+
+        String result = onedriveService.exportFolderMetadata("Documents", "documents.ndjson");
+
+        List<String> lines = Files.readAllLines(directory.resolve("documents.ndjson"));
+        assertEquals(4, lines.size());
+        assertTrue(lines.get(0).contains("\"childCount\":1"));
+        assertTrue(lines.get(3).contains("march.pdf"));
+        assertTrue(lines.get(3).contains("/drive/root:/Documents/Bills"));
+        assertTrue(result.contains("\"records\":4"), result);
+        assertTrue(result.contains("\"folders\":2"), result);
+        // the empty folder is not listed
+        verify(requestSpec, times(2)).exchange(any(), eq(false));
+        assertFalse(Files.exists(directory.resolve("documents.ndjson.checkpoint")));
+    }
+
+    @Test
+    void exportFolderMetadata_WithCheckpoint_ResumesFromPendingFolders() throws Exception {
+        String done = "{\"name\":\"notes.txt\"}\n";
+        Files.writeString(directory.resolve("documents.ndjson"), done + "{\"name\":\"tor");
+        new ObjectMapper().writeValue(directory.resolve("documents.ndjson.checkpoint").toFile(),
+                new DriveExporter.Checkpoint("documents", done.length(), 1, 1, List.of("Documents/Bills")));
+        stubResponses(BILLS);
+
+        String result = onedriveService.exportFolderMetadata("Documents", "documents.ndjson");
+
+        List<String> lines = Files.readAllLines(directory.resolve("documents.ndjson"));
+        assertEquals(2, lines.size());
+        assertEquals("{\"name\":\"notes.txt\"}", lines.get(0));
+        assertTrue(lines.get(1).contains("march.pdf"));
+        assertTrue(result.contains("\"resumed\":true"), result);
+        verify(requestSpec, times(1)).exchange(any(), eq(false));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void exportFolderMetadata_WithStaleSubfolderId_RetriesByPath() throws Exception {
+        pathIds.put("Documents/Bills", "stale-bills-id");
+        when(requestSpec.exchange(any(), eq(false))).thenReturn(jsonResponse(DOCUMENTS), notFound(), jsonResponse(BILLS));
+
+        String result = onedriveService.exportFolderMetadata("Documents", "documents.ndjson");
+
+        assertTrue(result.contains("\"records\":4"), result);
+        assertTrue(Files.readAllLines(directory.resolve("documents.ndjson")).get(3).contains("march.pdf"));
+        verify(requestSpec).uri(startsWith("/me/drive/items/stale-bills-id/children"));
+        verify(requestSpec).uri(startsWith("/me/drive/root:/Documents%2FBills:/children"));
+        assertNull(pathIds.resolve("Documents/Bills"));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void exportFolderMetadata_WithRemovedSubfolder_SkipsIt() throws Exception {
+        when(requestSpec.exchange(any(), eq(false))).thenReturn(jsonResponse(DOCUMENTS), notFound());
+
+        String result = onedriveService.exportFolderMetadata("Documents", "documents.ndjson");
+
+        assertTrue(result.contains("\"records\":3"), result);
+        verify(requestSpec, times(2)).exchange(any(), eq(false));
+    }
+
+    @Test
+    void exportFolderMetadata_WithPathAsFileName_ReturnsError() {
+        String result = onedriveService.exportFolderMetadata("Documents", "../documents.ndjson");
+
+        assertTrue(result.startsWith("Error exporting folder metadata"), result);
+    }
+
+    @Test
+    void exportFolderMetadata_ToStream_WritesNdjson() throws Exception {
+        stubResponses(BILLS);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        DriveExporter.Result result = onedriveService.exportFolderMetadata("Documents/Bills", out);
+
+        assertEquals(1, result.records());
+        assertTrue(out.toString(StandardCharsets.UTF_8).endsWith("}\n"));
+    }
+
+    @Test
+    void disabled_RefusesExportToFile() {
+        DriveExporter exporter = DriveExporter.disabled();
+
+        IllegalStateException error = assertThrows(IllegalStateException.class,
+                () -> exporter.exportToFile("Documents", "documents.ndjson", path -> path, (item, generator) -> { }));
+
+        assertTrue(error.getMessage().contains("onedrive.export.enabled"));
+        assertThrows(IllegalStateException.class,
+                () -> exporter.export("Documents", new ByteArrayOutputStream(), path -> path, (item, generator) -> { }));
+    }
+
+    @Test
+    void forAccount_StreamsButRefusesExportToFile() throws Exception {
+        DriveExporter exporter = new DriveExporter(null, true, directory, Duration.ZERO, Duration.ofMinutes(1),
+                Clock.systemUTC());
+        GraphClient accountClient = mock(GraphClient.class);
+        when(accountClient.open(anyString())).thenReturn(jsonResponse(BILLS));
+        DriveExporter account = exporter.forAccount(accountClient);
+
+        IllegalStateException error = assertThrows(IllegalStateException.class,
+                () -> account.exportToFile("Documents", "documents.ndjson", path -> path, (item, generator) -> { }));
+        account.export("Documents/Bills", new ByteArrayOutputStream(), path -> path, (item, generator) -> { });
+
+        assertTrue(error.getMessage().contains("configured account"), error.getMessage());
+        verify(accountClient).open("Documents/Bills");
+    }
+}
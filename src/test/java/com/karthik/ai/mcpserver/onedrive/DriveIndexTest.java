@@ -0,0 +1,157 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.client.RestClient;
+
+class DriveIndexTest {
+
+    private static final String FULL_SYNC = """
+        {
+            "value": [
+                { "id": "root", "name": "root", "root": {}, "folder": { "childCount": 1 } },
+                { "id": "docs", "name": "Documents", "webUrl": "https://example.com/Documents",
+                  "folder": { "childCount": 2 }, "parentReference": { "id": "root" } },
+                { "id": "bills", "name": "Bills", "webUrl": "https://example.com/Bills",
+                  "folder": { "childCount": 1 }, "parentReference": { "id": "docs" } },
+                { "id": "f1", "name": "Electricity Bill.pdf", "webUrl": "https://example.com/bill.pdf",
+                  "file": {}, "parentReference": { "id": "bills" } },
+                { "id": "f2", "name": "resume.pdf", "webUrl": "https://example.com/resume.pdf",
+                  "file": {}, "parentReference": { "id": "docs" } }
+            ],
+            "@odata.deltaLink": "https://graph.microsoft.com/v1.0/me/drive/root/delta?token=1"
+        }
+        """;
+
+    private static final String CHANGES = """
+        {
+            "value": [
+                { "id": "f2", "deleted": { "state": "deleted" } },
+                { "id": "f3", "name": "water bill.pdf", "file": {}, "parentReference": { "id": "bills" } }
+            ],
+            "@odata.deltaLink": "https://graph.microsoft.com/v1.0/me/drive/root/delta?token=2"
+        }
+        """;
+
+    private static final String RENAME = """
+        {
+            "value": [
+                { "id": "bills", "name": "Invoices", "folder": { "childCount": 2 }, "parentReference": { "id": "docs" } }
+            ],
+            "@odata.deltaLink": "https://graph.microsoft.com/v1.0/me/drive/root/delta?token=3"
+        }
+        """;
+
+    private RestClient restClient;
+    @SuppressWarnings("rawtypes")
+    private RestClient.RequestHeadersUriSpec requestSpec;
+    private MutableClock clock;
+    private DriveIndex driveIndex;
+
+    @SuppressWarnings("unchecked")
+    @BeforeEach
+    void setUp() {
+        restClient = mock(RestClient.class);
+        requestSpec = mock(RestClient.RequestHeadersUriSpec.class);
+        when(restClient.get()).thenReturn(requestSpec);
+        when(requestSpec.uri(anyString())).thenReturn((RestClient.RequestHeadersSpec<?>) requestSpec);
+        when(requestSpec.uri(any(URI.class))).thenReturn((RestClient.RequestHeadersSpec<?>) requestSpec);
+        when(requestSpec.header(anyString(), anyString())).thenReturn((RestClient.RequestHeadersSpec<?>) requestSpec);
+        when(requestSpec.accept(any())).thenReturn((RestClient.RequestHeadersSpec<?>) requestSpec);
+
+        clock = new MutableClock(Instant.parse("2025-04-20T00:00:00Z"));
+        driveIndex = new DriveIndex(new GraphClient(restClient, "test-token"), true, Duration.ofMinutes(5), clock);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void sync_BuildsPathsFromParentChain() throws IOException {
+        when(requestSpec.exchange(any(), eq(false))).thenReturn(response(FULL_SYNC));
+
+        assertFalse(driveIndex.isFresh());
+        driveIndex.sync();
+
+        assertTrue(driveIndex.isFresh());
+        List<DriveItem> results = driveIndex.search("bill", null, false, 10);
+        assertEquals(2, results.size());
+        DriveItem file = results.stream().filter(item -> !item.folder()).findFirst().orElseThrow();
+        assertEquals("/drive/root:/Documents/Bills", file.parentPath());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void sync_AppliesIncrementalChanges() throws IOException {
+        when(requestSpec.exchange(any(), eq(false))).thenReturn(response(FULL_SYNC), response(CHANGES));
+
+        driveIndex.sync();
+        driveIndex.sync();
+
+        assertTrue(driveIndex.search("resume", null, false, 10).isEmpty());
+        assertEquals(1, driveIndex.search("water", "Documents/Bills", false, 10).size());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void search_ScopedToFolderAndFoldersOnly() throws IOException {
+        when(requestSpec.exchange(any(), eq(false))).thenReturn(response(FULL_SYNC));
+        driveIndex.sync();
+
+        assertEquals(1, driveIndex.search("pdf", "Documents/Bills", false, 10).size());
+        assertEquals(2, driveIndex.search("pdf", "Documents", false, 10).size());
+        assertEquals(List.of("Bills"), driveIndex.search("bill", null, true, 10).stream().map(DriveItem::name).toList());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void isFresh_FalseOnceMaxStalenessPasses() throws IOException {
+        when(requestSpec.exchange(any(), eq(false))).thenReturn(response(FULL_SYNC));
+        driveIndex.sync();
+
+        clock.advance(Duration.ofMinutes(6));
+
+        assertFalse(driveIndex.isFresh());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void sync_WithRenamedFolder_ForgetsItsPathId() throws IOException {
+        when(requestSpec.exchange(any(), eq(false))).thenReturn(response(FULL_SYNC), response(CHANGES),
+                response(RENAME));
+        PathIdTrie pathIds = new PathIdTrie(true, Duration.ofMinutes(10), 100, clock);
+        pathIds.put("Documents", "docs");
+        pathIds.put("Documents/Bills", "bills");
+        driveIndex = new DriveIndex(new GraphClient(restClient, "test-token"), true, Duration.ofMinutes(5), pathIds,
+                clock);
+
+        driveIndex.sync();
+        driveIndex.sync();
+        assertEquals("bills", pathIds.resolve("Documents/Bills"));
+
+        driveIndex.sync();
+
+        assertNull(pathIds.resolve("Documents/Bills"));
+        assertEquals("docs", pathIds.resolve("Documents"));
+    }
+
+    private static MockClientHttpResponse response(String body) {
+        return new MockClientHttpResponse(body.getBytes(StandardCharsets.UTF_8), HttpStatus.OK);
+    }
+}
@@ -0,0 +1,185 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+
+class DriveItemReaderTest {
+
+    private final DriveItemReader reader = new DriveItemReader(new JsonFactory());
+
+    @Test
+    void read_ProjectsFieldsAndSkipsTheRest() throws IOException {
+        String body = """
+            {
+                "@odata.context": "https://graph.microsoft.com/v1.0/$metadata#driveItems",
+                "value": [
+                    {
+                        "id": "1",
+                        "name": "Bills",
+                        "webUrl": "https://example.com/Bills",
+                        "size": 1024,
+                        "folder": { "childCount": 7, "view": { "sortBy": "name" } },
+                        "parentReference": { "driveId": "d", "path": "/drive/root:/Documents" }
+                    },
+                    {
+                        "id": "2",
+                        "name": "bill.pdf",
+                        "webUrl": "https://example.com/bill.pdf",
+                        "file": { "mimeType": "application/pdf", "hashes": { "quickXorHash": "x" } }
+                    }
+                ],
+                "@odata.nextLink": "https://graph.microsoft.com/v1.0/next"
+            }
+            """;
+        List<DriveItem> items = new ArrayList<>();
+
+        DriveItemReader.Page page = reader.read(stream(body), items::add);
+
+        assertEquals("https://graph.microsoft.com/v1.0/next", page.nextLink());
+        assertNull(page.deltaLink());
+        assertEquals(2, items.size());
+        assertEquals(new DriveItem("1", "Bills", "https://example.com/Bills", "", "/drive/root:/Documents", true, 7,
+                "", false, false, "", ""), items.get(0));
+        assertFalse(items.get(1).folder());
+        assertEquals("", items.get(1).parentPath());
+    }
+
+    @Test
+    void read_WhenConsumerStops_ReturnsNoNextLink() throws IOException {
+        String body = """
+            {
+                "@odata.nextLink": "https://graph.microsoft.com/v1.0/next",
+                "value": [ { "name": "a" }, { "name": "b" } ]
+            }
+            """;
+        List<DriveItem> items = new ArrayList<>();
+
+        DriveItemReader.Page page = reader.read(stream(body), item -> items.add(item) && false);
+
+        assertNull(page.nextLink());
+        assertEquals(1, items.size());
+        assertTrue(items.get(0).name().equals("a"));
+    }
+
+    @Test
+    void read_DeltaPage_ReturnsDeltaLinkAndFacets() throws IOException {
+        String body = """
+            {
+                "value": [
+                    { "id": "r", "name": "root", "root": {}, "folder": { "childCount": 1 } },
+                    { "id": "9", "deleted": { "state": "deleted" }, "parentReference": { "id": "r" } }
+                ],
+                "@odata.deltaLink": "https://graph.microsoft.com/v1.0/me/drive/root/delta?token=t"
+            }
+            """;
+        List<DriveItem> items = new ArrayList<>();
+
+        DriveItemReader.Page page = reader.read(stream(body), items::add);
+
+        assertNull(page.nextLink());
+        assertEquals("https://graph.microsoft.com/v1.0/me/drive/root/delta?token=t", page.deltaLink());
+        assertTrue(items.get(0).root());
+        assertTrue(items.get(1).deleted());
+        assertEquals("r", items.get(1).parentId());
+    }
+
+    @Test
+    void readBatch_DemultiplexesBodiesBeforeAndAfterStatus() throws IOException {
+        String body = """
+            {
+                "responses": [
+                    { "body": { "value": [ { "name": "late status" } ] }, "status": 200, "id": "1" },
+                    { "id": "0", "status": 200,
+                      "body": { "value": [ { "name": "a" }, { "name": "b" } ], "@odata.nextLink": "https://next" } },
+                    { "id": "2", "status": 429, "body": { "error": { "code": "tooManyRequests", "message": "slow down" } } }
+                ]
+            }
+            """;
+        List<List<String>> names = List.of(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        List<String> failures = new ArrayList<>();
+
+        Map<Integer, String> nextLinks = reader.readBatch(stream(body), new GraphClient.BatchConsumer() {
+            @Override
+            public Predicate<DriveItem> items(int id) {
+                // stop after the first item to check that the rest of the batch is still read
+                return item -> names.get(id).add(item.name()) && false;
+            }
+
+            @Override
+            public void failed(int id, int status, String message) {
+                failures.add(id + ":" + status + ":" + message);
+            }
+        });
+
+        assertEquals(List.of("a"), names.get(0));
+        assertEquals(List.of("late status"), names.get(1));
+        assertEquals(List.of("2:429:slow down"), failures);
+        assertTrue(nextLinks.isEmpty());
+    }
+
+    @Test
+    void feedPage_OneByteAtATime_ReadsWhatABlockingReadReads() throws IOException {
+        String body = """
+            {
+                "@odata.context": "https://graph.microsoft.com/v1.0/$metadata#driveItems",
+                "value": [
+                    { "id": "1", "name": "Rechnungen ä", "folder": { "childCount": 2, "view": { "sortBy": "name" } } },
+                    [ "not", { "an": "item" } ],
+                    { "id": "2", "name": "bill.pdf", "file": { "hashes": { "quickXorHash": "x" } }, "size": 12345678901 }
+                ],
+                "@odata.nextLink": "https://graph.microsoft.com/v1.0/next"
+            }
+            """;
+        List<DriveItem> expected = new ArrayList<>();
+        DriveItemReader.Page expectedPage = reader.read(stream(body), expected::add);
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        List<DriveItem> items = new ArrayList<>();
+
+        DriveItemReader.Page page;
+        try (DriveItemReader.PageFeeder feeder = reader.feedPage(items::add)) {
+            for (int i = 0; i < bytes.length; i++) {
+                feeder.feed(bytes, i, 1);
+            }
+            page = feeder.finish();
+        }
+
+        assertEquals(expected, items);
+        assertEquals(2, items.size());
+        assertEquals(expectedPage, page);
+    }
+
+    @Test
+    void feedPage_WithTruncatedBody_Throws() throws IOException {
+        byte[] bytes = "{ \"value\": [ { \"name\": \"a\" }".getBytes(StandardCharsets.UTF_8);
+
+        try (DriveItemReader.PageFeeder feeder = reader.feedPage(item -> true)) {
+            feeder.feed(bytes, 0, bytes.length);
+            assertThrows(JsonParseException.class, feeder::finish);
+        }
+    }
+
+    @Test
+    void read_WithInvalidJson_Throws() {
+        assertThrows(JsonParseException.class, () -> reader.read(stream("invalid json"), item -> true));
+    }
+
+    private static InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
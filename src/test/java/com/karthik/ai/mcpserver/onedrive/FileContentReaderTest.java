@@ -0,0 +1,123 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.client.RestClient;
+
+class FileContentReaderTest {
+
+    private static final String CONTENT_PATH = "/me/drive/root:/notes.txt:/content";
+
+    @SuppressWarnings("rawtypes")
+    private RestClient.RequestHeadersUriSpec requestSpec;
+    private FileContentReader reader;
+
+    @SuppressWarnings("unchecked")
+    @BeforeEach
+    void setUp() {
+        RestClient restClient = mock(RestClient.class);
+        requestSpec = mock(RestClient.RequestHeadersUriSpec.class);
+        when(restClient.get()).thenReturn(requestSpec);
+        when(requestSpec.uri(anyString())).thenReturn((RestClient.RequestHeadersSpec<?>) requestSpec);
+        when(requestSpec.uri(any(URI.class))).thenReturn((RestClient.RequestHeadersSpec<?>) requestSpec);
+        when(requestSpec.header(anyString(), anyString())).thenReturn((RestClient.RequestHeadersSpec<?>) requestSpec);
+        when(requestSpec.accept(any())).thenReturn((RestClient.RequestHeadersSpec<?>) requestSpec);
+        reader = new FileContentReader(new GraphClient(restClient, "test-token"), 8);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubResponse(byte[] body, HttpStatus status, String contentRange) {
+        MockClientHttpResponse response = new MockClientHttpResponse(body, status);
+        if (contentRange != null) {
+            response.getHeaders().set(HttpHeaders.CONTENT_RANGE, contentRange);
+        }
+        when(requestSpec.exchange(any(), eq(false))).thenReturn(response);
+    }
+
+    @Test
+    void read_RequestsRangeAndReturnsNextOffset() throws Exception {
+        stubResponse("hello wo".getBytes(StandardCharsets.UTF_8), HttpStatus.PARTIAL_CONTENT, "bytes 0-7/20");
+
+        FileContentReader.Chunk chunk = reader.read(CONTENT_PATH, 0, 0);
+
+        assertEquals("hello wo", chunk.content());
+        assertEquals(8L, chunk.nextOffset());
+        assertEquals(20, chunk.size());
+        verify(requestSpec).header(HttpHeaders.RANGE, "bytes=0-7");
+    }
+
+    @Test
+    void read_WithLengthAboveMaximum_IsCapped() throws Exception {
+        stubResponse("abcdefgh".getBytes(StandardCharsets.UTF_8), HttpStatus.PARTIAL_CONTENT, "bytes 4-11/20");
+
+        reader.read(CONTENT_PATH, 4, 1000);
+
+        verify(requestSpec).header(HttpHeaders.RANGE, "bytes=4-11");
+    }
+
+    @Test
+    void read_WithCharacterCutOff_LeavesItForNextChunk() throws Exception {
+        byte[] bytes = "abcdef€".getBytes(StandardCharsets.UTF_8);
+        byte[] chunkBytes = Arrays.copyOf(bytes, 8);
+        stubResponse(chunkBytes, HttpStatus.PARTIAL_CONTENT, "bytes 0-7/9");
+
+        FileContentReader.Chunk chunk = reader.read(CONTENT_PATH, 0, 0);
+
+        assertEquals("abcdef", chunk.content());
+        assertEquals(6L, chunk.nextOffset());
+    }
+
+    @Test
+    void read_LastChunk_HasNoNextOffset() throws Exception {
+        stubResponse("end".getBytes(StandardCharsets.UTF_8), HttpStatus.PARTIAL_CONTENT, "bytes 17-19/20");
+
+        FileContentReader.Chunk chunk = reader.read(CONTENT_PATH, 17, 0);
+
+        assertEquals("end", chunk.content());
+        assertNull(chunk.nextOffset());
+    }
+
+    @Test
+    void read_WhenRangeIsIgnored_SkipsToOffset() throws Exception {
+        stubResponse("0123456789abcdefghij".getBytes(StandardCharsets.UTF_8), HttpStatus.OK, null);
+
+        FileContentReader.Chunk chunk = reader.read(CONTENT_PATH, 10, 4);
+
+        assertEquals("abcd", chunk.content());
+        assertEquals(14L, chunk.nextOffset());
+    }
+
+    @Test
+    void read_PastEndOfFile_ReturnsEmptyChunk() throws Exception {
+        stubResponse(new byte[0], HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, "bytes */20");
+
+        FileContentReader.Chunk chunk = reader.read(CONTENT_PATH, 20, 0);
+
+        assertEquals("", chunk.content());
+        assertNull(chunk.nextOffset());
+        assertEquals(20, chunk.size());
+    }
+
+    @Test
+    void read_WithBinaryContent_Throws() {
+        stubResponse(new byte[] { 'P', 'K', 3, 4, 0, 0, 0, 0 }, HttpStatus.PARTIAL_CONTENT, "bytes 0-7/100");
+
+        assertThrows(IllegalArgumentException.class, () -> reader.read(CONTENT_PATH, 0, 0));
+    }
+}
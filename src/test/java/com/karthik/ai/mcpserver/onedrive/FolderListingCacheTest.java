@@ -0,0 +1,214 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.client.RestClient;
+
+class FolderListingCacheTest {
+
+    private static final String FOLDER = """
+        { "id": "docs", "cTag": "c:{1},1" }
+        """;
+
+    private static final String CHANGED_FOLDER = """
+        { "id": "docs", "cTag": "c:{1},2" }
+        """;
+
+    private static final String FOLDER_WITHOUT_CTAG = """
+        { "id": "docs", "eTag": "e:{1},4" }
+        """;
+
+    private static final String UNTAGGED_FOLDER = """
+        { "id": "docs" }
+        """;
+
+    private static final List<DriveItem> LISTING = List.of(
+            new DriveItem("f1", "resume.pdf", "https://example.com/resume.pdf", "", "/drive/root:/Documents",
+                    false, 0, "docs", false, false, "", ""));
+
+    @SuppressWarnings("rawtypes")
+    private RestClient.RequestHeadersUriSpec requestSpec;
+    private GraphClient graphClient;
+    private MutableClock clock;
+    private FolderListingCache cache;
+    private AtomicInteger loads;
+
+    @SuppressWarnings("unchecked")
+    @BeforeEach
+    void setUp() {
+        RestClient restClient = mock(RestClient.class);
+        requestSpec = mock(RestClient.RequestHeadersUriSpec.class);
+        when(restClient.get()).thenReturn(requestSpec);
+        when(requestSpec.uri(anyString())).thenReturn((RestClient.RequestHeadersSpec<?>) requestSpec);
+        when(requestSpec.uri(any(URI.class))).thenReturn((RestClient.RequestHeadersSpec<?>) requestSpec);
+        when(requestSpec.header(anyString(), anyString())).thenReturn((RestClient.RequestHeadersSpec<?>) requestSpec);
+        when(requestSpec.accept(any())).thenReturn((RestClient.RequestHeadersSpec<?>) requestSpec);
+
+        clock = new MutableClock(Instant.parse("2025-04-20T00:00:00Z"));
+        graphClient = new GraphClient(restClient, "test-token");
+        cache = new FolderListingCache(graphClient, true, Duration.ofSeconds(30), 2, clock);
+        loads = new AtomicInteger();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void get_WithinTtl_ServesFromMemory() throws IOException {
+        when(requestSpec.exchange(any(), eq(false))).thenReturn(response(FOLDER, HttpStatus.OK));
+
+        cache.get("Documents", "name", "/me/drive/root:/Documents", this::load);
+        List<DriveItem> cached = cache.get("/documents/", "name", "/me/drive/root:/Documents", this::load);
+
+        assertEquals(LISTING, cached);
+        assertEquals(1, loads.get());
+        assertEquals(new FolderListingCache.Stats(1, 1, 0, 1), cache.stats());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void get_AfterTtlWithUnchangedFolder_RevalidatesWith304() throws IOException {
+        when(requestSpec.exchange(any(), eq(false))).thenReturn(
+                response(FOLDER, HttpStatus.OK), response("", HttpStatus.NOT_MODIFIED));
+
+        cache.get("Documents", "name", "/me/drive/root:/Documents", this::load);
+        clock.advance(Duration.ofSeconds(31));
+        cache.get("Documents", "name", "/me/drive/root:/Documents", this::load);
+
+        assertEquals(1, loads.get());
+        assertEquals(new FolderListingCache.Stats(1, 1, 1, 1), cache.stats());
+        verify(requestSpec).header(HttpHeaders.IF_NONE_MATCH, "c:{1},1");
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void get_AfterTtlWithChangedFolder_Reloads() throws IOException {
+        when(requestSpec.exchange(any(), eq(false))).thenReturn(
+                response(FOLDER, HttpStatus.OK), response(CHANGED_FOLDER, HttpStatus.OK));
+
+        cache.get("Documents", "name", "/me/drive/root:/Documents", this::load);
+        clock.advance(Duration.ofSeconds(31));
+        cache.get("Documents", "name", "/me/drive/root:/Documents", this::load);
+
+        assertEquals(2, loads.get());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void get_AfterTtlWithoutCTag_RevalidatesWithETag() throws IOException {
+        when(requestSpec.exchange(any(), eq(false))).thenReturn(
+                response(FOLDER_WITHOUT_CTAG, HttpStatus.OK), response("", HttpStatus.NOT_MODIFIED));
+
+        cache.get("Documents", "name", "/me/drive/root:/Documents", this::load);
+        clock.advance(Duration.ofSeconds(31));
+        cache.get("Documents", "name", "/me/drive/root:/Documents", this::load);
+
+        assertEquals(1, loads.get());
+        assertEquals(new FolderListingCache.Stats(1, 1, 1, 1), cache.stats());
+        verify(requestSpec).header(HttpHeaders.IF_NONE_MATCH, "e:{1},4");
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void get_AfterTtlWithoutTags_ReloadsWithoutItemRequest() throws IOException {
+        when(requestSpec.exchange(any(), eq(false))).thenReturn(response(UNTAGGED_FOLDER, HttpStatus.OK));
+
+        cache.get("Documents", "name", "/me/drive/root:/Documents", this::load);
+        clock.advance(Duration.ofSeconds(31));
+        cache.get("Documents", "name", "/me/drive/root:/Documents", this::load);
+
+        assertEquals(2, loads.get());
+        verify(requestSpec, times(1)).exchange(any(), eq(false));
+        verify(requestSpec, never()).header(eq(HttpHeaders.IF_NONE_MATCH), anyString());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void get_BeyondMaxEntries_EvictsLeastRecentlyUsed() throws IOException {
+        when(requestSpec.exchange(any(), eq(false))).thenReturn(
+                response(FOLDER, HttpStatus.OK), response(FOLDER, HttpStatus.OK),
+                response(FOLDER, HttpStatus.OK), response(FOLDER, HttpStatus.OK));
+
+        cache.get("A", "name", "/me/drive/root:/A", this::load);
+        cache.get("B", "name", "/me/drive/root:/B", this::load);
+        cache.get("A", "name", "/me/drive/root:/A", this::load);
+        cache.get("C", "name", "/me/drive/root:/C", this::load);
+        cache.get("B", "name", "/me/drive/root:/B", this::load);
+
+        assertEquals(4, loads.get());
+        assertEquals(2, cache.stats().size());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void get_WithRestoredListing_ServesItAndRevalidates(@TempDir Path dir) throws IOException {
+        String store = dir.resolve("metadata.log").toString();
+        MetadataStore previousRun = new MetadataStore(true, store, 1 << 20, "drive-root-id");
+        previousRun.append("documents|name", "c:{1},1", LISTING);
+        previousRun.destroy();
+        when(requestSpec.exchange(any(), eq(false))).thenReturn(response("", HttpStatus.NOT_MODIFIED));
+
+        FolderListingCache restarted = new FolderListingCache(graphClient, true, Duration.ofSeconds(30), 2, clock,
+                new MetadataStore(true, store, 1 << 20, "drive-root-id"), Runnable::run);
+        List<DriveItem> restored = restarted.get("Documents", "name", "/me/drive/root:/Documents", this::load);
+
+        assertEquals(LISTING, restored);
+        assertEquals(0, loads.get());
+        assertEquals(new FolderListingCache.Stats(1, 0, 1, 1), restarted.stats());
+        verify(requestSpec).header(HttpHeaders.IF_NONE_MATCH, "c:{1},1");
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void get_WithRestoredListingOfChangedFolder_ReloadsIt(@TempDir Path dir) throws IOException {
+        String store = dir.resolve("metadata.log").toString();
+        MetadataStore previousRun = new MetadataStore(true, store, 1 << 20, "drive-root-id");
+        previousRun.append("documents|name", "c:{1},1", List.of());
+        previousRun.destroy();
+        when(requestSpec.exchange(any(), eq(false))).thenReturn(response(CHANGED_FOLDER, HttpStatus.OK));
+
+        FolderListingCache restarted = new FolderListingCache(graphClient, true, Duration.ofSeconds(30), 2, clock,
+                new MetadataStore(true, store, 1 << 20, "drive-root-id"), Runnable::run);
+        List<DriveItem> restored = restarted.get("Documents", "name", "/me/drive/root:/Documents", this::load);
+        List<DriveItem> reloaded = restarted.get("Documents", "name", "/me/drive/root:/Documents", this::load);
+
+        assertEquals(List.of(), restored);
+        assertEquals(LISTING, reloaded);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void normalize_IgnoresCaseAndRedundantSlashes() {
+        assertEquals("documents/bills", FolderListingCache.normalize("/Documents//Bills/"));
+        assertEquals("", FolderListingCache.normalize(null));
+    }
+
+    private List<DriveItem> load() {
+        loads.incrementAndGet();
+        return LISTING;
+    }
+
+    private static MockClientHttpResponse response(String body, HttpStatus status) {
+        return new MockClientHttpResponse(body.getBytes(StandardCharsets.UTF_8), status);
+    }
+}
@@ -0,0 +1,177 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.ResourceAccessException;
+
+class FolderPrefetcherTest {
+
+    private MutableClock clock;
+    private AtomicBoolean headroom;
+    private List<String> listedPaths;
+    private List<DriveItem> childListing;
+    private FolderPrefetcher prefetcher;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2025-01-01T00:00:00Z"));
+        headroom = new AtomicBoolean(true);
+        listedPaths = new ArrayList<>();
+        childListing = List.of(file("notes.txt"));
+        prefetcher = new FolderPrefetcher(true, 2, Duration.ofSeconds(15), 64, 2, headroom::get, clock,
+                Runnable::run);
+    }
+
+    private static DriveItem folder(String name, int childCount) {
+        return new DriveItem(name, name, "https://example.com/" + name, "", "/drive/root:/Documents", true,
+                childCount, "parent", false, false, null, null);
+    }
+
+    private static DriveItem file(String name) {
+        return new DriveItem(name, name, "https://example.com/" + name, "txt", "/drive/root:/Documents", false, 0,
+                "parent", false, false, null, null);
+    }
+
+    private List<DriveItem> list(String folderPath) {
+        listedPaths.add(folderPath);
+        return childListing;
+    }
+
+    @Test
+    void prefetch_RanksRecentlyListedThenLargestSubfolders() {
+        prefetcher.take("Documents/Archive");
+
+        prefetcher.prefetch("Documents", List.of(folder("Archive", 1), folder("Bills", 10), folder("Empty", 0),
+                folder("Resume", 5), file("todo.txt")), this::list);
+
+        assertEquals(List.of("Documents/Archive", "Documents/Bills"), listedPaths);
+        assertEquals(2, prefetcher.stats().sent());
+        assertEquals(2, prefetcher.stats().size());
+    }
+
+    @Test
+    void take_AfterPrefetch_HandsOutListingOnce() {
+        prefetcher.prefetch("Documents", List.of(folder("Bills", 3)), this::list);
+
+        assertSame(childListing, prefetcher.take("documents/bills/"));
+        assertNull(prefetcher.take("Documents/Bills"));
+        assertEquals(1, prefetcher.stats().hits());
+    }
+
+    @Test
+    void take_AfterTtl_CountsListingAsWasted() {
+        prefetcher.prefetch("Documents", List.of(folder("Bills", 3)), this::list);
+        clock.advance(Duration.ofSeconds(16));
+
+        assertNull(prefetcher.take("Documents/Bills"));
+        assertEquals(0, prefetcher.stats().hits());
+        assertEquals(1, prefetcher.stats().wasted());
+    }
+
+    @Test
+    void prefetch_AlreadyPrefetchedFolder_IsNotListedAgain() {
+        prefetcher.prefetch("Documents", List.of(folder("Bills", 3)), this::list);
+        prefetcher.prefetch("Documents", List.of(folder("Bills", 3)), this::list);
+
+        assertEquals(1, listedPaths.size());
+    }
+
+    @Test
+    void prefetch_WithoutHeadroom_SkipsListing() {
+        headroom.set(false);
+
+        prefetcher.prefetch("Documents", List.of(folder("Bills", 3), folder("Resume", 2)), this::list);
+
+        assertTrue(listedPaths.isEmpty());
+        assertEquals(2, prefetcher.stats().skipped());
+        assertEquals(0, prefetcher.stats().sent());
+    }
+
+    @Test
+    void checkHeadroom_OnceHeadroomRunsOut_InterruptsRunningPrefetch() throws InterruptedException {
+        prefetcher = new FolderPrefetcher(true, 2, Duration.ofSeconds(15), 64, 2, headroom::get, clock,
+                command -> Thread.ofVirtual().start(command));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch stopped = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        prefetcher.prefetch("Documents", List.of(folder("Bills", 3)), folderPath -> {
+            started.countDown();
+            try {
+                new CountDownLatch(1).await();
+                return childListing;
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("prefetch cancelled");
+            } finally {
+                stopped.countDown();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        prefetcher.checkHeadroom();
+        assertEquals(0, prefetcher.stats().cancelled());
+
+        headroom.set(false);
+        prefetcher.checkHeadroom();
+
+        assertTrue(stopped.await(5, TimeUnit.SECONDS));
+        assertTrue(interrupted.get());
+        assertEquals(1, prefetcher.stats().cancelled());
+        assertNull(prefetcher.take("Documents/Bills"));
+    }
+
+    @Test
+    void checkHeadroom_CancelledPrefetch_LeavesBreakerClosed() throws InterruptedException {
+        GraphRequestScheduler scheduler = new GraphRequestScheduler(0, Duration.ofSeconds(1), Duration.ofSeconds(30),
+                0, 1, Duration.ofSeconds(5), 1, Duration.ofSeconds(30), clock, duration -> clock.advance(duration));
+        prefetcher = new FolderPrefetcher(true, 2, Duration.ofSeconds(15), 64, 2,
+                () -> headroom.get() && scheduler.hasHeadroom(), clock, command -> Thread.ofVirtual().start(command));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch stopped = new CountDownLatch(1);
+        prefetcher.prefetch("Documents", List.of(folder("Bills", 3)), folderPath -> scheduler.execute(() -> {
+            started.countDown();
+            try {
+                new CountDownLatch(1).await();
+                return childListing;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ResourceAccessException("I/O error: Closed by interrupt");
+            } finally {
+                stopped.countDown();
+            }
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        headroom.set(false);
+        prefetcher.checkHeadroom();
+
+        assertTrue(stopped.await(5, TimeUnit.SECONDS));
+        assertEquals(1, prefetcher.stats().cancelled());
+        assertEquals(GraphRequestScheduler.State.CLOSED, scheduler.stats().state());
+        assertTrue(scheduler.hasHeadroom());
+    }
+
+    @Test
+    void disabled_NeverPrefetches() {
+        FolderPrefetcher disabled = FolderPrefetcher.disabled();
+
+        disabled.prefetch("Documents", List.of(folder("Bills", 3)), this::list);
+
+        assertTrue(listedPaths.isEmpty());
+        assertNull(disabled.take("Documents/Bills"));
+    }
+}
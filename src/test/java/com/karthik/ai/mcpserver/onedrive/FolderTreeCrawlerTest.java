@@ -0,0 +1,92 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class FolderTreeCrawlerTest {
+
+    private static final Map<String, List<DriveItem>> DRIVE = Map.of(
+            "Documents", List.of(folder("Bills", 2), folder("Photos", 1), file("resume.pdf")),
+            "Documents/Bills", List.of(file("water.pdf"), folder("2024", 1)),
+            "Documents/Bills/2024", List.of(file("january.pdf")),
+            "Documents/Photos", List.of(file("cat.jpg")));
+
+    @Test
+    void crawl_ExpandsSubfoldersDownToMaxDepth() throws Exception {
+        FolderTreeCrawler crawler = new FolderTreeCrawler(4);
+
+        FolderTreeCrawler.Tree tree = crawler.crawl("Documents", 2, 100, DRIVE::get);
+
+        assertFalse(tree.truncated());
+        assertEquals(3, tree.items().size());
+        FolderTreeCrawler.Node bills = tree.items().get(0);
+        assertEquals(List.of("water.pdf", "2024"), bills.children().stream().map(node -> node.item().name()).toList());
+        // depth 2 expands Bills but not Bills/2024
+        assertTrue(bills.children().get(1).children().isEmpty());
+    }
+
+    @Test
+    void crawl_StopsOnceMaxItemsIsReached() throws Exception {
+        FolderTreeCrawler crawler = new FolderTreeCrawler(4);
+        AtomicInteger listings = new AtomicInteger();
+
+        FolderTreeCrawler.Tree tree = crawler.crawl("Documents", 5, 2, path -> {
+            listings.incrementAndGet();
+            return DRIVE.get(path);
+        });
+
+        assertTrue(tree.truncated());
+        assertEquals(2, tree.items().size());
+        assertEquals(1, listings.get());
+    }
+
+    @Test
+    void crawl_NeverExceedsMaxConcurrency() throws Exception {
+        FolderTreeCrawler crawler = new FolderTreeCrawler(1);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+
+        crawler.crawl("Documents", 5, 100, path -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            return DRIVE.get(path);
+        });
+
+        assertEquals(1, maxInFlight.get());
+    }
+
+    @Test
+    void crawl_RecordsFailedSubfolderOnItsNode() throws Exception {
+        FolderTreeCrawler crawler = new FolderTreeCrawler(4);
+
+        FolderTreeCrawler.Tree tree = crawler.crawl("Documents", 2, 100, path -> {
+            if (path.equals("Documents/Photos")) {
+                throw new IOException("boom");
+            }
+            return DRIVE.get(path);
+        });
+
+        assertEquals("boom", tree.items().get(1).error().get());
+        assertEquals(2, tree.items().get(0).children().size());
+    }
+
+    private static DriveItem folder(String name, int childCount) {
+        return new DriveItem(name, name, "", "", "", true, childCount, "", false, false, "", "");
+    }
+
+    private static DriveItem file(String name) {
+        return new DriveItem(name, name, "", "", "", false, 0, "", false, false, "", "");
+    }
+}
@@ -0,0 +1,71 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+class GraphHttpClientFactoryTest {
+
+    @Test
+    void pooledClient_ReportsConfiguredPoolSize() throws IOException {
+        GraphHttpClientFactory factory = factory("pooled");
+        try {
+            GraphHttpClientFactory.ConnectionStats stats = factory.stats();
+
+            assertEquals(0, stats.inFlight());
+            assertEquals(0, stats.leased());
+            assertEquals(10, stats.max());
+        } finally {
+            factory.destroy();
+        }
+    }
+
+    @Test
+    void jdkClient_HasNoPoolStats() throws IOException {
+        GraphHttpClientFactory factory = factory("jdk");
+        try {
+            assertEquals(-1, factory.stats().max());
+        } finally {
+            factory.destroy();
+        }
+    }
+
+    @Test
+    void unknownClient_IsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> factory("netty"));
+    }
+
+    @Test
+    void decompressGzip_RequestsGzipAndDecodesBody() throws IOException {
+        byte[] json = "{\"value\":[]}".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(json);
+        }
+        MockClientHttpResponse gzipped = new MockClientHttpResponse(compressed.toByteArray(), HttpStatus.OK);
+        gzipped.getHeaders().set(HttpHeaders.CONTENT_ENCODING, "gzip");
+        MockClientHttpRequest request = new MockClientHttpRequest();
+
+        ClientHttpResponse response = GraphHttpClientFactory.decompressGzip(request, new byte[0],
+                (executedRequest, body) -> gzipped);
+
+        assertEquals("gzip", request.getHeaders().getFirst(HttpHeaders.ACCEPT_ENCODING));
+        assertEquals("{\"value\":[]}", new String(response.getBody().readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    private static GraphHttpClientFactory factory(String client) {
+        return new GraphHttpClientFactory("https://graph.microsoft.com/v1.0", client, Duration.ofSeconds(1), Duration.ofSeconds(5), Duration.ofSeconds(1),
+                10, 5, Duration.ofMinutes(1), Duration.ofSeconds(30));
+    }
+}
@@ -0,0 +1,241 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+
+import reactor.core.publisher.Mono;
+
+class GraphRequestSchedulerTest {
+
+    private MutableClock clock;
+    private List<Duration> sleeps;
+    private AtomicInteger calls;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2025-04-20T00:00:00Z"));
+        sleeps = new ArrayList<>();
+        calls = new AtomicInteger();
+    }
+
+    @Test
+    void throttledRequest_IsRetriedAfterRetryAfter() {
+        GraphRequestScheduler scheduler = scheduler(3, 0, 5);
+        ClientHttpResponse ok = new MockClientHttpResponse(new byte[0], HttpStatus.OK);
+
+        ClientHttpResponse response = scheduler.execute(() -> {
+            if (calls.getAndIncrement() == 0) {
+                throw failure(429, "2");
+            }
+            return ok;
+        });
+
+        assertSame(ok, response);
+        assertEquals(2, calls.get());
+        long slept = sleeps.stream().mapToLong(Duration::toMillis).sum();
+        assertTrue(slept >= 2000 && slept <= 2200, "slept " + slept + "ms");
+        assertEquals(1, scheduler.stats().throttled());
+        assertEquals(1, scheduler.stats().retries());
+    }
+
+    @Test
+    void unavailable_GivesUpAfterMaxRetries() {
+        GraphRequestScheduler scheduler = scheduler(2, 0, 10);
+
+        RestClientResponseException error = assertThrows(RestClientResponseException.class,
+                () -> scheduler.execute(() -> {
+                    calls.incrementAndGet();
+                    throw failure(503, null);
+                }));
+
+        assertEquals(503, error.getStatusCode().value());
+        assertEquals(3, calls.get());
+        // jittered backoff stays within [cap / 2, cap] of 1s, then 2s
+        assertEquals(2, sleeps.size());
+        assertTrue(sleeps.get(0).toMillis() >= 500 && sleeps.get(0).toMillis() <= 1000);
+        assertTrue(sleeps.get(1).toMillis() >= 1000 && sleeps.get(1).toMillis() <= 2000);
+    }
+
+    @Test
+    void clientError_IsNotRetried() {
+        GraphRequestScheduler scheduler = scheduler(3, 0, 5);
+
+        assertThrows(RestClientResponseException.class, () -> scheduler.execute(() -> {
+            calls.incrementAndGet();
+            throw failure(404, null);
+        }));
+
+        assertEquals(1, calls.get());
+        assertTrue(sleeps.isEmpty());
+    }
+
+    @Test
+    void retryAfterBeyondMaxWait_FailsFastAndPausesOtherRequests() {
+        GraphRequestScheduler scheduler = scheduler(3, 0, 5);
+
+        assertThrows(RestClientResponseException.class, () -> scheduler.execute(() -> {
+            calls.incrementAndGet();
+            throw failure(429, "60");
+        }));
+        assertEquals(1, calls.get());
+
+        GraphRequestScheduler.RejectedException rejected = assertThrows(GraphRequestScheduler.RejectedException.class,
+                () -> scheduler.execute(() -> {
+                    calls.incrementAndGet();
+                    return new MockClientHttpResponse(new byte[0], HttpStatus.OK);
+                }));
+        assertTrue(rejected.getMessage().startsWith("Graph is throttling requests"), rejected.getMessage());
+        assertEquals(1, calls.get());
+        assertTrue(sleeps.isEmpty());
+    }
+
+    @Test
+    void tokenBucket_WaitsForRefillOnceBurstIsSpent() {
+        GraphRequestScheduler scheduler = new GraphRequestScheduler(0, Duration.ofSeconds(1), Duration.ofSeconds(30),
+                1, 2, Duration.ofSeconds(10), 0, Duration.ofSeconds(30), clock, this::sleep);
+
+        for (int i = 0; i < 3; i++) {
+            scheduler.execute(() -> new MockClientHttpResponse(new byte[0], HttpStatus.OK));
+        }
+
+        assertEquals(List.of(Duration.ofSeconds(1)), sleeps);
+    }
+
+    @Test
+    void breaker_OpensAfterSustainedFailuresAndClosesOnSuccessfulProbe() {
+        GraphRequestScheduler scheduler = scheduler(0, 2, 5);
+        for (int i = 0; i < 2; i++) {
+            assertThrows(RestClientResponseException.class, () -> scheduler.execute(() -> {
+                calls.incrementAndGet();
+                throw failure(500, null);
+            }));
+        }
+        assertEquals(GraphRequestScheduler.State.OPEN, scheduler.stats().state());
+
+        GraphRequestScheduler.RejectedException rejected = assertThrows(GraphRequestScheduler.RejectedException.class,
+                () -> scheduler.execute(() -> {
+                    calls.incrementAndGet();
+                    return new MockClientHttpResponse(new byte[0], HttpStatus.OK);
+                }));
+        assertTrue(rejected.getMessage().contains("retry in 30s"), rejected.getMessage());
+        assertEquals(2, calls.get());
+
+        clock.advance(Duration.ofSeconds(30));
+        scheduler.execute(() -> new MockClientHttpResponse(new byte[0], HttpStatus.OK));
+
+        assertEquals(GraphRequestScheduler.State.CLOSED, scheduler.stats().state());
+        assertEquals(1, scheduler.stats().rejected());
+    }
+
+    @Test
+    void breaker_ProbeRejectedByPause_LetsLaterProbeThrough() {
+        GraphRequestScheduler scheduler = scheduler(0, 1, 5);
+        assertThrows(RestClientResponseException.class, () -> scheduler.execute(() -> {
+            throw failure(429, "60");
+        }));
+        assertEquals(GraphRequestScheduler.State.OPEN, scheduler.stats().state());
+
+        // the probe is admitted, then turned away by the Retry-After pause before it is sent
+        clock.advance(Duration.ofSeconds(30));
+        GraphRequestScheduler.RejectedException rejected = assertThrows(GraphRequestScheduler.RejectedException.class,
+                () -> scheduler.execute(() -> {
+                    calls.incrementAndGet();
+                    return new MockClientHttpResponse(new byte[0], HttpStatus.OK);
+                }));
+        assertTrue(rejected.getMessage().startsWith("Graph is throttling requests"), rejected.getMessage());
+        assertEquals(0, calls.get());
+
+        clock.advance(Duration.ofSeconds(40));
+        scheduler.execute(() -> new MockClientHttpResponse(new byte[0], HttpStatus.OK));
+
+        assertEquals(GraphRequestScheduler.State.CLOSED, scheduler.stats().state());
+    }
+
+    @Test
+    void executeAsync_ProbeRejectedByPause_LetsLaterProbeThrough() {
+        GraphRequestScheduler scheduler = scheduler(0, 1, 5);
+        assertThrows(RestClientResponseException.class,
+                () -> scheduler.executeAsync(() -> Mono.<String>error(failure(429, "60"))).block());
+
+        clock.advance(Duration.ofSeconds(30));
+        assertThrows(GraphRequestScheduler.RejectedException.class,
+                () -> scheduler.executeAsync(() -> Mono.just("ok")).block());
+
+        clock.advance(Duration.ofSeconds(40));
+        assertEquals("ok", scheduler.executeAsync(() -> Mono.just("ok")).block(Duration.ofSeconds(5)));
+        assertEquals(GraphRequestScheduler.State.CLOSED, scheduler.stats().state());
+    }
+
+    @Test
+    void interruptedRequest_DoesNotCountAgainstBreaker() {
+        GraphRequestScheduler scheduler = scheduler(0, 1, 5);
+
+        try {
+            assertThrows(ResourceAccessException.class, () -> scheduler.execute(() -> {
+                Thread.currentThread().interrupt();
+                throw new ResourceAccessException("I/O error: Closed by interrupt");
+            }));
+        } finally {
+            Thread.interrupted();
+        }
+        assertEquals(GraphRequestScheduler.State.CLOSED, scheduler.stats().state());
+
+        assertThrows(ResourceAccessException.class, () -> scheduler.execute(() -> {
+            throw new ResourceAccessException("I/O error: Connection reset");
+        }));
+        assertEquals(GraphRequestScheduler.State.OPEN, scheduler.stats().state());
+    }
+
+    @Test
+    void executeAsync_RetriesWithoutBlocking() {
+        GraphRequestScheduler scheduler = new GraphRequestScheduler(3, Duration.ofMillis(10), Duration.ofMillis(20),
+                0, 1, Duration.ofSeconds(5), 0, Duration.ofSeconds(30), clock, this::sleep);
+
+        String result = scheduler.executeAsync(() -> calls.getAndIncrement() == 0
+                ? Mono.<String>error(failure(503, null))
+                : Mono.just("ok")).block(Duration.ofSeconds(5));
+
+        assertEquals("ok", result);
+        assertEquals(2, calls.get());
+        // the backoff ran on a timer, not through the sleeper
+        assertTrue(sleeps.isEmpty());
+        assertEquals(1, scheduler.stats().retries());
+    }
+
+    private GraphRequestScheduler scheduler(int maxRetries, int failureThreshold, int maxWaitSeconds) {
+        return new GraphRequestScheduler(maxRetries, Duration.ofSeconds(1), Duration.ofSeconds(30), 0, 1,
+                Duration.ofSeconds(maxWaitSeconds), failureThreshold, Duration.ofSeconds(30), clock, this::sleep);
+    }
+
+    private void sleep(Duration duration) {
+        sleeps.add(duration);
+        clock.advance(duration);
+    }
+
+    private static RestClientResponseException failure(int status, String retryAfter) {
+        HttpHeaders headers = new HttpHeaders();
+        if (retryAfter != null) {
+            headers.set(HttpHeaders.RETRY_AFTER, retryAfter);
+        }
+        return new RestClientResponseException("Graph request failed with " + status, HttpStatusCode.valueOf(status),
+                "", headers, new byte[0], StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,144 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import org.springframework.web.client.ResourceAccessException;
+
+class MetadataStoreTest {
+
+    private static final String DRIVE = "drive-root-id";
+
+    @TempDir
+    Path dir;
+
+    private String file;
+
+    @BeforeEach
+    void setUp() {
+        file = dir.resolve("store/metadata.log").toString();
+    }
+
+    @Test
+    void restored_AfterRestart_HasLatestListingOfEachFolder() throws IOException {
+        MetadataStore store = new MetadataStore(true, file, 1 << 20, DRIVE);
+        store.append("documents|name", "c:{1},1", List.of(item("a")));
+        store.append("pictures|name", null, List.of(item("p")));
+        store.append("documents|name", "c:{1},2", List.of(item("b")));
+        store.destroy();
+
+        List<MetadataStore.Listing> restored = new MetadataStore(true, file, 1 << 20, DRIVE).restored();
+
+        assertEquals(List.of(new MetadataStore.Listing("pictures|name", null, List.of(item("p"))),
+                new MetadataStore.Listing("documents|name", "c:{1},2", List.of(item("b")))), restored);
+    }
+
+    @Test
+    void restored_WithTornLastRecord_KeepsRecordsBefore() throws IOException {
+        MetadataStore store = new MetadataStore(true, file, 1 << 20, DRIVE);
+        store.append("documents|name", "c", List.of(item("a")));
+        store.append("pictures|name", "c", List.of(item("p")));
+        store.destroy();
+        byte[] bytes = Files.readAllBytes(Path.of(file));
+        Files.write(Path.of(file), Arrays.copyOf(bytes, bytes.length - 3));
+
+        MetadataStore rebuilt = new MetadataStore(true, file, 1 << 20, DRIVE);
+
+        assertEquals(List.of("documents|name"), rebuilt.restored().stream().map(MetadataStore.Listing::key).toList());
+        assertEquals(Files.size(Path.of(file)), rebuilt.size());
+    }
+
+    @Test
+    void restored_WithForeignFile_StartsOver() throws IOException {
+        Files.createDirectories(Path.of(file).getParent());
+        Files.writeString(Path.of(file), "not a metadata store");
+
+        MetadataStore rebuilt = new MetadataStore(true, file, 1 << 20, DRIVE);
+        rebuilt.append("documents|name", "c", List.of(item("a")));
+        rebuilt.destroy();
+
+        assertEquals(1, new MetadataStore(true, file, 1 << 20, DRIVE).restored().size());
+    }
+
+    @Test
+    void append_BeyondMaxBytes_DropsOldestListings() throws IOException {
+        MetadataStore store = new MetadataStore(true, file, 4096, DRIVE);
+        for (int i = 0; i < 200; i++) {
+            store.append("folder" + i + "|name", "c", List.of(item("a" + i)));
+        }
+        store.destroy();
+
+        assertTrue(Files.size(Path.of(file)) <= 4096);
+        List<MetadataStore.Listing> restored = new MetadataStore(true, file, 4096, DRIVE).restored();
+        assertEquals("folder199|name", restored.get(restored.size() - 1).key());
+        assertTrue(restored.size() < 200);
+    }
+
+    @Test
+    void restored_WhenDisabled_IsEmpty() throws IOException {
+        MetadataStore store = new MetadataStore(true, file, 1 << 20, DRIVE);
+        store.append("documents|name", "c", List.of(item("a")));
+        store.destroy();
+
+        assertEquals(List.of(), new MetadataStore(false, file, 1 << 20, DRIVE).restored());
+    }
+
+    @Test
+    void restored_AfterRestart_KeepsEveryItemField() throws IOException {
+        DriveItem item = new DriveItem("b-id", "Bills", "https://example.com/Bills", "", "/drive/root:/Documents", true, 3,
+                "docs-id", false, true, "e", "c", "2025-04-20T10:00:00Z", "b!drive");
+        MetadataStore store = new MetadataStore(true, file, 1 << 20, DRIVE);
+        store.append("documents|name", "c", List.of(item));
+        store.destroy();
+
+        assertEquals(List.of(item), new MetadataStore(true, file, 1 << 20, DRIVE).restored().get(0).items());
+    }
+
+    @Test
+    void restored_OfAnotherDrive_DiscardsLog() throws IOException {
+        MetadataStore store = new MetadataStore(true, file, 1 << 20, DRIVE);
+        store.append("documents|name", "c", List.of(item("a")));
+        store.destroy();
+
+        MetadataStore otherDrive = new MetadataStore(true, file, 1 << 20, "other-root-id");
+        otherDrive.append("pictures|name", "c", List.of(item("p")));
+        otherDrive.destroy();
+
+        assertEquals(List.of("pictures|name"), new MetadataStore(true, file, 1 << 20, "other-root-id").restored()
+                .stream().map(MetadataStore.Listing::key).toList());
+        assertEquals(List.of(), new MetadataStore(true, file, 1 << 20, DRIVE).restored());
+    }
+
+    @Test
+    void restored_WhenDriveCannotBeIdentified_LeavesLogAlone() throws IOException {
+        MetadataStore store = new MetadataStore(true, file, 1 << 20, DRIVE);
+        store.append("documents|name", "c", List.of(item("a")));
+        store.destroy();
+        GraphClient graphClient = mock(GraphClient.class);
+        when(graphClient.open(anyString())).thenThrow(new ResourceAccessException("I/O error: Connection refused"));
+
+        MetadataStore offline = new MetadataStore(true, file, 1 << 20, graphClient);
+        offline.append("pictures|name", "c", List.of(item("p")));
+        offline.destroy();
+
+        assertEquals(List.of(), offline.restored());
+        assertEquals(List.of("documents|name"), new MetadataStore(true, file, 1 << 20, DRIVE).restored().stream()
+                .map(MetadataStore.Listing::key).toList());
+    }
+
+    private static DriveItem item(String name) {
+        return new DriveItem(name + "-id", name, "https://example.com/" + name, "pdf", "/drive/root:/Documents", false, 0,
+                "docs-id", false, false, "e", "c");
+    }
+}
@@ -6,7 +6,8 @@ import org.springframework.test.context.TestPropertySource;
 
 @SpringBootTest
 @TestPropertySource(properties = {
-    "MICROSOFT_ONEDRIVE_ACCESS_TOKEN=test-token"
+    "MICROSOFT_ONEDRIVE_ACCESS_TOKEN=test-token",
+    "onedrive.store.enabled=false"
 })
 class OnedriveMcpServerApplicationTests {
 
@@ -0,0 +1,83 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class OnedriveMetricsTest {
+
+    private SimpleMeterRegistry registry;
+    private OnedriveMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        metrics = new OnedriveMetrics(registry);
+    }
+
+    @Test
+    void endpoint_IgnoresPathsAndIds() {
+        assertEquals("search", OnedriveMetrics.endpoint(URI.create(
+                "https://graph.microsoft.com/v1.0/me/drive/root:/Documents:/search(q='resume')?$top=200")));
+        assertEquals("children", OnedriveMetrics.endpoint(URI.create(
+                "https://graph.microsoft.com/v1.0/me/drive/root:/Documents%2FBills:/children?$top=200")));
+        assertEquals("children", OnedriveMetrics.endpoint(URI.create(
+                "https://graph.microsoft.com/v1.0/drives/abc/items/123/children?$skiptoken=x")));
+        assertEquals("delta", OnedriveMetrics.endpoint(URI.create(
+                "https://graph.microsoft.com/v1.0/me/drive/root/delta?token=abc")));
+        assertEquals("batch", OnedriveMetrics.endpoint(URI.create("https://graph.microsoft.com/v1.0/$batch")));
+        assertEquals("item", OnedriveMetrics.endpoint(URI.create(
+                "https://graph.microsoft.com/v1.0/me/drive/root:/Documents?$select=id,cTag")));
+    }
+
+    @Test
+    void intercept_RecordsStatusAndBytesRead() throws IOException {
+        MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.GET,
+                URI.create("https://graph.microsoft.com/v1.0/me/drive/root/children?$top=200"));
+        byte[] body = "{\"value\":[]}".getBytes(StandardCharsets.UTF_8);
+
+        ClientHttpResponse response = metrics.intercept(request, new byte[0],
+                (executed, requestBody) -> new MockClientHttpResponse(body, HttpStatus.OK));
+        response.getBody().readAllBytes();
+        response.close();
+
+        assertEquals(1, registry.get("onedrive.graph.requests")
+                .tags("endpoint", "children", "method", "GET", "status", "200").timer().count());
+        assertEquals(body.length, registry.get("onedrive.graph.response.size")
+                .tag("endpoint", "children").summary().totalAmount());
+    }
+
+    @Test
+    void timedTools_RecordOutcome() {
+        ToolDefinition definition = mock(ToolDefinition.class);
+        when(definition.name()).thenReturn("searchFiles");
+        ToolCallback callback = mock(ToolCallback.class);
+        when(callback.getToolDefinition()).thenReturn(definition);
+        when(callback.call("{\"fileName\":\"a\"}")).thenReturn("\"[]\"");
+        when(callback.call("{\"fileName\":\"b\"}")).thenReturn("\"Error searching files: API Error\"");
+
+        ToolCallback timed = metrics.timed(() -> new ToolCallback[] {callback}).getToolCallbacks()[0];
+        timed.call("{\"fileName\":\"a\"}");
+        timed.call("{\"fileName\":\"b\"}");
+
+        assertEquals(1, registry.get("onedrive.tool.calls").tags("tool", "searchFiles", "outcome", "success")
+                .timer().count());
+        assertEquals(1, registry.get("onedrive.tool.calls").tags("tool", "searchFiles", "outcome", "error")
+                .timer().count());
+    }
+}
@@ -1,39 +1,79 @@
 package com.karthik.ai.mcpserver.onedrive;
 
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpResponse;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.client.RestClient;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 class OnedriveServiceTest {
 
     private RestClient restClient;
-    private RestClient.ResponseSpec responseSpec;
+    @SuppressWarnings("rawtypes")
+    private RestClient.RequestHeadersUriSpec requestSpec;
+    private PathIdTrie pathIds;
     private OnedriveService onedriveService;
 
     @SuppressWarnings("unchecked")
     @BeforeEach
     void setUp() {
         restClient = mock(RestClient.class);
-        responseSpec = mock(RestClient.ResponseSpec.class);
-        onedriveService = new OnedriveService();
-        
-        ReflectionTestUtils.setField(onedriveService, "restClient", restClient);
-        ReflectionTestUtils.setField(onedriveService, "accessToken", "test-token");
+        GraphClient graphClient = new GraphClient(restClient, "test-token");
+        pathIds = new PathIdTrie(true, Duration.ofMinutes(10), 10000);
+        onedriveService = new OnedriveService(graphClient,
+                new DriveIndex(graphClient, false, Duration.ofMinutes(5)),
+                new FolderListingCache(graphClient, false, Duration.ofSeconds(30), 256),
+                new FolderTreeCrawler(4), new RequestCoalescer(), new OnedriveMetrics(new SimpleMeterRegistry()),
+                new ResultCursors(Duration.ofMinutes(5), 100), pathIds,
+                new FileContentReader(graphClient, 65536), FolderPrefetcher.disabled(), DriveExporter.disabled());
         
-        var requestSpec = mock(RestClient.RequestHeadersUriSpec.class);
+        requestSpec = mock(RestClient.RequestHeadersUriSpec.class);
         
         when(restClient.get()).thenReturn(requestSpec);
         when(requestSpec.uri(anyString())).thenReturn((RestClient.RequestHeadersSpec<?>) requestSpec);
+        when(requestSpec.uri(any(URI.class))).thenReturn((RestClient.RequestHeadersSpec<?>) requestSpec);
         when(requestSpec.header(anyString(), anyString())).thenReturn((RestClient.RequestHeadersSpec<?>) requestSpec);
         when(requestSpec.accept(any())).thenReturn((RestClient.RequestHeadersSpec<?>) requestSpec);
-        when(requestSpec.retrieve()).thenReturn(responseSpec);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubResponses(String firstBody, String... nextBodies) {
+        ClientHttpResponse[] next = new ClientHttpResponse[nextBodies.length];
+        for (int i = 0; i < nextBodies.length; i++) {
+            next[i] = jsonResponse(nextBodies[i]);
+        }
+        when(requestSpec.exchange(any(), eq(false))).thenReturn(jsonResponse(firstBody), (Object[]) next);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubError(RuntimeException error) {
+        when(requestSpec.exchange(any(), eq(false))).thenThrow(error);
+    }
+
+    private static ClientHttpResponse jsonResponse(String body) {
+        return new MockClientHttpResponse(body.getBytes(StandardCharsets.UTF_8), HttpStatus.OK);
     }
 
     @Test
@@ -48,7 +88,7 @@ class OnedriveServiceTest {
                 ]
             }
             """;
-        when(responseSpec.body(String.class)).thenReturn(expectedResponse);
+        stubResponses(expectedResponse);
 
         String result = onedriveService.searchFiles("resume", "Documents");
 
@@ -72,7 +112,8 @@ class OnedriveServiceTest {
                 ]
             }
             """;
-        when(responseSpec.body(String.class)).thenReturn(expectedResponse);
+        // one search per term
+        stubResponses(expectedResponse, expectedResponse);
 
         String result = onedriveService.searchFiles("resume ats", "Documents");
 
@@ -82,6 +123,39 @@ class OnedriveServiceTest {
         assertTrue(result.contains("https://example.com/ats.doc"));
     }
 
+    @Test
+    void searchFiles_WithSeveralTerms_SearchesEachAndRanksMergedResults() {
+        stubSearch("'resume'", """
+            { "value": [
+                { "id": "1", "name": "old resume draft.docx", "webUrl": "https://example.com/1", "lastModifiedDateTime": "2020-01-01T00:00:00Z" },
+                { "id": "2", "name": "resume.pdf", "webUrl": "https://example.com/2", "lastModifiedDateTime": "2021-01-01T00:00:00Z" }
+            ] }
+            """);
+        stubSearch("'ats'", """
+            { "value": [
+                { "id": "2", "name": "resume.pdf", "webUrl": "https://example.com/2", "lastModifiedDateTime": "2021-01-01T00:00:00Z" },
+                { "id": "3", "name": "ats checklist.txt", "webUrl": "https://example.com/3", "lastModifiedDateTime": "2024-01-01T00:00:00Z" }
+            ] }
+            """);
+
+        String result = onedriveService.searchFiles("resume OR ats", "Documents");
+
+        assertTrue(result.indexOf("resume.pdf") < result.indexOf("ats checklist.txt"));
+        assertTrue(result.indexOf("ats checklist.txt") < result.indexOf("old resume draft.docx"));
+        assertEquals(result.indexOf("resume.pdf"), result.lastIndexOf("resume.pdf"));
+        verify(requestSpec).uri(startsWith("/me/drive/root:/Documents:/search(q='resume')"));
+        verify(requestSpec).uri(startsWith("/me/drive/root:/Documents:/search(q='ats')"));
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private void stubSearch(String query, String body) {
+        RestClient.RequestHeadersSpec termSpec = mock(RestClient.RequestHeadersSpec.class);
+        when(requestSpec.uri(startsWith("/me/drive/root:/Documents:/search(q=" + query + ")"))).thenReturn(termSpec);
+        when(termSpec.header(anyString(), anyString())).thenReturn(termSpec);
+        when(termSpec.accept(any())).thenReturn(termSpec);
+        when(termSpec.exchange(any(), eq(false))).thenReturn(jsonResponse(body));
+    }
+
     @Test
     void searchFiles_WithNoResults_ReturnsEmptyList() {
         String expectedResponse = """
@@ -89,7 +163,7 @@ class OnedriveServiceTest {
                 "value": []
             }
             """;
-        when(responseSpec.body(String.class)).thenReturn(expectedResponse);
+        stubResponses(expectedResponse);
 
         String result = onedriveService.searchFiles("nonexistent", "Documents");
 
@@ -108,7 +182,7 @@ class OnedriveServiceTest {
                 ]
             }
             """;
-        when(responseSpec.body(String.class)).thenReturn(expectedResponse);
+        stubResponses(expectedResponse);
 
         String result = onedriveService.searchFiles("resume", null);
 
@@ -117,7 +191,7 @@ class OnedriveServiceTest {
 
     @Test
     void searchFiles_WithApiError_ReturnsErrorMessage() {
-        when(responseSpec.body(String.class)).thenThrow(new RuntimeException("API Error"));
+        stubError(new RuntimeException("API Error"));
 
         String result = onedriveService.searchFiles("resume", "Documents");
 
@@ -127,7 +201,7 @@ class OnedriveServiceTest {
 
     @Test
     void searchFiles_WithInvalidJsonResponse_HandlesError() {
-        when(responseSpec.body(String.class)).thenReturn("invalid json");
+        stubResponses("invalid json");
 
         String result = onedriveService.searchFiles("resume", "Documents");
 
@@ -152,7 +226,7 @@ class OnedriveServiceTest {
                 ]
             }
             """;
-        when(responseSpec.body(String.class)).thenReturn(expectedResponse);
+        stubResponses(expectedResponse);
 
         String result = onedriveService.searchFolderPath("Resume");
 
@@ -169,7 +243,7 @@ class OnedriveServiceTest {
                 "value": []
             }
             """;
-        when(responseSpec.body(String.class)).thenReturn(expectedResponse);
+        stubResponses(expectedResponse);
 
         String result = onedriveService.searchFolderPath("NonexistentFolder");
 
@@ -178,7 +252,7 @@ class OnedriveServiceTest {
 
     @Test
     void searchFolderPath_WithApiError_ReturnsErrorMessage() {
-        when(responseSpec.body(String.class)).thenThrow(new RuntimeException("API Error"));
+        stubError(new RuntimeException("API Error"));
 
         String result = onedriveService.searchFolderPath("Resume");
 
@@ -188,7 +262,7 @@ class OnedriveServiceTest {
 
     @Test
     void searchFolderPath_WithInvalidJsonResponse_HandlesError() {
-        when(responseSpec.body(String.class)).thenReturn("invalid json");
+        stubResponses("invalid json");
 
         String result = onedriveService.searchFolderPath("Resume");
 
@@ -223,7 +297,7 @@ class OnedriveServiceTest {
                 ]
             }
             """;
-        when(responseSpec.body(String.class)).thenReturn(expectedResponse);
+        stubResponses(expectedResponse);
 
         String result = onedriveService.searchFolderPath("Resume");
 
@@ -253,7 +327,7 @@ class OnedriveServiceTest {
                 ]
             }
             """;
-        when(responseSpec.body(String.class)).thenReturn(expectedResponse);
+        stubResponses(expectedResponse);
 
         String result = onedriveService.searchFolderPath("Resume & CV's");
 
@@ -289,7 +363,7 @@ class OnedriveServiceTest {
                 ]
             }
             """;
-        when(responseSpec.body(String.class)).thenReturn(expectedResponse);
+        stubResponses(expectedResponse);
 
         String result = onedriveService.listFolderContents("Documents");
 
@@ -317,7 +391,7 @@ class OnedriveServiceTest {
                 ]
             }
             """;
-        when(responseSpec.body(String.class)).thenReturn(expectedResponse);
+        stubResponses(expectedResponse);
 
         String result = onedriveService.listFolderContents("Documents/Resume");
 
@@ -333,7 +407,7 @@ class OnedriveServiceTest {
                 "value": []
             }
             """;
-        when(responseSpec.body(String.class)).thenReturn(expectedResponse);
+        stubResponses(expectedResponse);
 
         String result = onedriveService.listFolderContents("EmptyFolder");
 
@@ -358,7 +432,7 @@ class OnedriveServiceTest {
                 ]
             }
             """;
-        when(responseSpec.body(String.class)).thenReturn(expectedResponse);
+        stubResponses(expectedResponse);
 
         String result = onedriveService.listFolderContents(null);
 
@@ -370,11 +444,282 @@ class OnedriveServiceTest {
 
     @Test
     void listFolderContents_WithApiError_ReturnsErrorMessage() {
-        when(responseSpec.body(String.class)).thenThrow(new RuntimeException("API Error"));
+        stubError(new RuntimeException("API Error"));
 
         String result = onedriveService.listFolderContents("Documents");
 
         assertTrue(result.contains("Error listing folder contents:"));
         assertTrue(result.contains("API Error"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void listFolderContents_WithNextLink_FollowsPages() {
+        String firstPage = """
+            {
+                "value": [
+                    {
+                        "name": "page1.pdf",
+                        "webUrl": "https://example.com/page1.pdf",
+                        "file": {}
+                    }
+                ],
+                "@odata.nextLink": "https://graph.microsoft.com/v1.0/me/drive/root/children?$skiptoken=abc"
+            }
+            """;
+        String secondPage = """
+            {
+                "value": [
+                    {
+                        "name": "page2.pdf",
+                        "webUrl": "https://example.com/page2.pdf",
+                        "file": {}
+                    }
+                ]
+            }
+            """;
+        stubResponses(firstPage, secondPage);
+
+        String result = onedriveService.listFolderContents("Documents");
+
+        assertTrue(result.contains("page1.pdf"));
+        assertTrue(result.contains("page2.pdf"));
+        verify(requestSpec).uri(URI.create("https://graph.microsoft.com/v1.0/me/drive/root/children?$skiptoken=abc"));
+    }
+
+    @Test
+    void listFolderContents_WithMaxItemsReached_StopsPaging() {
+        ReflectionTestUtils.setField(onedriveService, "maxItems", 1);
+        String firstPage = """
+            {
+                "value": [
+                    {
+                        "name": "first.pdf",
+                        "webUrl": "https://example.com/first.pdf",
+                        "file": {}
+                    },
+                    {
+                        "name": "second.pdf",
+                        "webUrl": "https://example.com/second.pdf",
+                        "file": {}
+                    }
+                ],
+                "@odata.nextLink": "https://graph.microsoft.com/v1.0/me/drive/root/children?$skiptoken=abc"
+            }
+            """;
+        stubResponses(firstPage);
+
+        String result = onedriveService.listFolderContents("Documents");
+
+        assertTrue(result.contains("first.pdf"));
+        assertFalse(result.contains("second.pdf"));
+        verify(requestSpec, never()).uri(any(URI.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void listFolderContentsBatch_WithOneFailingPath_ReturnsPerPathResults() {
+        String batchResponse = """
+            {
+                "responses": [
+                    {
+                        "id": "1",
+                        "status": 404,
+                        "body": { "error": { "code": "itemNotFound", "message": "Item not found" } }
+                    },
+                    {
+                        "id": "0",
+                        "status": 200,
+                        "body": {
+                            "value": [
+                                {
+                                    "name": "bill.pdf",
+                                    "webUrl": "https://example.com/bill.pdf",
+                                    "file": {},
+                                    "parentReference": { "path": "/drive/root:/Documents/Bills" }
+                                }
+                            ]
+                        }
+                    }
+                ]
+            }
+            """;
+        var postSpec = mock(RestClient.RequestBodyUriSpec.class);
+        when(restClient.post()).thenReturn(postSpec);
+        when(postSpec.uri(anyString())).thenReturn(postSpec);
+        when(postSpec.contentType(any())).thenReturn(postSpec);
+        when(postSpec.body(any(Object.class))).thenReturn(postSpec);
+        when(postSpec.header(anyString(), anyString())).thenReturn(postSpec);
+        when(postSpec.accept(any())).thenReturn(postSpec);
+        when(postSpec.exchange(any(), eq(false))).thenReturn(jsonResponse(batchResponse));
+
+        String result = onedriveService.listFolderContentsBatch(List.of("Documents/Bills", "Missing"));
+
+        assertTrue(result.startsWith("[{\"folderPath\":\"Documents/Bills\",\"items\":[{\"name\":\"bill.pdf\""));
+        assertTrue(result.contains("{\"folderPath\":\"Missing\",\"error\":\"Graph request failed with 404: Item not found\"}"));
+        verify(restClient, never()).get();
+    }
+
+    @Test
+    void listFolderContents_WithLimit_ServesNextPageFromCursor() {
+        String expectedResponse = """
+            {
+                "value": [
+                    { "name": "a.pdf", "webUrl": "https://example.com/Documents/a.pdf", "file": {},
+                      "parentReference": { "path": "/drive/root:/Documents" } },
+                    { "name": "b.pdf", "webUrl": "https://example.com/Documents/b.pdf", "file": {},
+                      "parentReference": { "path": "/drive/root:/Documents" } },
+                    { "name": "c.pdf", "webUrl": "https://example.com/Documents/c.pdf", "file": {},
+                      "parentReference": { "path": "/drive/root:/Documents" } }
+                ]
+            }
+            """;
+        stubResponses(expectedResponse);
+
+        String first = onedriveService.listFolderContents("Documents", null, 2, null);
+
+        assertTrue(first.startsWith("{\"items\":[{\"name\":\"a.pdf\""));
+        assertTrue(first.contains("b.pdf"));
+        assertFalse(first.contains("c.pdf"));
+        assertTrue(first.contains("\"total\":3"));
+        String cursor = first.replaceAll(".*\"nextCursor\":\"([^\"]+)\".*", "$1");
+
+        String second = onedriveService.listFolderContents("Documents", null, null, cursor);
+
+        assertTrue(second.contains("c.pdf"));
+        assertFalse(second.contains("a.pdf"));
+        assertFalse(second.contains("nextCursor"));
+        verify(requestSpec).exchange(any(), eq(false));
+    }
+
+    @Test
+    void listFolderContents_WithUnknownCursor_ReturnsErrorMessage() {
+        String result = onedriveService.listFolderContents("Documents", null, null, "0123456789abcdef.2");
+
+        assertTrue(result.startsWith("Error listing folder contents: cursor has expired or is unknown"));
+        verify(restClient, never()).get();
+    }
+
+    @Test
+    void searchFiles_WithCompactFormat_FactorsOutSharedPrefixes() {
+        String expectedResponse = """
+            {
+                "value": [
+                    { "name": "resume.pdf", "webUrl": "https://example.com/Documents/resume.pdf",
+                      "parentReference": { "path": "/drive/root:/Documents" } },
+                    { "name": "old.pdf", "webUrl": "https://example.com/Documents/Archive/old.pdf",
+                      "parentReference": { "path": "/drive/root:/Documents/Archive" } }
+                ]
+            }
+            """;
+        stubResponses(expectedResponse);
+
+        String result = onedriveService.searchFiles("pdf", null, "compact", null, null);
+
+        assertEquals("{\"columns\":[\"name\",\"fileType\",\"path\",\"webUrl\"],"
+                + "\"pathPrefix\":\"/drive/root:/Documents\",\"webUrlPrefix\":\"https://example.com/Documents/\","
+                + "\"rows\":[[\"resume.pdf\",\"\",\"\",\"resume.pdf\"],[\"old.pdf\",\"\",\"/Archive\",\"Archive/old.pdf\"]],"
+                + "\"total\":2}", result);
+    }
+
+    @Test
+    void searchFiles_WithUnknownFormat_ReturnsErrorMessage() {
+        String result = onedriveService.searchFiles("resume", null, "xml", null, null);
+
+        assertTrue(result.startsWith("Error searching files: format must be"));
+    }
+
+    @Test
+    void listFolderContents_WithLearnedFolder_AddressesItById() {
+        String parentListing = """
+            {
+                "value": [
+                    { "id": "resume-id", "name": "Resume", "folder": { "childCount": 1 },
+                      "parentReference": { "id": "docs-id", "path": "/drive/root:/Documents" } }
+                ]
+            }
+            """;
+        stubResponses(parentListing, "{ \"value\": [] }");
+
+        onedriveService.listFolderContents("Documents");
+        onedriveService.listFolderContents("Documents/Resume");
+
+        verify(requestSpec).uri(startsWith("/me/drive/root:/Documents:/children"));
+        verify(requestSpec).uri(startsWith("/me/drive/items/resume-id/children"));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void listFolderContents_WithStaleId_RetriesByPath() {
+        pathIds.put("Documents/Resume", "stale-id");
+        ClientHttpResponse notFound = new MockClientHttpResponse(
+                "{\"error\":{\"code\":\"itemNotFound\"}}".getBytes(StandardCharsets.UTF_8), HttpStatus.NOT_FOUND);
+        when(requestSpec.exchange(any(), eq(false))).thenReturn(notFound, jsonResponse("""
+            {
+                "value": [
+                    { "name": "cv.pdf", "webUrl": "https://example.com/cv.pdf", "file": {} }
+                ]
+            }
+            """));
+
+        String result = onedriveService.listFolderContents("Documents/Resume");
+
+        assertTrue(result.contains("cv.pdf"));
+        verify(requestSpec).uri(startsWith("/me/drive/items/stale-id/children"));
+        verify(requestSpec).uri(startsWith("/me/drive/root:/Documents%2FResume:/children"));
+        assertNull(pathIds.resolve("Documents/Resume"));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void readFileContent_WithMoreToRead_ReturnsChunkAndNextOffset() {
+        MockClientHttpResponse response = new MockClientHttpResponse(
+                "first line\n".getBytes(StandardCharsets.UTF_8), HttpStatus.PARTIAL_CONTENT);
+        response.getHeaders().set(HttpHeaders.CONTENT_RANGE, "bytes 0-10/5000");
+        when(requestSpec.exchange(any(), eq(false))).thenReturn(response);
+
+        String result = onedriveService.readFileContent("Documents/notes.txt", null, 11);
+
+        assertEquals("{\"path\":\"Documents/notes.txt\",\"offset\":0,\"nextOffset\":11,\"size\":5000,"
+                + "\"content\":\"first line\\n\"}", result);
+        verify(requestSpec).uri("/me/drive/root:/Documents%2Fnotes.txt:/content");
+    }
+
+    @Test
+    void readFileContent_WithoutPath_ReturnsErrorMessage() {
+        String result = onedriveService.readFileContent(" ", 0L, null);
+
+        assertEquals("Error reading file content: a file path is required", result);
+        verify(restClient, never()).get();
+    }
+
+    @Test
+    void listFolderTree_WithDepthOne_ListsFolderWithoutExpanding() {
+        String expectedResponse = """
+            {
+                "value": [
+                    {
+                        "name": "Bills",
+                        "webUrl": "https://example.com/folders/bills",
+                        "folder": { "childCount": 4 },
+                        "parentReference": { "path": "/drive/root:/Documents" }
+                    },
+                    {
+                        "name": "resume.pdf",
+                        "webUrl": "https://example.com/resume.pdf",
+                        "file": {},
+                        "parentReference": { "path": "/drive/root:/Documents" }
+                    }
+                ]
+            }
+            """;
+        stubResponses(expectedResponse);
+
+        String result = onedriveService.listFolderTree("Documents", 1, null);
+
+        assertTrue(result.startsWith("{\"folderPath\":\"Documents\""));
+        assertTrue(result.contains("{\"folder\":{\"name\":\"Bills\""));
+        assertTrue(result.contains("resume.pdf"));
+        assertTrue(result.contains("\"truncated\":false"));
+        assertFalse(result.contains("\"childCount\":4},\"items\""));
+    }
+}
@@ -0,0 +1,164 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PathIdTrieTest {
+
+    private MutableClock clock;
+    private PathIdTrie pathIds;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2025-04-20T00:00:00Z"));
+        pathIds = new PathIdTrie(true, Duration.ofMinutes(10), 3, clock);
+    }
+
+    @Test
+    void learn_RecordsParentAndFolderIds() {
+        pathIds.learn(item("resume-id", "Resume", true, "/drive/root:/Documents", "docs-id"));
+
+        assertEquals("docs-id", pathIds.resolve("Documents"));
+        assertEquals("resume-id", pathIds.resolve("/documents/resume/"));
+        assertNull(pathIds.resolve("Documents/Other"));
+    }
+
+    @Test
+    void learn_WithFile_RecordsOnlyParent() {
+        pathIds.learn(item("file-id", "a.pdf", false, "/drive/root:/Documents/My%20Bills", "bills-id"));
+
+        assertEquals("bills-id", pathIds.resolve("Documents/My Bills"));
+        assertNull(pathIds.resolve("Documents/My Bills/a.pdf"));
+        assertEquals(1, pathIds.stats().size());
+    }
+
+    @Test
+    void learn_WithoutParentPath_IsIgnored() {
+        pathIds.learn(item("delta-id", "Resume", true, null, "docs-id"));
+
+        assertEquals(0, pathIds.stats().size());
+    }
+
+    @Test
+    void learn_OnAnotherDrive_IsIgnored() {
+        pathIds.learn(item("docs-id", "Documents", true, "/drive/root:", "root-id", "b!me"));
+
+        pathIds.learn(item("shared-id", "Shared", true, "/drives/b!other/root:", "other-root-id", "b!other"));
+        pathIds.learn(item("pictures-id", "Pictures", true, "/drives/B!ME/root:", "root-id", "b!me"));
+
+        assertNull(pathIds.resolve("Shared"));
+        assertEquals("pictures-id", pathIds.resolve("Pictures"));
+    }
+
+    @Test
+    void learn_BeforeOwnDriveIsKnown_IgnoresDrivesPath() {
+        pathIds.learn(item("pictures-id", "Pictures", true, "/drives/b!me/root:", "root-id", "b!me"));
+
+        assertEquals(0, pathIds.stats().size());
+    }
+
+    @Test
+    void learn_FolderUnderNewPath_ForgetsOldPath() {
+        pathIds.learn(item("resume-id", "Resume", true, "/drive/root:/Documents", "docs-id"));
+        pathIds.put("Documents/Resume/2024", "2024-id");
+
+        // a child of the folder, listed by id, names the folder's path after a rename
+        pathIds.learn(item("file-id", "cv.pdf", false, "/drive/root:/Documents/CV", "resume-id"));
+
+        assertNull(pathIds.resolve("Documents/Resume"));
+        assertNull(pathIds.resolve("Documents/Resume/2024"));
+        assertEquals("resume-id", pathIds.resolve("Documents/CV"));
+        assertEquals("docs-id", pathIds.resolve("Documents"));
+        assertEquals(2, pathIds.stats().size());
+    }
+
+    @Test
+    void invalidateId_ForgetsFolderAndSubtree() {
+        pathIds.put("Documents", "docs-id");
+        pathIds.put("Documents/Resume", "resume-id");
+
+        pathIds.invalidateId("resume-id");
+        pathIds.invalidateId("unknown-id");
+
+        assertNull(pathIds.resolve("Documents/Resume"));
+        assertEquals("docs-id", pathIds.resolve("Documents"));
+        assertEquals(1, pathIds.stats().size());
+    }
+
+    @Test
+    void resolve_Root_ReturnsNull() {
+        pathIds.learn(item("docs-id", "Documents", true, "/drive/root:", "root-id"));
+
+        assertNull(pathIds.resolve(""));
+        assertNull(pathIds.resolve("/"));
+        assertEquals("docs-id", pathIds.resolve("Documents"));
+    }
+
+    @Test
+    void resolve_AfterTtl_ReturnsNull() {
+        pathIds.put("Documents", "docs-id");
+        clock.advance(Duration.ofMinutes(10));
+
+        assertNull(pathIds.resolve("Documents"));
+        assertEquals(new PathIdTrie.Stats(0, 1, 1), pathIds.stats());
+    }
+
+    @Test
+    void invalidate_RemovesSubtree() {
+        pathIds.put("Documents", "docs-id");
+        pathIds.put("Documents/Resume", "resume-id");
+        pathIds.put("Pictures", "pictures-id");
+
+        assertTrue(pathIds.invalidate("Documents"));
+
+        assertNull(pathIds.resolve("Documents/Resume"));
+        assertEquals("pictures-id", pathIds.resolve("Pictures"));
+        assertEquals(1, pathIds.stats().size());
+        assertFalse(pathIds.invalidate("Documents"));
+    }
+
+    @Test
+    void put_BeyondMaxEntries_Clears() {
+        pathIds.put("A", "a");
+        pathIds.put("B", "b");
+        pathIds.put("C", "c");
+
+        pathIds.put("D", "d");
+
+        assertEquals(0, pathIds.stats().size());
+        assertNull(pathIds.resolve("A"));
+    }
+
+    @Test
+    void resolve_WhenDisabled_ReturnsNull() {
+        PathIdTrie disabled = new PathIdTrie(false, Duration.ofMinutes(10), 3, clock);
+        disabled.put("Documents", "docs-id");
+
+        assertNull(disabled.resolve("Documents"));
+    }
+
+    @Test
+    void relativePath_StripsDrivePrefixAndKeepsPlus() {
+        assertEquals("", PathIdTrie.relativePath("/drive/root:"));
+        assertEquals("Documents/C++ Notes", PathIdTrie.relativePath("/drives/b!x/root:/Documents/C++%20Notes"));
+        assertNull(PathIdTrie.relativePath("/drive/items/abc"));
+        assertNull(PathIdTrie.relativePath(null));
+    }
+
+    private static DriveItem item(String id, String name, boolean folder, String parentPath, String parentId) {
+        return item(id, name, folder, parentPath, parentId, "");
+    }
+
+    private static DriveItem item(String id, String name, boolean folder, String parentPath, String parentId,
+            String driveId) {
+        return new DriveItem(id, name, "https://example.com/" + name, folder ? null : "pdf", parentPath, folder, 0,
+                parentId, false, false, null, null, "", driveId);
+    }
+}
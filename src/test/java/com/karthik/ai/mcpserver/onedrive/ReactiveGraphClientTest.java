@@ -0,0 +1,123 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+class ReactiveGraphClientTest {
+
+    private static final String FIRST_PAGE = """
+        {
+            "value": [ { "id": "1", "name": "a.pdf" }, { "id": "2", "name": "b.pdf" } ],
+            "@odata.nextLink": "https://graph.microsoft.com/v1.0/me/drive/root/children?$skiptoken=abc"
+        }
+        """;
+
+    private static final String LAST_PAGE = """
+        { "value": [ { "id": "3", "name": "c.pdf" } ] }
+        """;
+
+    private List<ClientRequest> requests;
+    private List<ClientResponse> responses;
+
+    @BeforeEach
+    void setUp() {
+        requests = new ArrayList<>();
+        responses = new ArrayList<>();
+    }
+
+    @Test
+    void readItems_FollowsNextLinks() {
+        responses.add(json(FIRST_PAGE));
+        responses.add(json(LAST_PAGE));
+
+        List<DriveItem> items = client().readItems("/me/drive/root/children?$top=2").collectList().block();
+
+        assertEquals(List.of("a.pdf", "b.pdf", "c.pdf"), items.stream().map(DriveItem::name).toList());
+        assertEquals(2, requests.size());
+        assertEquals("$skiptoken=abc", requests.get(1).url().getRawQuery());
+        assertEquals("Bearer test-token", requests.get(0).headers().getFirst(HttpHeaders.AUTHORIZATION));
+    }
+
+    @Test
+    void readItems_ParsesPageAsItsBuffersArrive() {
+        byte[] body = FIRST_PAGE.getBytes(StandardCharsets.UTF_8);
+        List<DataBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < body.length; i += 5) {
+            buffers.add(DefaultDataBufferFactory.sharedInstance.wrap(
+                    Arrays.copyOfRange(body, i, Math.min(body.length, i + 5))));
+        }
+        responses.add(ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body(Flux.fromIterable(buffers))
+                .build());
+        responses.add(json(LAST_PAGE));
+
+        List<DriveItem> items = client().readItems("/me/drive/root/children?$top=2").collectList().block();
+
+        assertEquals(List.of("a.pdf", "b.pdf", "c.pdf"), items.stream().map(DriveItem::name).toList());
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    void readItemIfNoneMatch_IsEmptyWhenNotModified() {
+        responses.add(ClientResponse.create(HttpStatus.NOT_MODIFIED).build());
+
+        DriveItem item = client().readItemIfNoneMatch("/me/drive/root?$select=id,cTag", "c:{1},1").block();
+
+        assertNull(item);
+        assertEquals("c:{1},1", requests.get(0).headers().getFirst(HttpHeaders.IF_NONE_MATCH));
+    }
+
+    @Test
+    void errorStatus_FailsWithGraphError() {
+        responses.add(ClientResponse.create(HttpStatus.NOT_FOUND)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body("{\"error\":{\"code\":\"itemNotFound\"}}")
+                .build());
+
+        RestClientResponseException error = assertThrows(RestClientResponseException.class,
+                () -> client().readItem("/me/drive/root:/Missing").block());
+
+        assertEquals(404, error.getStatusCode().value());
+        assertEquals("Graph request failed with 404", error.getMessage());
+    }
+
+    private ReactiveGraphClient client() {
+        AtomicInteger next = new AtomicInteger();
+        WebClient webClient = WebClient.builder()
+                .exchangeFunction(request -> {
+                    requests.add(request);
+                    return Mono.just(responses.get(next.getAndIncrement()));
+                })
+                .build();
+        return new ReactiveGraphClient(webClient, "test-token", GraphRequestScheduler.unlimited());
+    }
+
+    private static ClientResponse json(String body) {
+        return ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body(body)
+                .build();
+    }
+}
@@ -0,0 +1,171 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RequestCoalescerTest {
+
+    private static final RequestCoalescer.Key KEY =
+            new RequestCoalescer.Key("token", "/me/drive/root/children?$top=200", String.class);
+
+    private RequestCoalescer coalescer;
+    private ExecutorService executor;
+    private AtomicInteger calls;
+
+    @BeforeEach
+    void setUp() {
+        coalescer = new RequestCoalescer();
+        executor = Executors.newFixedThreadPool(2);
+        calls = new AtomicInteger();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentIdenticalCalls_ShareOneRequest() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> leader = executor.submit(() -> coalescer.execute(KEY, () -> {
+            calls.incrementAndGet();
+            started.countDown();
+            await(release);
+            return "[]";
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        Future<String> follower = executor.submit(() -> coalescer.execute(KEY, () -> {
+            calls.incrementAndGet();
+            return "other";
+        }));
+        waitUntilCoalesced(1);
+        release.countDown();
+
+        assertEquals("[]", leader.get(5, TimeUnit.SECONDS));
+        assertEquals("[]", follower.get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void failure_IsSharedWithWaitingCalls() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> leader = executor.submit(() -> coalescer.execute(KEY, () -> {
+            started.countDown();
+            await(release);
+            throw new IOException("connection reset");
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<String> follower = executor.submit(() -> coalescer.execute(KEY, () -> "other"));
+        waitUntilCoalesced(1);
+        release.countDown();
+
+        ExecutionException leaderError = assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+        ExecutionException followerError = assertThrows(ExecutionException.class, () -> follower.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, leaderError.getCause());
+        assertEquals("connection reset", followerError.getCause().getMessage());
+    }
+
+    @Test
+    void interruptedCall_LetsWaitingCallsSendTheirOwn() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        Future<String> leader = executor.submit(() -> coalescer.execute(KEY, () -> {
+            calls.incrementAndGet();
+            started.countDown();
+            await(new CountDownLatch(1));
+            return "[]";
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<String> follower = executor.submit(() -> coalescer.execute(KEY, () -> {
+            calls.incrementAndGet();
+            return "other";
+        }));
+        waitUntilCoalesced(1);
+
+        leader.cancel(true);
+
+        assertEquals("other", follower.get(5, TimeUnit.SECONDS));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void completedCall_IsNotReused() throws IOException {
+        coalescer.execute(KEY, () -> "first-" + calls.incrementAndGet());
+
+        assertEquals("second-2", coalescer.execute(KEY, () -> "second-" + calls.incrementAndGet()));
+        assertEquals(0, coalescer.coalesced());
+    }
+
+    @Test
+    void differentTokensOrResultTypes_AreNotShared() throws Exception {
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        CompletableFuture<String> first = coalescer.executeAsync(KEY, () -> pending);
+
+        CompletableFuture<String> otherToken = coalescer.executeAsync(
+                new RequestCoalescer.Key("other-token", KEY.uri(), String.class),
+                () -> CompletableFuture.completedFuture("other-token"));
+        CompletableFuture<Object> otherType = coalescer.executeAsync(
+                new RequestCoalescer.Key("token", KEY.uri(), java.util.List.class),
+                () -> CompletableFuture.completedFuture("items"));
+
+        assertEquals("other-token", otherToken.get());
+        assertEquals("items", otherType.get());
+        assertEquals(0, coalescer.coalesced());
+        pending.complete("[]");
+        assertEquals("[]", first.get());
+    }
+
+    @Test
+    void asyncCalls_ShareOneRequestAndCancelIndependently() throws Exception {
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        CompletableFuture<String> first = coalescer.executeAsync(KEY, () -> {
+            calls.incrementAndGet();
+            return pending;
+        });
+        CompletableFuture<String> second = coalescer.executeAsync(KEY, () -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture("other");
+        });
+
+        first.cancel(true);
+        pending.complete("[]");
+
+        assertEquals("[]", second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+        assertEquals(1, coalescer.coalesced());
+    }
+
+    private void waitUntilCoalesced(long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (coalescer.coalesced() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, coalescer.coalesced());
+    }
+
+    private static void await(CountDownLatch latch) throws IOException {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import org.springframework.http.client.ClientHttpResponse;
+
+class RequestHedgerTest {
+
+    private static RequestHedger hedger(double budget) {
+        return new RequestHedger(true, 0.95, Duration.ofMillis(10), Duration.ofMillis(10), budget, 64,
+                command -> Thread.ofVirtual().start(command));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    void execute_WhenFirstRequestIsSlow_UsesHedgeAndClosesLateResponse() {
+        RequestHedger hedger = hedger(1.0);
+        CountDownLatch slow = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        ClientHttpResponse late = mock(ClientHttpResponse.class);
+        ClientHttpResponse fast = mock(ClientHttpResponse.class);
+
+        ClientHttpResponse response = hedger.execute(() -> {
+            if (calls.incrementAndGet() == 1) {
+                try {
+                    slow.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return late;
+            }
+            return fast;
+        });
+
+        assertSame(fast, response);
+        assertEquals(1, hedger.stats().hedged());
+        assertEquals(1, hedger.stats().won());
+        slow.countDown();
+        verify(late, timeout(1000)).close();
+    }
+
+    @Test
+    void execute_WithoutBudget_WaitsForFirstRequest() {
+        RequestHedger hedger = hedger(0);
+        AtomicInteger calls = new AtomicInteger();
+        ClientHttpResponse only = mock(ClientHttpResponse.class);
+
+        ClientHttpResponse response = hedger.execute(() -> {
+            calls.incrementAndGet();
+            sleep(50);
+            return only;
+        });
+
+        assertSame(only, response);
+        assertEquals(1, calls.get());
+        assertEquals(0, hedger.stats().hedged());
+    }
+
+    @Test
+    void execute_WithBudget_HedgesAtMostItsShare() {
+        RequestHedger hedger = hedger(0.25);
+
+        for (int i = 0; i < 8; i++) {
+            hedger.execute(() -> {
+                sleep(20);
+                return mock(ClientHttpResponse.class);
+            });
+        }
+
+        assertEquals(8, hedger.stats().requests());
+        assertEquals(2, hedger.stats().hedged());
+    }
+
+    @Test
+    void execute_WhenFirstRequestFailsFast_RaisesItsError() {
+        RequestHedger hedger = hedger(1.0);
+
+        IllegalStateException error = assertThrows(IllegalStateException.class, () -> hedger.execute(() -> {
+            throw new IllegalStateException("Graph is down");
+        }));
+
+        assertEquals("Graph is down", error.getMessage());
+        assertEquals(0, hedger.stats().hedged());
+    }
+
+    @Test
+    void execute_WhenHedgedRequestFails_UsesFirstResponse() {
+        RequestHedger hedger = hedger(1.0);
+        AtomicInteger calls = new AtomicInteger();
+        ClientHttpResponse first = mock(ClientHttpResponse.class);
+
+        ClientHttpResponse response = hedger.execute(() -> {
+            if (calls.incrementAndGet() == 1) {
+                sleep(50);
+                return first;
+            }
+            throw new IllegalStateException("hedge failed");
+        });
+
+        assertSame(first, response);
+        assertEquals(1, hedger.stats().hedged());
+        assertEquals(0, hedger.stats().won());
+    }
+
+    @Test
+    void execute_AfterEnoughSamples_HedgesAtPercentileOfLatencies() {
+        RequestHedger hedger = new RequestHedger(true, 0.5, Duration.ofMillis(1), Duration.ofSeconds(5), 0, 64,
+                Runnable::run);
+
+        for (int i = 0; i < 32; i++) {
+            hedger.execute(() -> {
+                sleep(5);
+                return mock(ClientHttpResponse.class);
+            });
+        }
+
+        long delay = hedger.stats().delay().toMillis();
+        assertTrue(delay >= 5 && delay < 1000, "delay " + delay);
+    }
+
+    @Test
+    void disabled_SendsRequestOnce() {
+        RequestHedger hedger = RequestHedger.disabled();
+        AtomicInteger calls = new AtomicInteger();
+
+        hedger.execute(() -> {
+            calls.incrementAndGet();
+            return mock(ClientHttpResponse.class);
+        });
+
+        assertEquals(1, calls.get());
+        assertEquals(0, hedger.stats().requests());
+    }
+}
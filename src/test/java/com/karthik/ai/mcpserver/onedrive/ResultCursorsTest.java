@@ -0,0 +1,87 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ResultCursorsTest {
+
+    private static final List<DriveItem> ITEMS = List.of(item("a.pdf"), item("b.pdf"), item("c.pdf"));
+
+    private MutableClock clock;
+    private ResultCursors cursors;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2025-04-20T00:00:00Z"));
+        cursors = new ResultCursors(Duration.ofMinutes(5), 2, clock);
+    }
+
+    @Test
+    void page_ReturnsStoredResultFromOffset() {
+        String id = cursors.store("searchFiles", ITEMS, 2);
+
+        ResultCursors.Page page = cursors.page("searchFiles", ResultCursors.cursor(id, 2));
+
+        assertEquals(id, page.id());
+        assertEquals(ITEMS, page.items());
+        assertEquals(2, page.offset());
+        assertEquals(2, page.limit());
+    }
+
+    @Test
+    void page_AfterTtl_Throws() {
+        String id = cursors.store("searchFiles", ITEMS, 2);
+        clock.advance(Duration.ofMinutes(5));
+
+        assertThrows(IllegalArgumentException.class, () -> cursors.page("searchFiles", ResultCursors.cursor(id, 2)));
+        assertEquals(0, cursors.size());
+    }
+
+    @Test
+    void page_ExtendsTtl() {
+        String id = cursors.store("searchFiles", ITEMS, 1);
+        clock.advance(Duration.ofMinutes(4));
+        cursors.page("searchFiles", ResultCursors.cursor(id, 1));
+        clock.advance(Duration.ofMinutes(4));
+
+        assertEquals(2, cursors.page("searchFiles", ResultCursors.cursor(id, 2)).offset());
+    }
+
+    @Test
+    void page_WithCursorOfAnotherTool_Throws() {
+        String id = cursors.store("searchFiles", ITEMS, 2);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> cursors.page("listFolderContents", ResultCursors.cursor(id, 2)));
+    }
+
+    @Test
+    void page_WithMalformedCursor_Throws() {
+        assertThrows(IllegalArgumentException.class, () -> cursors.page("searchFiles", "not-a-cursor"));
+        assertThrows(IllegalArgumentException.class, () -> cursors.page("searchFiles", "abc.x"));
+    }
+
+    @Test
+    void store_BeyondMaxEntries_EvictsLeastRecentlyUsed() {
+        String first = cursors.store("searchFiles", ITEMS, 1);
+        String second = cursors.store("searchFiles", ITEMS, 1);
+        cursors.page("searchFiles", ResultCursors.cursor(first, 1));
+
+        cursors.store("searchFiles", ITEMS, 1);
+
+        assertEquals(2, cursors.size());
+        assertEquals(1, cursors.page("searchFiles", ResultCursors.cursor(first, 1)).offset());
+        assertThrows(IllegalArgumentException.class, () -> cursors.page("searchFiles", ResultCursors.cursor(second, 1)));
+    }
+
+    private static DriveItem item(String name) {
+        return new DriveItem(name, name, "https://example.com/" + name, "", "/drive/root:/Documents",
+                false, 0, "docs", false, false, "", "");
+    }
+}
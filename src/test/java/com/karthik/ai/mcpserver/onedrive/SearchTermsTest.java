@@ -0,0 +1,53 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+class SearchTermsTest {
+
+    @Test
+    void split_AtSpacesCommasAndOr_KeepsQuotedPhrases() {
+        assertEquals(List.of("resume", "ats"), SearchTerms.split("resume ats", 8));
+        assertEquals(List.of("resume", "cover letter", "CV"),
+                SearchTerms.split("resume OR \"cover letter\", CV|cv ", 8));
+        assertEquals(List.of("cover letter"), SearchTerms.split("\"cover letter\"", 8));
+    }
+
+    @Test
+    void split_BeyondMaxTerms_KeepsFirstTerms() {
+        assertEquals(List.of("a", "b"), SearchTerms.split("a b c d", 2));
+        assertEquals(List.of(), SearchTerms.split(null, 8));
+    }
+
+    @Test
+    void rank_DeduplicatesByIdAndOrdersByMatchThenRecency() {
+        List<DriveItem> resumeResults = List.of(
+                item("1", "old resume draft.docx", "2020-01-01T00:00:00Z"),
+                item("2", "resume.pdf", "2021-01-01T00:00:00Z"),
+                item("3", "notes.txt", "2024-01-01T00:00:00Z"));
+        List<DriveItem> atsResults = List.of(
+                item("4", "ats-friendly resume.pdf", "2022-01-01T00:00:00Z"),
+                item("2", "resume.pdf", "2021-01-01T00:00:00Z"),
+                item("5", "report.txt", "2025-01-01T00:00:00Z"));
+
+        List<DriveItem> ranked = SearchTerms.rank(List.of("resume", "ats"), List.of(resumeResults, atsResults), 10);
+
+        assertEquals(List.of("2", "4", "1", "5", "3"), ranked.stream().map(DriveItem::id).toList());
+    }
+
+    @Test
+    void rank_KeepsTopItems() {
+        List<DriveItem> results = List.of(item("1", "a.txt", ""), item("2", "resume.txt", ""), item("3", "b.txt", ""));
+
+        List<DriveItem> ranked = SearchTerms.rank(List.of("resume", "cv"), List.of(results, List.of()), 2);
+
+        assertEquals(List.of("2", "1"), ranked.stream().map(DriveItem::id).toList());
+    }
+
+    private static DriveItem item(String id, String name, String lastModified) {
+        return new DriveItem(id, name, "https://example.com/" + name, "pdf", "/drive/root:/Documents", false, 0,
+                "docs-id", false, false, "", "", lastModified);
+    }
+}
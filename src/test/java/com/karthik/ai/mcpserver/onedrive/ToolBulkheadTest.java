@@ -0,0 +1,167 @@
+package com.karthik.ai.mcpserver.onedrive;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.ToolCallbackProvider;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+class ToolBulkheadTest {
+
+    private static void awaitQueued(ToolBulkhead bulkhead, int queued) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (bulkhead.stats().queued() < queued && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(queued, bulkhead.stats().queued());
+    }
+
+    private static CompletableFuture<Void> enterAsync(ToolBulkhead bulkhead, String session, List<String> order) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        Thread.ofVirtual().start(() -> {
+            try {
+                ToolBulkhead.Permit permit = bulkhead.enter("listFolderContents", session);
+                order.add(session);
+                permit.release();
+                done.complete(null);
+            } catch (RuntimeException e) {
+                done.completeExceptionally(e);
+            }
+        });
+        return done;
+    }
+
+    @Test
+    void enter_AtLimit_WaitsUntilSlotIsReleased() throws Exception {
+        ToolBulkhead bulkhead = new ToolBulkhead(true, 1, 4, Duration.ofSeconds(5), Map.of());
+        ToolBulkhead.Permit first = bulkhead.enter("listFolderContents", "a");
+
+        CompletableFuture<Void> second = enterAsync(bulkhead, "b", Collections.synchronizedList(new ArrayList<>()));
+        awaitQueued(bulkhead, 1);
+        assertFalse(second.isDone());
+
+        first.release();
+        second.get(5, TimeUnit.SECONDS);
+        assertEquals(2, bulkhead.stats().admitted());
+        assertEquals(0, bulkhead.stats().running());
+    }
+
+    @Test
+    void enter_WithQueueFull_RejectsAtOnceButOtherToolsRun() {
+        ToolBulkhead bulkhead = new ToolBulkhead(true, 1, 0, Duration.ofSeconds(5), Map.of());
+        ToolBulkhead.Permit first = bulkhead.enter("listFolderTree", "a");
+
+        assertThrows(ToolBulkhead.BusyException.class, () -> bulkhead.enter("listFolderTree", "b"));
+        bulkhead.enter("searchFiles", "b").release();
+
+        first.release();
+        assertEquals(1, bulkhead.stats().queueFull());
+        assertEquals(2, bulkhead.stats().admitted());
+    }
+
+    @Test
+    void release_LetsWaitingSessionsInRoundRobin() throws Exception {
+        ToolBulkhead bulkhead = new ToolBulkhead(true, 1, 8, Duration.ofSeconds(5), Map.of());
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        ToolBulkhead.Permit first = bulkhead.enter("listFolderContents", "a");
+        List<CompletableFuture<Void>> waiting = new ArrayList<>();
+        for (String session : List.of("a", "a", "b")) {
+            waiting.add(enterAsync(bulkhead, session, order));
+            awaitQueued(bulkhead, waiting.size());
+        }
+
+        first.release();
+        CompletableFuture.allOf(waiting.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("a", "b", "a"), order);
+    }
+
+    @Test
+    void enter_SessionBeyondItsShareOfQueue_IsRejected() throws Exception {
+        ToolBulkhead bulkhead = new ToolBulkhead(true, 1, 4, Duration.ofSeconds(5), Map.of());
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        ToolBulkhead.Permit first = bulkhead.enter("listFolderContents", "a");
+        List<CompletableFuture<Void>> waiting = new ArrayList<>();
+        for (String session : List.of("a", "a", "b")) {
+            waiting.add(enterAsync(bulkhead, session, order));
+            awaitQueued(bulkhead, waiting.size());
+        }
+
+        assertThrows(ToolBulkhead.BusyException.class, () -> bulkhead.enter("listFolderContents", "a"));
+
+        first.release();
+        CompletableFuture.allOf(waiting.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+        assertEquals(1, bulkhead.stats().overShare());
+    }
+
+    @Test
+    void enter_WhenExpectedWaitExceedsMaxWait_RejectsWithoutWaiting() throws Exception {
+        ToolBulkhead bulkhead = new ToolBulkhead(true, 1, 8, Duration.ofMillis(50), Map.of());
+        ToolBulkhead.Permit slow = bulkhead.enter("listFolderTree", "a");
+        Thread.sleep(100);
+        slow.release();
+        ToolBulkhead.Permit running = bulkhead.enter("listFolderTree", "a");
+
+        long start = System.nanoTime();
+        ToolBulkhead.BusyException busy = assertThrows(ToolBulkhead.BusyException.class,
+                () -> bulkhead.enter("listFolderTree", "b"));
+
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(busy.retryAfter().toMillis() >= 100, "retry after " + busy.retryAfter());
+        assertEquals(1, bulkhead.stats().deadline());
+        running.release();
+    }
+
+    @Test
+    void enter_AfterMaxWait_TimesOut() {
+        ToolBulkhead bulkhead = new ToolBulkhead(true, 1, 8, Duration.ofMillis(50), Map.of());
+        ToolBulkhead.Permit running = bulkhead.enter("listFolderContents", "a");
+
+        assertThrows(ToolBulkhead.BusyException.class, () -> bulkhead.enter("listFolderContents", "b"));
+
+        assertEquals(1, bulkhead.stats().timedOut());
+        assertEquals(0, bulkhead.stats().queued());
+        running.release();
+        assertEquals(0, bulkhead.stats().running());
+    }
+
+    @Test
+    void guard_WhenBusy_AnswersWithRetryAfter() {
+        ToolBulkhead bulkhead = new ToolBulkhead(true, 2, 0, Duration.ofSeconds(5),
+                ToolBulkhead.parseLimits("listFolderTree=1"));
+        ToolCallback tool = mock(ToolCallback.class);
+        ToolDefinition definition = mock(ToolDefinition.class);
+        when(definition.name()).thenReturn("listFolderTree");
+        when(tool.getToolDefinition()).thenReturn(definition);
+        ToolCallbackProvider tools = () -> new ToolCallback[] { tool };
+        ToolBulkhead.Permit running = bulkhead.enter("listFolderTree", null);
+
+        String result = bulkhead.guard(tools).getToolCallbacks()[0].call("{}");
+
+        assertTrue(result.contains("Error calling listFolderTree: server busy, retry after 5s"), result);
+        verify(tool, never()).call("{}");
+        running.release();
+    }
+
+    @Test
+    void disabled_LeavesToolsUnguarded() {
+        ToolCallbackProvider tools = () -> new ToolCallback[0];
+
+        assertEquals(tools, ToolBulkhead.disabled().guard(tools));
+    }
+}